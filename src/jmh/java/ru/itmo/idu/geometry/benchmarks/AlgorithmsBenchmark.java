@@ -0,0 +1,102 @@
+package ru.itmo.idu.geometry.benchmarks;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.operation.TransformException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.itmo.idu.geometry.GeometryUtils;
+import ru.itmo.idu.geometry.PointsGridGenerator;
+import ru.itmo.idu.geometry.algorithms.LineStraightener;
+import ru.itmo.idu.geometry.algorithms.LloydAlgorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polygon splitting, point generators and line straightening on a synthetic district
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlgorithmsBenchmark {
+
+    /**
+     * Diagonal line crossing each local block
+     */
+    private List<Geometry> splitLines;
+
+    /**
+     * Area around streets that straightened streets shall stay within
+     */
+    private Geometry streetsArea;
+
+    @Setup(Level.Trial)
+    public void setup(CityBlocks city) {
+        splitLines = new ArrayList<>();
+        for (Polygon block : city.localBlocks) {
+            Envelope envelope = block.getEnvelopeInternal();
+            splitLines.add(GeometryUtils.makeLine(
+                    new Coordinate(envelope.getMinX() - 1, envelope.getMinY() - 1),
+                    new Coordinate(envelope.getMaxX() + 1, envelope.getMaxY() + 1)));
+        }
+        streetsArea = GeometryUtils.getGeometryFactory()
+                .buildGeometry(city.localStreets)
+                .buffer(8);
+    }
+
+    @Benchmark
+    public void splitPolygon(CityBlocks city, Blackhole blackhole) {
+        for (int i = 0; i < city.localBlocks.size(); ++i) {
+            blackhole.consume(GeometryUtils.splitPolygon(city.localBlocks.get(i), splitLines.get(i)));
+        }
+    }
+
+    @Benchmark
+    public Coordinate[] lloydAlgorithm(CityBlocks city) {
+        return LloydAlgorithm.generateLloydPoints(city.localDistrict, 100);
+    }
+
+    @Benchmark
+    public Object pointsGridGeodetic(CityBlocks city) throws FactoryException, TransformException {
+        return PointsGridGenerator.generatePoints(city.crs, city.district, 10, 15, PointsGridGenerator.Mode.GEODETIC);
+    }
+
+    @Benchmark
+    public Object pointsGridScanline(CityBlocks city) throws FactoryException, TransformException {
+        return PointsGridGenerator.generatePoints(city.crs, city.district, 10, 15, PointsGridGenerator.Mode.SCANLINE);
+    }
+
+    @Benchmark
+    public double[] pointsGridScanlineCoordinates(CityBlocks city) throws FactoryException, TransformException {
+        return PointsGridGenerator.generateCoordinates(city.crs, city.district, 10, 15, false);
+    }
+
+    @Benchmark
+    public List<LineString> straightenGreedy(CityBlocks city) {
+        return LineStraightener.straightenLineStrings(city.localStreets, streetsArea, null, false, LineStraightener.Mode.GREEDY);
+    }
+
+    @Benchmark
+    public List<LineString> straightenGalloping(CityBlocks city) {
+        return LineStraightener.straightenLineStrings(city.localStreets, streetsArea, null, false, LineStraightener.Mode.GALLOPING);
+    }
+}
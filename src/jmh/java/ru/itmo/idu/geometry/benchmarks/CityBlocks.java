@@ -0,0 +1,96 @@
+package ru.itmo.idu.geometry.benchmarks;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.TransformException;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.itmo.idu.geometry.CRSUtils;
+import ru.itmo.idu.geometry.GeometryUtils;
+import ru.itmo.idu.geometry.ProjectionUtils;
+import ru.itmo.idu.geometry.synthetic.UrbanDatasetGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic city district shared by benchmarks: CELLS_COUNT cells of UrbanDatasetGenerator with seed 42, each with
+ * a jittered block (some with a courtyard hole) and two streets with noisy intermediate vertices. Problematic blocks
+ * and buildings are turned off. Geometries are generated in meters, used as a local metric CRS around the centre,
+ * and also kept projected to WGS84.
+ */
+@State(Scope.Benchmark)
+public class CityBlocks {
+
+    public static final int CELLS_COUNT = 100;
+
+    public static final Coordinate CENTRE = new Coordinate(30.3, 59.94);
+
+    public CoordinateReferenceSystem crs;
+
+    public List<Polygon> localBlocks;
+
+    public List<Polygon> blocks;
+
+    public List<LineString> localStreets;
+
+    public List<LineString> streets;
+
+    /**
+     * Polygon covering the whole district, with a cut corner so that it is not a rectangle
+     */
+    public Geometry localDistrict;
+
+    public Geometry district;
+
+    @Setup(Level.Trial)
+    public void setup() throws FactoryException, TransformException {
+        crs = CRSUtils.getLocalCRS(CENTRE);
+
+        var generator = new UrbanDatasetGenerator(42);
+        generator.setWgs84(false);
+        generator.setBuildingsPerBlock(0);
+        generator.setCourtyardShare(0.33);
+        generator.setNarrowAngleShare(0);
+        generator.setSpikeShare(0);
+        generator.setInvalidShare(0);
+
+        localBlocks = new ArrayList<>();
+        localStreets = new ArrayList<>();
+        // every cell has a block and two streets
+        generator.stream(CELLS_COUNT * 3, false).forEach(feature -> {
+            if (feature.getType() == UrbanDatasetGenerator.FeatureType.STREET) {
+                localStreets.add((LineString) feature.getGeometry());
+            } else {
+                localBlocks.add((Polygon) feature.getGeometry());
+            }
+        });
+
+        Envelope envelope = new Envelope();
+        localBlocks.forEach(block -> envelope.expandToInclude(block.getEnvelopeInternal()));
+        localDistrict = GeometryUtils.makePolygon(
+                new Coordinate(envelope.getMinX(), envelope.getMinY()),
+                new Coordinate(envelope.getMaxX(), envelope.getMinY()),
+                new Coordinate(envelope.getMaxX(), envelope.centre().y),
+                new Coordinate(envelope.centre().x, envelope.getMaxY()),
+                new Coordinate(envelope.getMinX(), envelope.getMaxY())
+        );
+
+        blocks = new ArrayList<>();
+        for (Polygon block : localBlocks) {
+            blocks.add((Polygon) ProjectionUtils.transformFromLocalCRS(crs, block));
+        }
+        streets = new ArrayList<>();
+        for (LineString street : localStreets) {
+            streets.add((LineString) ProjectionUtils.transformFromLocalCRS(crs, street));
+        }
+        district = ProjectionUtils.transformFromLocalCRS(crs, localDistrict);
+    }
+}
@@ -0,0 +1,90 @@
+package ru.itmo.idu.geometry.benchmarks;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFactory;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.impl.CoordinateArraySequenceFactory;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.itmo.idu.geometry.GeometryContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a million vertices (10000 lines of 100 vertices) with each CoordinateSequenceFactory. All allocated objects
+ * are retained by the resulting lines, so gc.alloc.rate.norm of "-prof gc" is heap taken by a million vertices
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CoordinateSequenceBenchmark {
+
+    private static final int LINES_COUNT = 10_000;
+
+    private static final int VERTICES_PER_LINE = 100;
+
+    @Param({"array", "packedDouble", "packedFloat"})
+    public String factoryName;
+
+    private GeometryFactory geometryFactory;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        CoordinateSequenceFactory factory;
+        switch (factoryName) {
+            case "packedDouble":
+                factory = PackedCoordinateSequenceFactory.DOUBLE_FACTORY;
+                break;
+            case "packedFloat":
+                factory = PackedCoordinateSequenceFactory.FLOAT_FACTORY;
+                break;
+            default:
+                factory = CoordinateArraySequenceFactory.instance();
+        }
+        geometryFactory = GeometryContext.builder()
+                .coordinateSequenceFactory(factory)
+                .build()
+                .getGeometryFactory();
+    }
+
+    @Benchmark
+    public LineString[] millionVertices() {
+        var sequenceFactory = geometryFactory.getCoordinateSequenceFactory();
+        boolean array = sequenceFactory instanceof CoordinateArraySequenceFactory;
+        var lines = new LineString[LINES_COUNT];
+        for (int lineIdx = 0; lineIdx < LINES_COUNT; ++lineIdx) {
+            CoordinateSequence sequence;
+            if (array) {
+                var coordinates = new Coordinate[VERTICES_PER_LINE];
+                for (int i = 0; i < VERTICES_PER_LINE; ++i) {
+                    coordinates[i] = new Coordinate(lineIdx, i);
+                }
+                sequence = sequenceFactory.create(coordinates);
+            } else {
+                sequence = sequenceFactory.create(VERTICES_PER_LINE, 2, 0);
+                for (int i = 0; i < VERTICES_PER_LINE; ++i) {
+                    sequence.setOrdinate(i, CoordinateSequence.X, lineIdx);
+                    sequence.setOrdinate(i, CoordinateSequence.Y, i);
+                }
+            }
+            lines[lineIdx] = geometryFactory.createLineString(sequence);
+        }
+        return lines;
+    }
+}
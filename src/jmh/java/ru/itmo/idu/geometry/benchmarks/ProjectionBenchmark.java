@@ -0,0 +1,80 @@
+package ru.itmo.idu.geometry.benchmarks;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.operation.TransformException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.itmo.idu.geometry.CRSUtils;
+import ru.itmo.idu.geometry.ProjectionUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CRS derivation, projection round-trips and projected measurements over all blocks or streets of a district.
+ * Every operation is one pass over the whole district
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    @Benchmark
+    public void deriveLocalCRS(CityBlocks city, Blackhole blackhole) throws FactoryException {
+        for (Polygon block : city.blocks) {
+            blackhole.consume(CRSUtils.getLocalCRS(block));
+        }
+    }
+
+    @Benchmark
+    public void projectionRoundTrip(CityBlocks city, Blackhole blackhole) throws FactoryException, TransformException {
+        for (Polygon block : city.blocks) {
+            Geometry local = ProjectionUtils.transformToLocalCRS(city.crs, block);
+            blackhole.consume(ProjectionUtils.transformFromLocalCRS(city.crs, local));
+        }
+    }
+
+    @Benchmark
+    public double calcArea(CityBlocks city) {
+        double result = 0;
+        for (Polygon block : city.blocks) {
+            result += ProjectionUtils.calcArea(block);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public double calcAreaSharedCRS(CityBlocks city) {
+        double result = 0;
+        for (Polygon block : city.blocks) {
+            result += ProjectionUtils.calcArea(city.crs, block);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public double calcLength(CityBlocks city) {
+        double result = 0;
+        for (LineString street : city.streets) {
+            result += ProjectionUtils.calcLength(street);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public void bufferProjected(CityBlocks city, Blackhole blackhole) {
+        for (Polygon block : city.blocks) {
+            blackhole.consume(ProjectionUtils.bufferProjected(city.crs, block, 10));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.itmo.idu.geometry.benchmarks;
+
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.itmo.idu.geometry.GeometryUtils;
+import ru.itmo.idu.geometry.SafeOperations;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Safe predicates and overlays of every block of a district against the district polygon, which covers some blocks,
+ * crosses some and is disjoint with others
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SafeOperationsBenchmark {
+
+    private PreparedGeometry preparedDistrict;
+
+    @Setup(Level.Trial)
+    public void setup(CityBlocks city) {
+        preparedDistrict = GeometryUtils.prepareGeometry(city.district);
+    }
+
+    @Benchmark
+    public int safeIntersectsPrepared(CityBlocks city) {
+        int result = 0;
+        for (Polygon block : city.blocks) {
+            result += SafeOperations.safeIntersects(preparedDistrict, block) ? 1 : 0;
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int safeCoversPrepared(CityBlocks city) {
+        int result = 0;
+        for (Polygon block : city.blocks) {
+            result += SafeOperations.safeCovers(preparedDistrict, block) ? 1 : 0;
+        }
+        return result;
+    }
+
+    @Benchmark
+    public void safeIntersection(CityBlocks city, Blackhole blackhole) {
+        for (Polygon block : city.blocks) {
+            blackhole.consume(SafeOperations.safeIntersection(city.district, block));
+        }
+    }
+
+    @Benchmark
+    public void safeDifference(CityBlocks city, Blackhole blackhole) {
+        for (Polygon block : city.blocks) {
+            blackhole.consume(SafeOperations.safeDifference(city.district, block));
+        }
+    }
+
+    @Benchmark
+    public void safeUnionNeighbours(CityBlocks city, Blackhole blackhole) {
+        List<Polygon> blocks = city.blocks;
+        for (int i = 1; i < blocks.size(); ++i) {
+            blackhole.consume(SafeOperations.safeUnion(blocks.get(i - 1), blocks.get(i)));
+        }
+    }
+}
@@ -1,17 +1,32 @@
 package ru.itmo.idu.geometry;
 
+import lombok.extern.slf4j.Slf4j;
+import org.geotools.geometry.jts.JTS;
 import org.locationtech.jts.algorithm.Angle;
 import org.locationtech.jts.geom.*;
+import org.locationtech.jts.geom.impl.CoordinateArraySequence;
+import org.locationtech.jts.operation.buffer.BufferOp;
 import org.locationtech.jts.operation.buffer.BufferParameters;
 import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.TransformException;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Complicated geometry processing algorithms
  */
+@Slf4j
 public class Algorithms {
 
     /**
@@ -20,84 +35,302 @@ public class Algorithms {
      * Resulting geometry is an approximation of source one and may contain artifacts and topology issues.
      * @param block Geometry in WGS84
      * @param minWidth Width in meters
+     * @return Cleaned geometry in WGS84 or null if nothing is left after removing thin parts
      */
     public static Geometry removeThinSpikes(Geometry block, double minWidth) {
-        Geometry cropped = ProjectionUtils.bufferProjected(block, - minWidth / 2);
-        if (cropped.isEmpty()) {
+        return removeThinSpikes(GeometryContext.getDefault(), block, minWidth);
+    }
+
+    /**
+     * Same as above, local CRS and transforms are taken from given context
+     */
+    public static Geometry removeThinSpikes(GeometryContext context, Geometry block, double minWidth) {
+        if (block.isEmpty()) {
+            return null;
+        }
+        try {
+            return removeThinSpikes(context, context.getLocalCRS(block), block, minWidth);
+        } catch (FactoryException e) {
+            log.error("Failed to get local CRS", e);
+            return block;
+        }
+    }
+
+    /**
+     * Same as above, but uses provided local CRS. Block is projected once, all buffering, intersection and
+     * simplification is done in local meters and the result is projected back to WGS84
+     */
+    public static Geometry removeThinSpikes(CoordinateReferenceSystem localCrs, Geometry block, double minWidth) {
+        return removeThinSpikes(GeometryContext.getDefault(), localCrs, block, minWidth);
+    }
+
+    public static Geometry removeThinSpikes(GeometryContext context, CoordinateReferenceSystem localCrs, Geometry block, double minWidth) {
+        if (block.isEmpty()) {
             return null;
         }
-        Geometry bufferedBlock = ProjectionUtils.bufferProjected(
-                cropped, minWidth / 2, new BufferParameters(4, BufferParameters.CAP_SQUARE, BufferParameters.JOIN_MITRE, BufferParameters.DEFAULT_MITRE_LIMIT));
-        Geometry result = bufferedBlock.intersection(block);
-        // its ok to use mercator here for geometry simplification, as we do not need precise results
-        Geometry projected = ProjectionUtils.transformToMercator(result);
-        projected = TopologyPreservingSimplifier.simplify(projected, 5);
-        return ProjectionUtils.transformFromMercator(projected);
+        try {
+            return removeThinSpikes(
+                    context.getTransformFromWGS84(localCrs),
+                    context.getTransformToWGS84(localCrs),
+                    block,
+                    minWidth
+            );
+        } catch (FactoryException e) {
+            log.error("Failed to find local CRS transform", e);
+            return block;
+        }
+    }
+
+    /**
+     * Batch version of removeThinSpikes() for cleaning whole layers of blocks. A single local CRS is used for the whole layer,
+     * so layer shall not be larger than a city. Results are returned in the same order as source blocks, and contain null
+     * for blocks that were completely removed.
+     * @param blocks Blocks in WGS84
+     * @param parallel Process blocks in parallel
+     */
+    public static List<Geometry> removeThinSpikes(Collection<? extends Geometry> blocks, double minWidth, boolean parallel) {
+        return removeThinSpikes(GeometryContext.getDefault(), blocks, minWidth, parallel);
+    }
+
+    public static List<Geometry> removeThinSpikes(GeometryContext context,
+                                                  Collection<? extends Geometry> blocks,
+                                                  double minWidth,
+                                                  boolean parallel) {
+        if (blocks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Envelope layerEnvelope = new Envelope();
+        blocks.forEach(block -> layerEnvelope.expandToInclude(block.getEnvelopeInternal()));
+        try {
+            return removeThinSpikes(context, context.getLocalCRS(layerEnvelope.centre()), blocks, minWidth, parallel);
+        } catch (FactoryException e) {
+            log.error("Failed to get local CRS", e);
+            return new ArrayList<>(blocks);
+        }
+    }
+
+    public static List<Geometry> removeThinSpikes(CoordinateReferenceSystem localCrs,
+                                                  Collection<? extends Geometry> blocks,
+                                                  double minWidth,
+                                                  boolean parallel) {
+        return removeThinSpikes(GeometryContext.getDefault(), localCrs, blocks, minWidth, parallel);
+    }
+
+    public static List<Geometry> removeThinSpikes(GeometryContext context,
+                                                  CoordinateReferenceSystem localCrs,
+                                                  Collection<? extends Geometry> blocks,
+                                                  double minWidth,
+                                                  boolean parallel) {
+        MathTransform globalToLocal;
+        MathTransform localToGlobal;
+        try {
+            globalToLocal = context.getTransformFromWGS84(localCrs);
+            localToGlobal = context.getTransformToWGS84(localCrs);
+        } catch (FactoryException e) {
+            log.error("Failed to find local CRS transform", e);
+            return new ArrayList<>(blocks);
+        }
+        Stream<? extends Geometry> stream = parallel ? blocks.parallelStream() : blocks.stream();
+        return stream
+                .map(block -> block.isEmpty() ? null : removeThinSpikes(globalToLocal, localToGlobal, block, minWidth))
+                .collect(Collectors.toList());
+    }
+
+    private static Geometry removeThinSpikes(MathTransform globalToLocal,
+                                             MathTransform localToGlobal,
+                                             Geometry block,
+                                             double minWidth) {
+        try {
+            Geometry localBlock = JTS.transform(block, globalToLocal);
+            Geometry cropped = BufferOp.bufferOp(localBlock, -minWidth / 2,
+                    new BufferParameters(4, BufferParameters.CAP_ROUND, BufferParameters.JOIN_ROUND, BufferParameters.DEFAULT_MITRE_LIMIT));
+            if (cropped.isEmpty()) {
+                return null;
+            }
+            Geometry bufferedBlock = BufferOp.bufferOp(cropped, minWidth / 2,
+                    new BufferParameters(4, BufferParameters.CAP_SQUARE, BufferParameters.JOIN_MITRE, BufferParameters.DEFAULT_MITRE_LIMIT));
+            Geometry result = bufferedBlock.intersection(localBlock);
+            // we do not need precise results here, so merge points closer than 5 meters
+            result = TopologyPreservingSimplifier.simplify(result, 5);
+            return JTS.transform(result, localToGlobal);
+        } catch (TransformException e) {
+            log.error("Failed to transform block", e);
+            return block;
+        }
     }
 
+    /**
+     * Polygon parts of a MultiPolygon are processed in parallel if there are at least this many of them
+     */
+    private static final int PARALLEL_PARTS_THRESHOLD = 16;
+
     /**
      * Wipes out too narrow angles like /\ and turn them into /-\
+     * Works for Polygons and MultiPolygons including their holes, other geometries are returned unchanged.
+     * @param polygon Geometry in WGS84
+     * @param minWidthMeters Minimal allowed distance between sides of an angle
      */
     public static Geometry removeNarrowAngles(Geometry polygon, double minWidthMeters) {
-        if (!(polygon instanceof Polygon)) {
+        return removeNarrowAngles(GeometryContext.getDefault(), polygon, minWidthMeters);
+    }
+
+    /**
+     * Same as above, local CRS, transforms and geometry factory for the result are taken from given context
+     */
+    public static Geometry removeNarrowAngles(GeometryContext context, Geometry polygon, double minWidthMeters) {
+        if (!(polygon instanceof Polygon || polygon instanceof MultiPolygon) || polygon.isEmpty()) {
+            return polygon;
+        }
+        try {
+            return removeNarrowAngles(context, context.getLocalCRS(polygon), polygon, minWidthMeters);
+        } catch (FactoryException e) {
+            log.error("Failed to get local CRS", e);
             return polygon;
         }
-        Geometry boundary = GeometryUtils.getBoundary(ProjectionUtils.transformToMercator(polygon));
-        Coordinate[] coordinates = boundary.getCoordinates();
-        int length = coordinates.length;
-        List<Coordinate> resultCoordinates = new ArrayList<>(coordinates.length);
+    }
+
+    /**
+     * Same as above, but uses provided local CRS. Geometry is projected once and all rings are processed in local meters
+     */
+    public static Geometry removeNarrowAngles(CoordinateReferenceSystem localCrs, Geometry polygon, double minWidthMeters) {
+        return removeNarrowAngles(GeometryContext.getDefault(), localCrs, polygon, minWidthMeters);
+    }
+
+    public static Geometry removeNarrowAngles(GeometryContext context,
+                                              CoordinateReferenceSystem localCrs,
+                                              Geometry polygon,
+                                              double minWidthMeters) {
+        if (!(polygon instanceof Polygon || polygon instanceof MultiPolygon) || polygon.isEmpty()) {
+            return polygon;
+        }
+        try {
+            Geometry local = JTS.transform(polygon, context.getTransformFromWGS84(localCrs));
+            GeometryFactory factory = context.getGeometryFactory();
+            Geometry result;
+            if (local instanceof Polygon) {
+                result = removeNarrowAngles(factory, (Polygon) local, minWidthMeters);
+                if (result == null) {
+                    return factory.createPolygon();
+                }
+            } else {
+                IntStream partIndices = IntStream.range(0, local.getNumGeometries());
+                if (local.getNumGeometries() >= PARALLEL_PARTS_THRESHOLD) {
+                    partIndices = partIndices.parallel();
+                }
+                Polygon[] parts = partIndices
+                        .mapToObj(idx -> removeNarrowAngles(factory, (Polygon) local.getGeometryN(idx), minWidthMeters))
+                        .filter(Objects::nonNull)
+                        .toArray(Polygon[]::new);
+                result = factory.createMultiPolygon(parts);
+            }
+            return JTS.transform(result, context.getTransformToWGS84(localCrs));
+        } catch (FactoryException | TransformException e) {
+            log.error("Failed to transform polygon", e);
+            return polygon;
+        }
+    }
+
+    /**
+     * Processes shell and holes of a polygon in local meters. Returns null if shell has collapsed, collapsed holes are dropped
+     */
+    private static Polygon removeNarrowAngles(GeometryFactory factory, Polygon polygon, double minWidthMeters) {
+        LinearRing shell = removeNarrowAngles(factory, polygon.getExteriorRing().getCoordinateSequence(), minWidthMeters);
+        if (shell == null) {
+            return null;
+        }
+        List<LinearRing> holes = new ArrayList<>(polygon.getNumInteriorRing());
+        for (int holeIdx = 0; holeIdx < polygon.getNumInteriorRing(); ++holeIdx) {
+            LinearRing hole = removeNarrowAngles(factory, polygon.getInteriorRingN(holeIdx).getCoordinateSequence(), minWidthMeters);
+            if (hole != null) {
+                holes.add(hole);
+            }
+        }
+        return factory.createPolygon(shell, holes.toArray(LinearRing[]::new));
+    }
+
+    /**
+     * Vertex kernel working on a closed ring. For every vertex with angle sharper than 0.9 * 90 degrees either removes it
+     * (if its neighbours are closer than min width) or cuts the angle off, replacing vertex with 2 points on its sides.
+     * Neighbours are always taken from the source ring. Uses only primitive math and a single output buffer.
+     * Returns null if less than 3 vertices are left.
+     */
+    private static LinearRing removeNarrowAngles(GeometryFactory factory, CoordinateSequence ring, double minWidthMeters) {
+        int length = ring.size();
+        if (length < 4) {
+            return null;
+        }
+        // every vertex can be replaced with at most 2 points
+        double[] result = new double[(length - 1) * 4];
+        int resultSize = 0;
 
         for (int pointIdx = 0; pointIdx < length - 1; ++pointIdx) {
             int prevIdx = (pointIdx - 1);
             if (prevIdx < 0) prevIdx = length - 2; // -2 because last point equals to first one and we do not want it
             int nextIdx = (pointIdx + 1) % (length - 1);
 
-            Coordinate point = coordinates[pointIdx];
-            Coordinate prevPoint = coordinates[prevIdx];
-            Coordinate nextPoint = coordinates[nextIdx];
+            double x = ring.getX(pointIdx);
+            double y = ring.getY(pointIdx);
+            double leftDx = ring.getX(prevIdx) - x;
+            double leftDy = ring.getY(prevIdx) - y;
+            double rightDx = ring.getX(nextIdx) - x;
+            double rightDy = ring.getY(nextIdx) - y;
 
-            LineSegment left = new LineSegment(point, prevPoint);
-            LineSegment right = new LineSegment(point, nextPoint);
-
-            double angle = Angle.angleBetween(prevPoint, point, nextPoint);
+            double angle = Angle.diff(Math.atan2(leftDy, leftDx), Math.atan2(rightDy, rightDx));
             if (angle < 0.9 * Math.PI / 2) {
                 double minWidthCustomized = angle < Math.PI / 4 ? minWidthMeters * 2 : minWidthMeters; // for very narrow angles it is better to cut them more
                 // angle is too sharp
-                if (prevPoint.distance(nextPoint) < minWidthCustomized) {
+                if (Math.hypot(rightDx - leftDx, rightDy - leftDy) < minWidthCustomized) {
                     // this angle is so sharp its ends are closer than min width
                     // completely remove middle vertex from result
                     continue;
                 }
 
                 // try to cut off part of an angle in 5 steps
-                double lengthStep = Math.min(left.getLength(), right.getLength()) / 5;
+                double leftLength = Math.hypot(leftDx, leftDy);
+                double rightLength = Math.hypot(rightDx, rightDy);
+                double lengthStep = Math.min(leftLength, rightLength) / 5;
 
                 boolean found = false;
                 for (int i = 1; i <= 5; ++i) {
-                    Coordinate newLeftPoint = left.pointAlong(i * lengthStep / left.getLength());
-                    Coordinate newRightPoint = right.pointAlong(i * lengthStep / right.getLength());
+                    double leftFraction = i * lengthStep / leftLength;
+                    double rightFraction = i * lengthStep / rightLength;
+                    double newLeftX = x + leftDx * leftFraction;
+                    double newLeftY = y + leftDy * leftFraction;
+                    double newRightX = x + rightDx * rightFraction;
+                    double newRightY = y + rightDy * rightFraction;
 
-                    if (newLeftPoint.distance(newRightPoint) > minWidthCustomized) {
-                        resultCoordinates.add(newLeftPoint);
-                        resultCoordinates.add(newRightPoint);
+                    if (Math.hypot(newRightX - newLeftX, newRightY - newLeftY) > minWidthCustomized) {
+                        result[resultSize++] = newLeftX;
+                        result[resultSize++] = newLeftY;
+                        result[resultSize++] = newRightX;
+                        result[resultSize++] = newRightY;
                         found = true;
                         break;
                     }
                 }
                 if (!found) {
                     // didnt find anything, should not really get here
-                    resultCoordinates.add(point);
+                    result[resultSize++] = x;
+                    result[resultSize++] = y;
                 }
 
             } else {
-                resultCoordinates.add(point);
+                result[resultSize++] = x;
+                result[resultSize++] = y;
             }
         }
-        if (resultCoordinates.size() < 3) {
-            return GeometryUtils.geometryFactory.createPolygon();
+        int pointsCount = resultSize / 2;
+        if (pointsCount < 3) {
+            return null;
+        }
+        CoordinateSequence sequence = factory.getCoordinateSequenceFactory().create(pointsCount + 1, 2);
+        for (int i = 0; i < pointsCount; ++i) {
+            sequence.setOrdinate(i, CoordinateSequence.X, result[2 * i]);
+            sequence.setOrdinate(i, CoordinateSequence.Y, result[2 * i + 1]);
         }
-
-        return ProjectionUtils.transformFromMercator(GeometryUtils.makePolygon(resultCoordinates.toArray(new Coordinate[resultCoordinates.size()])));
+        sequence.setOrdinate(pointsCount, CoordinateSequence.X, result[0]);
+        sequence.setOrdinate(pointsCount, CoordinateSequence.Y, result[1]);
+        return factory.createLinearRing(sequence);
     }
 
 
@@ -118,13 +351,173 @@ public class Algorithms {
         return closest;
     }
 
+    /**
+     * Returns up to limit longest segments formed by consecutive coordinates of given geometry, longest first.
+     * Segment lengths are measured in geometry units (degrees for WGS84 geometries)
+     */
     public static List<LineSegment> findLongestBorderSegments(Geometry geometry, int limit) {
-        List<LineSegment> result = new ArrayList<>();
-        for (int i = 0; i < geometry.getCoordinates().length - 1; ++i) {
-            LineSegment ls = new LineSegment(geometry.getCoordinates()[i], geometry.getCoordinates()[i + 1]);
-            result.add(ls);
+        Coordinate[] coordinates = geometry.getCoordinates();
+        return makeSegments(coordinates, findLongestSegmentIndices(new CoordinateArraySequence(coordinates), limit));
+    }
+
+    /**
+     * Same as above, but works directly on a coordinate sequence without copying it
+     */
+    public static List<LineSegment> findLongestBorderSegments(CoordinateSequence sequence, int limit) {
+        int[] indices = findLongestSegmentIndices(sequence, limit);
+        List<LineSegment> result = new ArrayList<>(indices.length);
+        for (int idx : indices) {
+            result.add(new LineSegment(sequence.getCoordinate(idx), sequence.getCoordinate(idx + 1)));
+        }
+        return result;
+    }
+
+    /**
+     * Same as findLongestBorderSegments(), but segments are compared by their length in meters, measured in given local CRS.
+     * Geometry is projected once, returned segments keep original WGS84 coordinates
+     */
+    public static List<LineSegment> findLongestBorderSegmentsProjected(CoordinateReferenceSystem localCrs, Geometry geometry, int limit) {
+        return findLongestBorderSegmentsProjected(GeometryContext.getDefault(), localCrs, geometry, limit);
+    }
+
+    public static List<LineSegment> findLongestBorderSegmentsProjected(GeometryContext context,
+                                                                       CoordinateReferenceSystem localCrs,
+                                                                       Geometry geometry,
+                                                                       int limit) {
+        Coordinate[] coordinates = geometry.getCoordinates();
+        Coordinate[] projectedCoordinates;
+        try {
+            projectedCoordinates = context.transformToLocalCRS(localCrs, geometry).getCoordinates();
+        } catch (Exception e) {
+            log.error("Failed to project geometry, falling back to lengths in degrees", e);
+            projectedCoordinates = coordinates;
+        }
+        return makeSegments(coordinates, findLongestSegmentIndices(new CoordinateArraySequence(projectedCoordinates), limit));
+    }
+
+    public static List<LineSegment> findLongestBorderSegmentsProjected(Geometry geometry, int limit) {
+        return findLongestBorderSegmentsProjected(GeometryContext.getDefault(), geometry, limit);
+    }
+
+    public static List<LineSegment> findLongestBorderSegmentsProjected(GeometryContext context, Geometry geometry, int limit) {
+        if (geometry.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            return findLongestBorderSegmentsProjected(context, context.getLocalCRS(geometry), geometry, limit);
+        } catch (Exception e) {
+            log.error("Failed to get local CRS, falling back to lengths in degrees", e);
+            return findLongestBorderSegments(geometry, limit);
         }
-        result.sort(Comparator.comparingDouble(LineSegment::getLength).reversed());
-        return result.subList(0, Math.min(result.size(), limit));
+    }
+
+    /**
+     * Batch version of findLongestBorderSegments(). Blocks are processed in parallel, results are returned in the same
+     * order as blocks in the source collection.
+     * @param measureInMeters If true, each block is projected to its own local CRS and segments are compared by length in meters
+     */
+    public static List<List<LineSegment>> findLongestBorderSegments(Collection<? extends Geometry> blocks,
+                                                                    int limit,
+                                                                    boolean measureInMeters) {
+        return findLongestBorderSegments(GeometryContext.getDefault(), blocks, limit, measureInMeters);
+    }
+
+    public static List<List<LineSegment>> findLongestBorderSegments(GeometryContext context,
+                                                                    Collection<? extends Geometry> blocks,
+                                                                    int limit,
+                                                                    boolean measureInMeters) {
+        return blocks.parallelStream()
+                .map(block -> measureInMeters
+                        ? findLongestBorderSegmentsProjected(context, block, limit)
+                        : findLongestBorderSegments(block, limit))
+                .collect(Collectors.toList());
+    }
+
+    private static List<LineSegment> makeSegments(Coordinate[] coordinates, int[] startIndices) {
+        List<LineSegment> result = new ArrayList<>(startIndices.length);
+        for (int idx : startIndices) {
+            result.add(new LineSegment(coordinates[idx], coordinates[idx + 1]));
+        }
+        return result;
+    }
+
+    /**
+     * Selects start indices of limit longest segments of a sequence using a bounded min-heap, so only O(n log(limit))
+     * work is done instead of sorting all segments. Among segments of equal length earlier ones win, same as a stable sort.
+     * Returned indices are ordered from the longest segment to the shortest one.
+     */
+    private static int[] findLongestSegmentIndices(CoordinateSequence sequence, int limit) {
+        int segmentsCount = sequence.size() - 1;
+        int heapCapacity = Math.min(Math.max(limit, 0), Math.max(segmentsCount, 0));
+        int[] heapIndices = new int[heapCapacity];
+        double[] heapLengths = new double[heapCapacity];
+        int heapSize = 0;
+        if (heapCapacity == 0) {
+            return heapIndices;
+        }
+        double prevX = sequence.getX(0);
+        double prevY = sequence.getY(0);
+        for (int i = 0; i < segmentsCount; ++i) {
+            double x = sequence.getX(i + 1);
+            double y = sequence.getY(i + 1);
+            double length = Math.hypot(x - prevX, y - prevY);
+            prevX = x;
+            prevY = y;
+            if (heapSize < heapCapacity) {
+                // sift up
+                int pos = heapSize++;
+                while (pos > 0) {
+                    int parent = (pos - 1) / 2;
+                    if (!isWorse(length, i, heapLengths[parent], heapIndices[parent])) {
+                        break;
+                    }
+                    heapLengths[pos] = heapLengths[parent];
+                    heapIndices[pos] = heapIndices[parent];
+                    pos = parent;
+                }
+                heapLengths[pos] = length;
+                heapIndices[pos] = i;
+            } else if (length > heapLengths[0]) {
+                // replace the worst element and sift down
+                int pos = 0;
+                while (true) {
+                    int child = 2 * pos + 1;
+                    if (child >= heapSize) {
+                        break;
+                    }
+                    if (child + 1 < heapSize && isWorse(heapLengths[child + 1], heapIndices[child + 1], heapLengths[child], heapIndices[child])) {
+                        ++child;
+                    }
+                    if (!isWorse(heapLengths[child], heapIndices[child], length, i)) {
+                        break;
+                    }
+                    heapLengths[pos] = heapLengths[child];
+                    heapIndices[pos] = heapIndices[child];
+                    pos = child;
+                }
+                heapLengths[pos] = length;
+                heapIndices[pos] = i;
+            }
+        }
+        // heap holds the answer in arbitrary order, sort it (only limit elements) from best to worst
+        Integer[] order = new Integer[heapSize];
+        for (int i = 0; i < heapSize; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            if (heapIndices[a] == heapIndices[b]) {
+                return 0;
+            }
+            return isWorse(heapLengths[a], heapIndices[a], heapLengths[b], heapIndices[b]) ? 1 : -1;
+        });
+        int[] result = new int[heapSize];
+        for (int i = 0; i < heapSize; ++i) {
+            result[i] = heapIndices[order[i]];
+        }
+        return result;
+    }
+
+    private static boolean isWorse(double length1, int idx1, double length2, int idx2) {
+        return length1 < length2 || (length1 == length2 && idx1 > idx2);
     }
 }
@@ -0,0 +1,148 @@
+package ru.itmo.idu.geometry;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.impl.CoordinateArraySequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Swaps X and Y of coordinates (lat-lon to lon-lat and back). Replacement for InvertCoordinateFilter, which hashes every
+ * coordinate by value and so skips distinct coordinates that are equal to an already swapped one.
+ * <p>
+ * Works on whole coordinate sequences and does not allocate anything per vertex. Sequences backed by Coordinate objects
+ * are checked by identity for the only sharing that JTS geometries commonly have: closing point of a ring being the same
+ * instance as the first one. Coordinate instances shared between different geometries are swapped once per geometry,
+ * use swapAxesCopy() for such geometries.
+ */
+public class AxisSwap {
+
+    /**
+     * Swaps all sequences of a geometry in place. Can be applied to a geometry with Geometry.apply()
+     */
+    public static class SwapAxesFilter implements CoordinateSequenceFilter {
+
+        @Override
+        public void filter(CoordinateSequence seq, int i) {
+            // whole sequence is swapped at once, other indices are no-op
+            if (i == 0) {
+                swapAxes(seq);
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            return false;
+        }
+
+        @Override
+        public boolean isGeometryChanged() {
+            return true;
+        }
+    }
+
+    private static final SwapAxesFilter FILTER = new SwapAxesFilter();
+
+    /**
+     * Swaps X and Y of all coordinates of a geometry in place and returns it
+     */
+    public static <T extends Geometry> T swapAxes(T geometry) {
+        if (geometry != null && !geometry.isEmpty()) {
+            geometry.apply(FILTER);
+        }
+        return geometry;
+    }
+
+    /**
+     * Returns a copy of geometry with X and Y swapped, source geometry is not changed. Copy has no shared
+     * Coordinate instances, so this is safe for any geometry
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Geometry> T swapAxesCopy(T geometry) {
+        if (geometry == null) {
+            return null;
+        }
+        return swapAxes((T) geometry.copy());
+    }
+
+    /**
+     * Swaps geometries in place.
+     * @param parallel Process geometries in parallel. Geometries shall not share Coordinate instances then
+     */
+    public static void swapAxes(Collection<? extends Geometry> geometries, boolean parallel) {
+        var stream = parallel ? geometries.parallelStream() : geometries.stream();
+        stream.forEach(AxisSwap::swapAxes);
+    }
+
+    /**
+     * Returns swapped copies of geometries in the same order as source ones
+     */
+    public static <T extends Geometry> List<T> swapAxesCopy(Collection<T> geometries, boolean parallel) {
+        var stream = parallel ? geometries.parallelStream() : geometries.stream();
+        return stream.map(AxisSwap::swapAxesCopy).collect(Collectors.toList());
+    }
+
+    /**
+     * Swaps X and Y of every coordinate of a sequence in place. Other ordinates are not changed
+     */
+    public static void swapAxes(CoordinateSequence seq) {
+        if (seq instanceof CoordinateArraySequence) {
+            Coordinate[] coords = ((CoordinateArraySequence) seq).toCoordinateArray();
+            int size = coords.length;
+            if (size > 1 && coords[size - 1] == coords[0]) {
+                --size;
+            }
+            for (int i = 0; i < size; ++i) {
+                double x = coords[i].x;
+                coords[i].x = coords[i].y;
+                coords[i].y = x;
+            }
+        } else if (seq instanceof PackedCoordinateSequence.Double) {
+            swapAxes(((PackedCoordinateSequence.Double) seq).getRawCoordinates(), seq.getDimension());
+            resetCachedCoordinates(seq);
+        } else if (seq instanceof PackedCoordinateSequence.Float) {
+            swapAxes(((PackedCoordinateSequence.Float) seq).getRawCoordinates(), seq.getDimension());
+            resetCachedCoordinates(seq);
+        } else {
+            for (int i = 0; i < seq.size(); ++i) {
+                double x = seq.getX(i);
+                seq.setOrdinate(i, CoordinateSequence.X, seq.getY(i));
+                seq.setOrdinate(i, CoordinateSequence.Y, x);
+            }
+        }
+    }
+
+    /**
+     * Packed sequences cache Coordinate objects made of raw array, setOrdinate() drops this cache
+     */
+    private static void resetCachedCoordinates(CoordinateSequence seq) {
+        if (seq.size() > 0) {
+            seq.setOrdinate(0, CoordinateSequence.X, seq.getX(0));
+        }
+    }
+
+    /**
+     * Swaps first two ordinates of every coordinate in a packed array x1, y1, [z1, ...] x2, y2 ...
+     * @param dimension Amount of ordinates per coordinate, at least 2
+     */
+    public static void swapAxes(double[] coords, int dimension) {
+        for (int i = 0; i + 1 < coords.length; i += dimension) {
+            double x = coords[i];
+            coords[i] = coords[i + 1];
+            coords[i + 1] = x;
+        }
+    }
+
+    public static void swapAxes(float[] coords, int dimension) {
+        for (int i = 0; i + 1 < coords.length; i += dimension) {
+            float x = coords[i];
+            coords[i] = coords[i + 1];
+            coords[i + 1] = x;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package ru.itmo.idu.geometry;
+
+import lombok.Setter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Applies an operation to every geometry of a source in parallel, e.g. calcArea(), bufferProjected() or repair of
+ * all features of a layer.
+ * <p>
+ * Source is read by the calling thread, which also receives results, so neither source nor result consumer has to be
+ * thread-safe. At most capacity items are submitted and not yet consumed at any moment: reading of source blocks until
+ * results are consumed, so streaming a large GeometryStore keeps a bounded amount of geometries in memory.
+ * <p>
+ * Exception or error thrown by operation for an item is stored in its result and does not stop the batch. Fatal errors
+ * (VirtualMachineError other than StackOverflowError, e.g. OutOfMemoryError) are rethrown by run() on the calling thread.
+ */
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class BatchExecutor {
+
+    /**
+     * Operation applied to each geometry, can throw any checked exception of library calls
+     */
+    @FunctionalInterface
+    public interface GeometryOperation<R> {
+        R apply(Geometry geometry) throws Exception;
+    }
+
+    /**
+     * Result of operation on a single geometry
+     */
+    @Value
+    public static class ItemResult<R> {
+        /**
+         * Index of geometry in source
+         */
+        long index;
+        Geometry source;
+        /**
+         * Null if operation failed
+         */
+        R result;
+        /**
+         * Exception or error (e.g. StackOverflowError on a huge geometry) thrown by operation, null if it succeeded
+         */
+        Throwable error;
+        /**
+         * Duration of operation on this item
+         */
+        long nanos;
+
+        public boolean isSuccessful() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Throughput and latencies of a batch. Latency is a duration of operation on a single item, without waiting in queue.
+     * Percentiles are precise to about 3%
+     */
+    @Value
+    public static class BatchStats {
+        long itemsCount;
+        long failedCount;
+        long elapsedNanos;
+        long latencyP50Nanos;
+        long latencyP90Nanos;
+        long latencyP99Nanos;
+        long latencyMaxNanos;
+
+        /**
+         * Items per second
+         */
+        public double getThroughput() {
+            return elapsedNanos > 0 ? itemsCount * 1e9 / elapsedNanos : 0.0;
+        }
+    }
+
+    @Value
+    public static class BatchResult<R> {
+        List<ItemResult<R>> items;
+        BatchStats stats;
+
+        /**
+         * Results of successful items in source order, failed items are skipped
+         */
+        public List<R> getResults() {
+            return items.stream()
+                    .filter(ItemResult::isSuccessful)
+                    .map(ItemResult::getResult)
+                    .collect(Collectors.toList());
+        }
+
+        public List<ItemResult<R>> getFailures() {
+            return items.stream()
+                    .filter(item -> !item.isSuccessful())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Executor running operations. Calling thread blocks while waiting for results, so it shall not be a worker of
+     * this executor
+     */
+    @Setter
+    private Executor executor = ForkJoinPool.commonPool();
+
+    /**
+     * Max amount of items submitted to executor and not yet consumed
+     */
+    @Setter
+    private int capacity = 4 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Consume results in source order. Otherwise results are consumed as soon as they are ready, which keeps executor busy
+     * when some items are much slower than others
+     */
+    @Setter
+    private boolean ordered = true;
+
+    public BatchExecutor() {
+    }
+
+    public BatchExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Executor starting a virtual thread per item, if it is supported by the runtime (Java 21+). Otherwise returns
+     * a new ForkJoinPool. Returned executor shall be shut down by caller
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.debug("Virtual threads are not supported, using ForkJoinPool", e);
+            return new ForkJoinPool();
+        }
+    }
+
+    /**
+     * Applies operation to all geometries and passes results to consumer on the calling thread
+     */
+    public <R> BatchStats run(Iterator<? extends Geometry> source,
+                              GeometryOperation<R> operation,
+                              Consumer<ItemResult<R>> consumer) throws InterruptedException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity shall be positive");
+        }
+        long start = System.nanoTime();
+        var histogram = new LatencyHistogram();
+        BlockingQueue<ItemResult<R>> completed = new LinkedBlockingQueue<>();
+        Map<Long, ItemResult<R>> pending = new HashMap<>();
+        long submitted = 0;
+        // items of all indices below are consumed, also counts consumed items in unordered mode
+        long consumed = 0;
+        long failed = 0;
+
+        while (true) {
+            boolean hasNext = source.hasNext();
+            if (hasNext && submitted - consumed < capacity) {
+                long index = submitted++;
+                Geometry geometry = source.next();
+                executor.execute(() -> completed.add(apply(index, geometry, operation)));
+                continue;
+            }
+            if (submitted == consumed) {
+                break;
+            }
+
+            var item = checkFatal(completed.take());
+            if (ordered) {
+                pending.put(item.getIndex(), item);
+                item = pending.remove(consumed);
+            }
+            while (item != null) {
+                histogram.record(item.getNanos());
+                if (!item.isSuccessful()) {
+                    ++failed;
+                }
+                consumer.accept(item);
+                ++consumed;
+                item = ordered ? pending.remove(consumed) : checkFatal(completed.poll());
+            }
+        }
+
+        if (failed > 0) {
+            log.warn("Operation failed for {} of {} items", failed, consumed);
+        }
+        return new BatchStats(
+                consumed,
+                failed,
+                System.nanoTime() - start,
+                histogram.getPercentile(0.5),
+                histogram.getPercentile(0.9),
+                histogram.getPercentile(0.99),
+                histogram.getMax()
+        );
+    }
+
+    public <R> BatchStats run(Stream<? extends Geometry> source,
+                              GeometryOperation<R> operation,
+                              Consumer<ItemResult<R>> consumer) throws InterruptedException {
+        return run(source.iterator(), operation, consumer);
+    }
+
+    /**
+     * Applies operation to all geometries and collects results. Result items are in source order if executor is ordered
+     */
+    public <R> BatchResult<R> run(Iterable<? extends Geometry> source, GeometryOperation<R> operation) throws InterruptedException {
+        List<ItemResult<R>> items = new ArrayList<>();
+        var stats = run(source.iterator(), operation, items::add);
+        return new BatchResult<>(items, stats);
+    }
+
+    public <R> BatchResult<R> run(Stream<? extends Geometry> source, GeometryOperation<R> operation) throws InterruptedException {
+        List<ItemResult<R>> items = new ArrayList<>();
+        var stats = run(source.iterator(), operation, items::add);
+        return new BatchResult<>(items, stats);
+    }
+
+    private static <R> ItemResult<R> apply(long index, Geometry geometry, GeometryOperation<R> operation) {
+        long start = System.nanoTime();
+        try {
+            R result = operation.apply(geometry);
+            return new ItemResult<>(index, geometry, result, null, System.nanoTime() - start);
+        } catch (Throwable e) {
+            // errors are stored as well, otherwise the calling thread would wait for this item forever
+            log.debug("Operation failed for item {}", index, e);
+            return new ItemResult<>(index, geometry, null, e, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Rethrows fatal error of item, so it is not hidden in results. StackOverflowError is not fatal: stack of the worker
+     * is already unwound when it is caught
+     */
+    private static <R> ItemResult<R> checkFatal(ItemResult<R> item) {
+        if (item != null && item.getError() instanceof VirtualMachineError && !(item.getError() instanceof StackOverflowError)) {
+            log.error("Operation failed for item {} with fatal error, batch is stopped", item.getIndex());
+            throw (VirtualMachineError) item.getError();
+        }
+        return item;
+    }
+
+    /**
+     * Log-linear histogram of durations: values below 32 are counted exactly, others in 32 buckets per power of two.
+     * Memory does not depend on amount of recorded values
+     */
+    static class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 5;
+
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final long[] counts = new long[64 * SUB_BUCKETS];
+
+        private long total = 0;
+
+        private long max = 0;
+
+        void record(long value) {
+            value = Math.max(0, value);
+            ++counts[bucketOf(value)];
+            ++total;
+            max = Math.max(max, value);
+        }
+
+        long getMax() {
+            return max;
+        }
+
+        /**
+         * Upper bound of the bucket containing given quantile, not greater than max recorded value
+         */
+        long getPercentile(double quantile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; ++bucket) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return Math.min(max, upperBoundOf(bucket));
+                }
+            }
+            return max;
+        }
+
+        static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+            int shift = exponent - SUB_BUCKET_BITS;
+            return ((subBucket + 1) << shift) - 1;
+        }
+    }
+}
@@ -1,11 +1,8 @@
 package ru.itmo.idu.geometry;
 
-import org.geotools.referencing.CRS;
-import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.Point;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
@@ -20,8 +17,14 @@ public class CRSUtils {
      * Creates a transform, that can be used to project given geometry from WGS84 to local CRS with meters as X and Y
      */
     public static MathTransform getLocalCRSTransform(Geometry geometry) throws FactoryException {
-        CoordinateReferenceSystem auto = getLocalCRS(geometry);
-        return CRS.findMathTransform(DefaultGeographicCRS.WGS84, auto);
+        return getLocalCRSTransform(GeometryContext.getDefault(), geometry);
+    }
+
+    /**
+     * Same as above, CRS and transform are taken from cache of given context
+     */
+    public static MathTransform getLocalCRSTransform(GeometryContext context, Geometry geometry) throws FactoryException {
+        return context.getTransformFromWGS84(context.getLocalCRS(geometry));
     }
 
     /**
@@ -31,7 +34,6 @@ public class CRSUtils {
      */
 
     public static CoordinateReferenceSystem getLocalCRS(Geometry geometry) throws FactoryException {
-        Point centroid = geometry.getCentroid();
         return getLocalCRS(geometry.getCentroid().getCoordinate());
     }
 
@@ -39,8 +41,29 @@ public class CRSUtils {
         return getLocalCRS(envelope.centre());
     }
 
+    public static CoordinateReferenceSystem getLocalCRS(GeometryContext context, Geometry geometry) throws FactoryException {
+        return context.getLocalCRS(geometry);
+    }
+
+    public static CoordinateReferenceSystem getLocalCRS(GeometryContext context, Envelope envelope) throws FactoryException {
+        return context.getLocalCRS(envelope.centre());
+    }
+
+    /**
+     * Decoded CRS are cached by default GeometryContext
+     */
     public static CoordinateReferenceSystem getLocalCRS(Coordinate coordinate) throws FactoryException {
-        String code = "AUTO:42001," + coordinate.getX() + "," + coordinate.getY();
-        return CRS.decode(code);
+        return getLocalCRS(GeometryContext.getDefault(), coordinate);
+    }
+
+    public static CoordinateReferenceSystem getLocalCRS(GeometryContext context, Coordinate coordinate) throws FactoryException {
+        return context.getLocalCRS(coordinate);
+    }
+
+    /**
+     * Code of a local CRS for given point, that can be stored and later decoded with CRS.decode()
+     */
+    public static String getLocalCRSCode(Coordinate coordinate) {
+        return "AUTO:42001," + coordinate.getX() + "," + coordinate.getY();
     }
 }
@@ -0,0 +1,96 @@
+package ru.itmo.idu.geometry;
+
+import org.geotools.referencing.GeodeticCalculator;
+import org.locationtech.jts.geom.Coordinate;
+
+/**
+ * Distances and directions on Earth surface between WGS84 (lon-lat) coordinates. Azimuths are in degrees, 0 is North,
+ * clockwise. Implementations shall be thread-safe.
+ */
+public interface GeodesicKernel {
+
+    /**
+     * Distance in meters
+     */
+    double distance(Coordinate from, Coordinate to);
+
+    /**
+     * Point at given distance in meters and azimuth from start
+     */
+    Coordinate destination(Coordinate start, double azimuth, double distance);
+
+    double azimuth(Coordinate from, Coordinate to);
+
+    /**
+     * Geodesics on WGS84 ellipsoid with GeoTools GeodeticCalculator. Calculator keeps state, so a new one is made per call
+     */
+    GeodesicKernel ELLIPSOIDAL = new GeodesicKernel() {
+        @Override
+        public double distance(Coordinate from, Coordinate to) {
+            GeodeticCalculator gc = new GeodeticCalculator();
+            gc.setStartingGeographicPoint(from.x, from.y);
+            gc.setDestinationGeographicPoint(to.x, to.y);
+            return gc.getOrthodromicDistance();
+        }
+
+        @Override
+        public Coordinate destination(Coordinate start, double azimuth, double distance) {
+            GeodeticCalculator gc = new GeodeticCalculator();
+            gc.setStartingGeographicPoint(start.x, start.y);
+            gc.setDirection(azimuth, distance);
+            var destination = gc.getDestinationGeographicPoint();
+            return new Coordinate(destination.getX(), destination.getY());
+        }
+
+        @Override
+        public double azimuth(Coordinate from, Coordinate to) {
+            GeodeticCalculator gc = new GeodeticCalculator();
+            gc.setStartingGeographicPoint(from.x, from.y);
+            gc.setDestinationGeographicPoint(to.x, to.y);
+            return gc.getAzimuth();
+        }
+    };
+
+    /**
+     * Great circles on a sphere of Earth mean radius. Several times faster than ELLIPSOIDAL and allocates nothing but results,
+     * error is within 0.5%
+     */
+    GeodesicKernel SPHERICAL = new GeodesicKernel() {
+        private static final double EARTH_RADIUS = 6_371_008.8;
+
+        @Override
+        public double distance(Coordinate from, Coordinate to) {
+            double lat1 = Math.toRadians(from.y);
+            double lat2 = Math.toRadians(to.y);
+            double sinLat = Math.sin((lat2 - lat1) / 2);
+            double sinLon = Math.sin(Math.toRadians(to.x - from.x) / 2);
+            double a = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLon * sinLon;
+            return 2 * EARTH_RADIUS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+        }
+
+        @Override
+        public Coordinate destination(Coordinate start, double azimuth, double distance) {
+            double lat = Math.toRadians(start.y);
+            double bearing = Math.toRadians(azimuth);
+            double angular = distance / EARTH_RADIUS;
+            double destLat = Math.asin(Math.sin(lat) * Math.cos(angular) + Math.cos(lat) * Math.sin(angular) * Math.cos(bearing));
+            double destLon = Math.toRadians(start.x) + Math.atan2(
+                    Math.sin(bearing) * Math.sin(angular) * Math.cos(lat),
+                    Math.cos(angular) - Math.sin(lat) * Math.sin(destLat));
+            // normalize longitude to [-180, 180)
+            double lon = (Math.toDegrees(destLon) + 540) % 360 - 180;
+            return new Coordinate(lon, Math.toDegrees(destLat));
+        }
+
+        @Override
+        public double azimuth(Coordinate from, Coordinate to) {
+            double lat1 = Math.toRadians(from.y);
+            double lat2 = Math.toRadians(to.y);
+            double deltaLon = Math.toRadians(to.x - from.x);
+            double y = Math.sin(deltaLon) * Math.cos(lat2);
+            double x = Math.cos(lat1) * Math.sin(lat2) - Math.sin(lat1) * Math.cos(lat2) * Math.cos(deltaLon);
+            // GeodeticCalculator returns azimuths in [-180, 180]
+            return Math.toDegrees(Math.atan2(y, x));
+        }
+    };
+}
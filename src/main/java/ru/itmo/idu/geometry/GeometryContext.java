@@ -0,0 +1,401 @@
+package ru.itmo.idu.geometry;
+
+import lombok.extern.slf4j.Slf4j;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequenceFactory;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.TransformException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Everything library operations depend on: geometry factory with its precision model, caches of decoded CRS and
+ * transforms, geodesic kernel and metrics listener.
+ * <p>
+ * Context is immutable and thread-safe, so a single instance can be shared by all threads of a pipeline without any
+ * external synchronization: configuration is final, caches lock only for a map lookup and all cached CRS, transforms and
+ * factories are thread-safe themselves. Use toBuilder() to make a context with different settings.
+ * <p>
+ * Static helpers of GeometryUtils, CRSUtils and ProjectionUtils delegate to the default context, which can be replaced
+ * with setDefault(). Pass a context explicitly to run different settings side by side.
+ */
+@Slf4j
+public final class GeometryContext {
+
+    /**
+     * Receives metrics of context operations. Methods are called from worker threads and shall be thread-safe and fast
+     */
+    public interface MetricsListener {
+
+        MetricsListener NONE = new MetricsListener() {};
+
+        /**
+         * Called after a projection operation with its duration
+         */
+        default void onOperation(String operation, long nanos) {}
+
+        /**
+         * Called when an operation failed and fell back to a less precise result, e.g. area in degrees
+         */
+        default void onFallback(String operation, Exception error) {}
+
+        default void onCacheMiss(String cache) {}
+    }
+
+    public static class Builder {
+        private GeometryFactory geometryFactory = new GeometryFactory();
+        private GeodesicKernel geodesicKernel = GeodesicKernel.ELLIPSOIDAL;
+        private MetricsListener metricsListener = MetricsListener.NONE;
+        private int cacheSize = DEFAULT_CACHE_SIZE;
+        private double localCrsStep = DEFAULT_LOCAL_CRS_STEP;
+
+        public Builder geometryFactory(GeometryFactory geometryFactory) {
+            this.geometryFactory = geometryFactory;
+            return this;
+        }
+
+        public Builder precisionModel(PrecisionModel precisionModel) {
+            this.geometryFactory = new GeometryFactory(precisionModel, geometryFactory.getSRID(), geometryFactory.getCoordinateSequenceFactory());
+            return this;
+        }
+
+        public Builder coordinateSequenceFactory(CoordinateSequenceFactory coordinateSequenceFactory) {
+            this.geometryFactory = new GeometryFactory(geometryFactory.getPrecisionModel(), geometryFactory.getSRID(), coordinateSequenceFactory);
+            return this;
+        }
+
+        public Builder geodesicKernel(GeodesicKernel geodesicKernel) {
+            this.geodesicKernel = geodesicKernel;
+            return this;
+        }
+
+        public Builder metricsListener(MetricsListener metricsListener) {
+            this.metricsListener = metricsListener != null ? metricsListener : MetricsListener.NONE;
+            return this;
+        }
+
+        /**
+         * Max amount of entries in each cache, least recently used entries are evicted when cache is full
+         */
+        public Builder cacheSize(int cacheSize) {
+            if (cacheSize <= 0) {
+                throw new IllegalArgumentException("cacheSize shall be positive");
+            }
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * Centres of local CRS are rounded to this step in degrees, so that nearby geometries share a cached CRS.
+         * 0 makes a separate CRS for every centre, which is almost never taken from cache for per-geometry calls
+         */
+        public Builder localCrsStep(double localCrsStep) {
+            this.localCrsStep = Math.max(0.0, localCrsStep);
+            return this;
+        }
+
+        public GeometryContext build() {
+            return new GeometryContext(this);
+        }
+    }
+
+    /**
+     * Transforms are cached by CRS instances, which come from the CRS cache, so identity is enough and cheaper
+     * than equals() of CRS objects
+     */
+    private static final class TransformKey {
+        private final CoordinateReferenceSystem source;
+        private final CoordinateReferenceSystem target;
+
+        TransformKey(CoordinateReferenceSystem source, CoordinateReferenceSystem target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TransformKey && ((TransformKey) o).source == source && ((TransformKey) o).target == target;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(source) + System.identityHashCode(target);
+        }
+    }
+
+    private static final int DEFAULT_CACHE_SIZE = 1024;
+
+    /**
+     * Moves centre of a local CRS by less than 600 meters, which changes projection scale at the geometry by less than 1e-8
+     */
+    private static final double DEFAULT_LOCAL_CRS_STEP = 0.01;
+
+    private static final String MERCATOR_CODE = "EPSG:3857";
+
+    private static volatile GeometryContext defaultContext = new Builder().build();
+
+    private final GeometryFactory geometryFactory;
+
+    private final PreparedGeometryFactory preparedGeometryFactory = new PreparedGeometryFactory();
+
+    private final GeodesicKernel geodesicKernel;
+
+    private final MetricsListener metricsListener;
+
+    private final int cacheSize;
+
+    private final double localCrsStep;
+
+    private final LruCache<String, CoordinateReferenceSystem> crsCache;
+
+    private final LruCache<TransformKey, MathTransform> transformCache;
+
+    private GeometryContext(Builder builder) {
+        this.geometryFactory = builder.geometryFactory;
+        this.geodesicKernel = builder.geodesicKernel;
+        this.metricsListener = builder.metricsListener;
+        this.cacheSize = builder.cacheSize;
+        this.localCrsStep = builder.localCrsStep;
+        this.crsCache = new LruCache<>(cacheSize);
+        this.transformCache = new LruCache<>(cacheSize);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder with settings of this context. Caches are not shared with the new context
+     */
+    public Builder toBuilder() {
+        return new Builder()
+                .geometryFactory(geometryFactory)
+                .geodesicKernel(geodesicKernel)
+                .metricsListener(metricsListener)
+                .cacheSize(cacheSize)
+                .localCrsStep(localCrsStep);
+    }
+
+    /**
+     * Context used by static helpers
+     */
+    public static GeometryContext getDefault() {
+        return defaultContext;
+    }
+
+    public static synchronized void setDefault(GeometryContext context) {
+        if (context == null) {
+            throw new IllegalArgumentException("Default context can not be null");
+        }
+        defaultContext = context;
+    }
+
+    /**
+     * Replaces default context with a changed copy. Concurrent updates do not lose each other's changes
+     */
+    public static synchronized void updateDefault(UnaryOperator<Builder> changes) {
+        defaultContext = changes.apply(defaultContext.toBuilder()).build();
+    }
+
+    public GeometryFactory getGeometryFactory() {
+        return geometryFactory;
+    }
+
+    public PrecisionModel getPrecisionModel() {
+        return geometryFactory.getPrecisionModel();
+    }
+
+    public GeodesicKernel getGeodesicKernel() {
+        return geodesicKernel;
+    }
+
+    public MetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    public PreparedGeometry prepare(Geometry geometry) {
+        return preparedGeometryFactory.create(geometry);
+    }
+
+    /**
+     * Decodes CRS with CRS.decode(), decoded CRS are cached by code
+     */
+    public CoordinateReferenceSystem decodeCRS(String code) throws FactoryException {
+        CoordinateReferenceSystem crs = crsCache.get(code);
+        if (crs == null) {
+            metricsListener.onCacheMiss("crs");
+            crs = CRS.decode(code);
+            crsCache.put(code, crs);
+        }
+        return crs;
+    }
+
+    /**
+     * Local metric CRS with centre in given WGS84 coordinate rounded to localCrsStep, see CRSUtils.getLocalCRSCode()
+     */
+    public CoordinateReferenceSystem getLocalCRS(Coordinate coordinate) throws FactoryException {
+        if (localCrsStep > 0) {
+            double scale = 1.0 / localCrsStep;
+            coordinate = new Coordinate(Math.rint(coordinate.x * scale) / scale, Math.rint(coordinate.y * scale) / scale);
+        }
+        return decodeCRS(CRSUtils.getLocalCRSCode(coordinate));
+    }
+
+    /**
+     * Local metric CRS with centre in centroid of given WGS84 geometry
+     */
+    public CoordinateReferenceSystem getLocalCRS(Geometry geometry) throws FactoryException {
+        return getLocalCRS(geometry.getCentroid().getCoordinate());
+    }
+
+    public CoordinateReferenceSystem getMercatorCRS() throws FactoryException {
+        return decodeCRS(MERCATOR_CODE);
+    }
+
+    /**
+     * Transform between two CRS, transforms are cached
+     */
+    public MathTransform getTransform(CoordinateReferenceSystem source, CoordinateReferenceSystem target) throws FactoryException {
+        var key = new TransformKey(source, target);
+        MathTransform transform = transformCache.get(key);
+        if (transform == null) {
+            metricsListener.onCacheMiss("transform");
+            transform = CRS.findMathTransform(source, target);
+            transformCache.put(key, transform);
+        }
+        return transform;
+    }
+
+    public MathTransform getTransformFromWGS84(CoordinateReferenceSystem crs) throws FactoryException {
+        return getTransform(DefaultGeographicCRS.WGS84, crs);
+    }
+
+    public MathTransform getTransformToWGS84(CoordinateReferenceSystem crs) throws FactoryException {
+        return getTransform(crs, DefaultGeographicCRS.WGS84);
+    }
+
+    public Geometry transformToLocalCRS(CoordinateReferenceSystem crs, Geometry geometry) throws FactoryException, TransformException {
+        if (geometry.isEmpty()) {
+            return geometry;
+        }
+        long start = System.nanoTime();
+        Geometry result = JTS.transform(geometry, getTransformFromWGS84(crs));
+        metricsListener.onOperation("transformToLocalCRS", System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Projects WGS84 geometry to a local CRS around its centroid
+     */
+    public Geometry transformToLocalCRS(Geometry geometry) throws FactoryException, TransformException {
+        if (geometry.isEmpty()) {
+            return geometry;
+        }
+        return transformToLocalCRS(getLocalCRS(geometry), geometry);
+    }
+
+    public Geometry transformFromLocalCRS(CoordinateReferenceSystem crs, Geometry geometry) throws FactoryException, TransformException {
+        if (geometry.isEmpty()) {
+            return geometry;
+        }
+        long start = System.nanoTime();
+        Geometry result = JTS.transform(geometry, getTransformToWGS84(crs));
+        metricsListener.onOperation("transformFromLocalCRS", System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Area of a WGS84 geometry in square meters. Falls back to area in degrees if projection fails
+     */
+    public double calcArea(Geometry geometry) {
+        if (geometry.isEmpty()) {
+            return 0.0;
+        }
+        try {
+            return calcArea(getLocalCRS(geometry), geometry);
+        } catch (FactoryException e) {
+            log.error("Failed to calc area", e);
+            metricsListener.onFallback("calcArea", e);
+            return geometry.getArea();
+        }
+    }
+
+    public double calcArea(CoordinateReferenceSystem crs, Geometry geometry) {
+        if (geometry.isEmpty()) {
+            return 0.0;
+        }
+        try {
+            return transformToLocalCRS(crs, geometry).getArea();
+        } catch (Exception e) {
+            log.error("Failed to calc area", e);
+            metricsListener.onFallback("calcArea", e);
+            return geometry.getArea();
+        }
+    }
+
+    /**
+     * Length of a WGS84 geometry in meters. Falls back to length in degrees if projection fails
+     */
+    public double calcLength(Geometry geometry) {
+        if (geometry.isEmpty()) {
+            return 0.0;
+        }
+        try {
+            return calcLength(getLocalCRS(geometry), geometry);
+        } catch (FactoryException e) {
+            log.error("Failed to calc length", e);
+            metricsListener.onFallback("calcLength", e);
+            return geometry.getLength();
+        }
+    }
+
+    public double calcLength(CoordinateReferenceSystem crs, Geometry geometry) {
+        if (geometry.isEmpty()) {
+            return 0.0;
+        }
+        try {
+            return transformToLocalCRS(crs, geometry).getLength();
+        } catch (Exception e) {
+            log.error("Failed to calc length", e);
+            metricsListener.onFallback("calcLength", e);
+            return geometry.getLength();
+        }
+    }
+
+    /**
+     * Map evicting least recently used entries. Values are computed by callers outside of the lock, so concurrent misses
+     * may decode the same CRS twice, which is cheaper than holding the lock while decoding
+     */
+    private static final class LruCache<K, V> {
+        private final Map<K, V> map;
+
+        LruCache(int maxSize) {
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized V get(K key) {
+            return map.get(key);
+        }
+
+        synchronized void put(K key, V value) {
+            map.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ru.itmo.idu.geometry;
+
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Lazy depth-first traversal over simple parts (ones that have getNumGeometries() = 1) of a GeometryCollection of
+ * arbitrary depth. Visits parts in the same order as GeometryUtils.flattenGeometry(), but does not build any intermediate
+ * lists and can be split for parallel streams.
+ * Use GeometryUtils.streamGeometryParts() to get a Stream.
+ */
+public class GeometryPartsSpliterator implements Spliterator<Geometry> {
+
+    /**
+     * Range of children of a collection that are not yet visited
+     */
+    private static class Frame {
+        final Geometry collection;
+        int index;
+        final int end;
+
+        Frame(Geometry collection, int index, int end) {
+            this.collection = collection;
+            this.index = index;
+            this.end = end;
+        }
+
+        int remaining() {
+            return end - index;
+        }
+    }
+
+    /**
+     * First element is the outermost collection, last one is the collection currently being traversed
+     */
+    private Deque<Frame> stack = new ArrayDeque<>();
+
+    public GeometryPartsSpliterator(Geometry geometry) {
+        if (geometry != null && !geometry.isEmpty()) {
+            stack.addLast(new Frame(geometry, 0, geometry.getNumGeometries()));
+        }
+    }
+
+    private GeometryPartsSpliterator(Deque<Frame> stack) {
+        this.stack = stack;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Geometry> action) {
+        while (!stack.isEmpty()) {
+            Frame top = stack.peekLast();
+            if (top.index >= top.end) {
+                stack.removeLast();
+                continue;
+            }
+            Geometry part = top.collection.getGeometryN(top.index++);
+            if (part.getNumGeometries() > 1) {
+                stack.addLast(new Frame(part, 0, part.getNumGeometries()));
+            } else {
+                action.accept(part);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits off a prefix: collections that are currently being traversed plus first half of not yet visited children
+     * of the outermost collection. This spliterator keeps the second half.
+     */
+    @Override
+    public Spliterator<Geometry> trySplit() {
+        // outermost collections that have no more children left are of no use for splitting
+        while (stack.size() > 1 && stack.peekFirst().remaining() == 0) {
+            stack.removeFirst();
+        }
+        if (stack.isEmpty()) {
+            return null;
+        }
+        Frame outer = stack.peekFirst();
+        int remaining = outer.remaining();
+        boolean hasStartedParts = stack.size() > 1;
+        if (remaining < 2 && !(hasStartedParts && remaining == 1)) {
+            return null;
+        }
+        int mid = outer.index + remaining / 2;
+
+        Deque<Frame> prefix = stack;
+        prefix.removeFirst();
+        prefix.addFirst(new Frame(outer.collection, outer.index, mid));
+        stack = new ArrayDeque<>();
+        stack.addLast(new Frame(outer.collection, mid, outer.end));
+        return new GeometryPartsSpliterator(prefix);
+    }
+
+    /**
+     * Amount of not yet visited children of all collections being traversed. Is exact for collections without nested
+     * collections
+     */
+    @Override
+    public long estimateSize() {
+        long size = 0;
+        for (Frame frame : stack) {
+            size += frame.remaining();
+        }
+        return size;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+}
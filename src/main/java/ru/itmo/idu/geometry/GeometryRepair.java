@@ -0,0 +1,146 @@
+package ru.itmo.idu.geometry;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.util.GeometryFixer;
+import org.locationtech.jts.operation.valid.IsValidOp;
+import org.locationtech.jts.operation.valid.TopologyValidationError;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Repairs invalid geometries, one by one or in batches.
+ * Uses JTS GeometryFixer, which can handle any kind of topology error. If it fails or produces an invalid or empty geometry,
+ * techniques from GeometryUtils.fixGeometry() are tried. Valid geometries are returned as is after a single validity check.
+ */
+@Slf4j
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class GeometryRepair {
+
+    public enum Method {
+        /**
+         * Geometry was already valid and was not changed
+         */
+        NONE,
+        /**
+         * Repaired by JTS GeometryFixer
+         */
+        GEOMETRY_FIXER,
+        /**
+         * Repaired by GeometryUtils.fixGeometry()
+         */
+        FALLBACK,
+        /**
+         * All methods failed, result contains source geometry
+         */
+        FAILED
+    }
+
+    /**
+     * Result of repairing a single geometry
+     */
+    @Value
+    public static class RepairReport {
+        /**
+         * Index of geometry in source collection
+         */
+        int index;
+        Geometry source;
+        Geometry result;
+        /**
+         * Validation error of source geometry, null if it was valid
+         */
+        TopologyValidationError error;
+        Method method;
+
+        public boolean isRepaired() {
+            return method == Method.GEOMETRY_FIXER || method == Method.FALLBACK;
+        }
+
+        public boolean isValid() {
+            return method != Method.FAILED;
+        }
+    }
+
+    public static RepairReport repair(Geometry geometry) {
+        return repair(GeometryContext.getDefault(), geometry);
+    }
+
+    /**
+     * Same as above, fallback methods create geometries with factory of given context
+     */
+    public static RepairReport repair(GeometryContext context, Geometry geometry) {
+        return repair(context, 0, geometry);
+    }
+
+    /**
+     * Repairs all geometries of a collection. Reports are returned in the same order as source geometries.
+     * @param parallel Validate and repair geometries in parallel
+     */
+    public static List<RepairReport> repairAll(Collection<? extends Geometry> geometries, boolean parallel) {
+        return repairAll(GeometryContext.getDefault(), geometries, parallel);
+    }
+
+    public static List<RepairReport> repairAll(GeometryContext context, Collection<? extends Geometry> geometries, boolean parallel) {
+        List<? extends Geometry> geometryList = geometries instanceof List ? (List<? extends Geometry>) geometries : new ArrayList<>(geometries);
+        IntStream indices = IntStream.range(0, geometryList.size());
+        if (parallel) {
+            indices = indices.parallel();
+        }
+        return indices
+                .mapToObj(idx -> repair(context, idx, geometryList.get(idx)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Same as repairAll(), but returns only resulting geometries
+     */
+    public static List<Geometry> repairAllGeometries(Collection<? extends Geometry> geometries, boolean parallel) {
+        return repairAllGeometries(GeometryContext.getDefault(), geometries, parallel);
+    }
+
+    public static List<Geometry> repairAllGeometries(GeometryContext context, Collection<? extends Geometry> geometries, boolean parallel) {
+        return repairAll(context, geometries, parallel).stream()
+                .map(RepairReport::getResult)
+                .collect(Collectors.toList());
+    }
+
+    private static RepairReport repair(GeometryContext context, int index, Geometry geometry) {
+        if (geometry == null) {
+            return new RepairReport(index, null, null, null, Method.FAILED);
+        }
+        // IsValidOp stops on the first error found, so valid geometries are checked only once
+        TopologyValidationError error = new IsValidOp(geometry).getValidationError();
+        if (error == null) {
+            return new RepairReport(index, geometry, geometry, null, Method.NONE);
+        }
+
+        try {
+            Geometry fixed = GeometryFixer.fix(geometry);
+            if (isAcceptable(fixed)) {
+                return new RepairReport(index, geometry, fixed, error, Method.GEOMETRY_FIXER);
+            }
+        } catch (RuntimeException ex) {
+            log.debug("GeometryFixer failed, trying fallback methods", ex);
+        }
+
+        try {
+            Geometry fixed = GeometryUtils.fixGeometry(context.getGeometryFactory(), geometry, error);
+            if (isAcceptable(fixed)) {
+                return new RepairReport(index, geometry, fixed, error, Method.FALLBACK);
+            }
+        } catch (RuntimeException ex) {
+            log.debug("Fallback repair methods failed", ex);
+        }
+        return new RepairReport(index, geometry, geometry, error, Method.FAILED);
+    }
+
+    private static boolean isAcceptable(Geometry fixed) {
+        return fixed != null && !fixed.isEmpty() && fixed.isValid();
+    }
+}
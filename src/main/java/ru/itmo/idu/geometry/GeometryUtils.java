@@ -2,7 +2,7 @@ package ru.itmo.idu.geometry;
 
 import lombok.val;
 import org.locationtech.jts.geom.*;
-import org.locationtech.jts.geom.impl.CoordinateArraySequence;
+import org.locationtech.jts.geom.impl.CoordinateArraySequenceFactory;
 import org.locationtech.jts.geom.prep.PreparedGeometry;
 import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.locationtech.jts.geom.util.LineStringExtracter;
@@ -15,7 +15,11 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.Collections.emptyList;
 
@@ -27,12 +31,75 @@ public class GeometryUtils {
 
     private static final Logger log = LoggerFactory.getLogger(GeometryUtils.class);
 
-    public static GeometryFactory geometryFactory = new GeometryFactory();
+    /**
+     * Initial factory of the default GeometryContext. Field is final, geometries with other precision model or
+     * CoordinateSequenceFactory are created by factory of a GeometryContext built with these settings
+     * @deprecated use getGeometryFactory() or GeometryContext.getGeometryFactory()
+     */
+    @Deprecated
+    public static final GeometryFactory geometryFactory = new GeometryFactory();
+
+    /**
+     * @deprecated use prepareGeometry() or GeometryContext.prepare()
+     */
+    @Deprecated
+    public static final PreparedGeometryFactory preparedGeometryFactory = new PreparedGeometryFactory();
+
+    /**
+     * Returns factory used for creating all geometries in this library, the one of default GeometryContext
+     */
+    public static GeometryFactory getGeometryFactory() {
+        return GeometryContext.getDefault().getGeometryFactory();
+    }
+
+    public static CoordinateSequenceFactory getCoordinateSequenceFactory() {
+        return getGeometryFactory().getCoordinateSequenceFactory();
+    }
 
-    public static PreparedGeometryFactory preparedGeometryFactory = new PreparedGeometryFactory();
+    /**
+     * Creates a coordinate sequence using CoordinateSequenceFactory of default GeometryContext
+     */
+    public static CoordinateSequence makeCoordinateSequence(Coordinate... coordinates) {
+        return makeCoordinateSequence(getCoordinateSequenceFactory(), coordinates);
+    }
+
+    /**
+     * Creates a coordinate sequence with given factory, e.g. factory of a GeometryContext with packed sequences
+     */
+    public static CoordinateSequence makeCoordinateSequence(CoordinateSequenceFactory factory, Coordinate... coordinates) {
+        if (factory instanceof CoordinateArraySequenceFactory) {
+            // wraps given array without copying
+            return factory.create(coordinates);
+        }
+        // Coordinate class always reports 3 dimensions, so do not store Z ordinate unless it is really present
+        int dimension = 2;
+        for (Coordinate coordinate : coordinates) {
+            if (!Double.isNaN(coordinate.getZ())) {
+                dimension = 3;
+                break;
+            }
+        }
+        CoordinateSequence sequence = factory.create(coordinates.length, dimension, 0);
+        for (int i = 0; i < coordinates.length; ++i) {
+            sequence.setOrdinate(i, CoordinateSequence.X, coordinates[i].x);
+            sequence.setOrdinate(i, CoordinateSequence.Y, coordinates[i].y);
+            if (dimension == 3) {
+                sequence.setOrdinate(i, CoordinateSequence.Z, coordinates[i].getZ());
+            }
+        }
+        return sequence;
+    }
 
     public static Geometry makeEmpty() {
-        return geometryFactory.createEmpty(2);
+        return makeEmpty(getGeometryFactory());
+    }
+
+    /**
+     * make*() methods taking a factory create geometries with it instead of factory of default GeometryContext,
+     * e.g. with GeometryContext.getGeometryFactory() of a context with packed coordinate sequences
+     */
+    public static Geometry makeEmpty(GeometryFactory factory) {
+        return factory.createEmpty(2);
     }
 
     public static Polygon makeEmptyPolygon() {
@@ -40,17 +107,19 @@ public class GeometryUtils {
     }
 
     public static MultiPoint makeMultiPoint(Coordinate... coordinates) {
+        return makeMultiPoint(getGeometryFactory(), coordinates);
+    }
+
+    public static MultiPoint makeMultiPoint(GeometryFactory factory, Coordinate... coordinates) {
         Point[] points = new Point[coordinates.length];
         for (int i = 0; i < coordinates.length; ++i) {
-            points[i] = makePoint(coordinates[i]);
+            points[i] = makePoint(factory, coordinates[i]);
         }
-        return new MultiPoint(
-                points, geometryFactory
-        );
+        return factory.createMultiPoint(points);
     }
 
     public static MultiPoint makeMultiPoint(Point... points) {
-        return new MultiPoint(points, geometryFactory);
+        return getGeometryFactory().createMultiPoint(points);
     }
 
     public static MultiPoint makeMultiPoint(Collection<Coordinate> coordinates) {
@@ -62,17 +131,19 @@ public class GeometryUtils {
     }
 
     public static PreparedGeometry prepareGeometry(Geometry g) {
-        return preparedGeometryFactory.create(g);
+        return GeometryContext.getDefault().prepare(g);
     }
 
     /**
      * Creates a line from 2 given points
      */
     public static LineString makeLine(Coordinate start, Coordinate end) {
-        return new LineString(
-                new CoordinateArraySequence(
-                        new Coordinate[]{start, end}
-                ), geometryFactory
+        return makeLine(getGeometryFactory(), start, end);
+    }
+
+    public static LineString makeLine(GeometryFactory factory, Coordinate start, Coordinate end) {
+        return factory.createLineString(
+                makeCoordinateSequence(factory.getCoordinateSequenceFactory(), start, end)
         );
     }
 
@@ -119,15 +190,17 @@ public class GeometryUtils {
     }
 
     public static LineString makeLine(Coordinate... coordinates) {
+        return makeLine(getGeometryFactory(), coordinates);
+    }
+
+    public static LineString makeLine(GeometryFactory factory, Coordinate... coordinates) {
         if (coordinates.length == 0) {
-            return GeometryUtils.geometryFactory.createLineString();
+            return factory.createLineString();
         } else if (coordinates.length == 1) {
-            return makeLine(coordinates[0], coordinates[0]);
+            return makeLine(factory, coordinates[0], coordinates[0]);
         }
-        return new LineString(
-                new CoordinateArraySequence(
-                        coordinates
-                ), geometryFactory
+        return factory.createLineString(
+                makeCoordinateSequence(factory.getCoordinateSequenceFactory(), coordinates)
         );
     }
 
@@ -135,6 +208,10 @@ public class GeometryUtils {
         return makeLine(coordinates.toArray(Coordinate[]::new));
     }
 
+    public static LineString makeLine(GeometryFactory factory, List<Coordinate> coordinates) {
+        return makeLine(factory, coordinates.toArray(Coordinate[]::new));
+    }
+
     public static LineString makeLine(double x1, double y1, double x2, double y2) {
         return makeLine(new Coordinate(x1, y1), new Coordinate(x2, y2));
     }
@@ -153,9 +230,8 @@ public class GeometryUtils {
             }
         }
 
-        return new LineString(
-                new CoordinateArraySequence(coordinates),
-                geometryFactory
+        return getGeometryFactory().createLineString(
+                makeCoordinateSequence(coordinates)
         );
     }
 
@@ -163,20 +239,32 @@ public class GeometryUtils {
         return makePoint(new Coordinate(x, y));
     }
 
+    public static Point makePoint(GeometryFactory factory, double x, double y) {
+        return makePoint(factory, new Coordinate(x, y));
+    }
+
     public static Point makePoint(Coordinate start, double distance, double angleInRadians) {
         return makePoint(makeCoordinateFromDirection(start, distance, angleInRadians));
     }
 
     public static Point makePoint(Coordinate coordinate) {
-        return new Point(new CoordinateArraySequence(new Coordinate[]{coordinate}), geometryFactory);
+        return makePoint(getGeometryFactory(), coordinate);
+    }
+
+    public static Point makePoint(GeometryFactory factory, Coordinate coordinate) {
+        return factory.createPoint(makeCoordinateSequence(factory.getCoordinateSequenceFactory(), coordinate));
     }
 
     public static GeometryCollection makeGeometryCollection(Geometry... geometries) {
-        return geometryFactory.createGeometryCollection(geometries);
+        return getGeometryFactory().createGeometryCollection(geometries);
+    }
+
+    public static GeometryCollection makeGeometryCollection(GeometryFactory factory, Geometry... geometries) {
+        return factory.createGeometryCollection(geometries);
     }
 
     public static GeometryCollection makeGeometryCollection(Collection<Geometry> geometries) {
-        return geometryFactory.createGeometryCollection(geometries.toArray(Geometry[]::new));
+        return getGeometryFactory().createGeometryCollection(geometries.toArray(Geometry[]::new));
     }
 
     /**
@@ -211,8 +299,18 @@ public class GeometryUtils {
     public static Polygon makeRectangle(double bottomLeftX, double bottomLeftY, double width, double height) {
         return makeRectangle(new Coordinate(bottomLeftX, bottomLeftY), width, height);
     }
+
+    public static Polygon makeRectangle(GeometryFactory factory, double bottomLeftX, double bottomLeftY, double width, double height) {
+        return makeRectangle(factory, new Coordinate(bottomLeftX, bottomLeftY), width, height);
+    }
+
     public static Polygon makeRectangle(Coordinate bottomLeft, double width, double height) {
+        return makeRectangle(getGeometryFactory(), bottomLeft, width, height);
+    }
+
+    public static Polygon makeRectangle(GeometryFactory factory, Coordinate bottomLeft, double width, double height) {
         return makePolygon(
+                factory,
                 bottomLeft,
                 new Coordinate(bottomLeft.x + width, bottomLeft.y),
                 new Coordinate(bottomLeft.x + width, bottomLeft.y + height),
@@ -222,50 +320,49 @@ public class GeometryUtils {
 
 
     public static Polygon makePolygon(Coordinate... coordinates) {
+        return makePolygon(getGeometryFactory(), coordinates);
+    }
+
+    public static Polygon makePolygon(GeometryFactory factory, Coordinate... coordinates) {
         if (coordinates.length == 0) {
-            return geometryFactory.createPolygon();
-        }
-        return new Polygon(
-                new LinearRing(
-                        new CoordinateArraySequence(
-                                closeRing(coordinates)
-                        ),
-                        geometryFactory
-                ),
-                null,
-                geometryFactory
+            return factory.createPolygon();
+        }
+        return factory.createPolygon(
+                makeCoordinateSequence(factory.getCoordinateSequenceFactory(), closeRing(coordinates))
         );
     }
 
     public static Polygon makePolygon(List<Coordinate> coordinates) {
-        return new Polygon(
-                makeRing(coordinates),
-                null,
-                geometryFactory
+        return makePolygon(getGeometryFactory(), coordinates);
+    }
+
+    public static Polygon makePolygon(GeometryFactory factory, List<Coordinate> coordinates) {
+        return factory.createPolygon(
+                makeRing(factory, coordinates)
         );
     }
 
     public static LinearRing makeRing(List<Coordinate> coordinates) {
+        return makeRing(getGeometryFactory(), coordinates);
+    }
+
+    public static LinearRing makeRing(GeometryFactory factory, List<Coordinate> coordinates) {
         if (coordinates.isEmpty()) {
-            return GeometryUtils.geometryFactory.createLinearRing();
+            return factory.createLinearRing();
         }
-        return  new LinearRing(
-                new CoordinateArraySequence(
-                        closeRing(coordinates).toArray(Coordinate[]::new)
-                ),
-                geometryFactory
-        );
+        return makeRing(factory, closeRing(coordinates).toArray(Coordinate[]::new));
     }
 
     public static LinearRing makeRing(Coordinate... coordinates) {
+        return makeRing(getGeometryFactory(), coordinates);
+    }
+
+    public static LinearRing makeRing(GeometryFactory factory, Coordinate... coordinates) {
         if (coordinates.length == 0) {
-            return GeometryUtils.geometryFactory.createLinearRing();
+            return factory.createLinearRing();
         }
-        return  new LinearRing(
-                new CoordinateArraySequence(
-                        closeRing(coordinates)
-                ),
-                geometryFactory
+        return factory.createLinearRing(
+                makeCoordinateSequence(factory.getCoordinateSequenceFactory(), closeRing(coordinates))
         );
     }
 
@@ -345,7 +442,7 @@ public class GeometryUtils {
      * Returns all interior rings of a polygon as a geometry collection of line strings
      */
     public static Geometry getAllHoleRings(Polygon polygon) {
-        Geometry rz = new GeometryCollection(new Geometry[]{}, geometryFactory);
+        Geometry rz = getGeometryFactory().createGeometryCollection();
         for (int i = 0; i < polygon.getNumInteriorRing(); ++i) {
             rz = rz.union(polygon.getInteriorRingN(i));
         }
@@ -356,7 +453,7 @@ public class GeometryUtils {
      * Same as above, but works for MultiPolygons too
      */
     public static Geometry getAllHoleRings(Geometry area) {
-        Geometry rz = new GeometryCollection(new Geometry[]{}, geometryFactory);
+        Geometry rz = getGeometryFactory().createGeometryCollection();
         if (area instanceof Polygon) {
             rz = rz.union(getAllHoleRings((Polygon)area));
         } else if (area instanceof MultiPolygon) {
@@ -378,6 +475,13 @@ public class GeometryUtils {
      * May fail and return null
      */
     public static Geometry fixGeometry(Geometry geometry, TopologyValidationError error) {
+        return fixGeometry(getGeometryFactory(), geometry, error);
+    }
+
+    /**
+     * Same as above, polygons rebuilt from rings are created by given factory
+     */
+    public static Geometry fixGeometry(GeometryFactory factory, Geometry geometry, TopologyValidationError error) {
         try {
             if (error.getErrorType() == TopologyValidationError.SELF_INTERSECTION
                     || error.getErrorType() == TopologyValidationError.RING_SELF_INTERSECTION) { // self-intersections may be healed by building a buffer
@@ -387,9 +491,9 @@ public class GeometryUtils {
                 val polygon = (Polygon)geometry;
                 val exterior = (LinearRing) polygon.getExteriorRing();
                 val holesCount = polygon.getNumInteriorRing();
-                var newPolygon = new Polygon(exterior, null, geometryFactory);
+                var newPolygon = factory.createPolygon(exterior);
                 for (int holeIdx = 0; holeIdx < holesCount; ++holeIdx) {
-                    val hole = new Polygon(polygon.getInteriorRingN(holeIdx), null, geometryFactory);
+                    val hole = factory.createPolygon(polygon.getInteriorRingN(holeIdx));
                     newPolygon = (Polygon) (newPolygon.difference(hole));
                 }
                 return newPolygon;
@@ -488,13 +592,21 @@ public class GeometryUtils {
         return makeLine(newCoord1, newCoord2);
     }
 
+    /**
+     * Builds a buffer of given size in meters around each of WGS84 coordinates and unions them.
+     * All points are projected to a single local CRS, see ProjectionUtils.bufferUnionProjected()
+     */
     public static Geometry makePolygonFromCoordinates (List<Coordinate> coordinates, double buffer){
-        List<Geometry> pointsList = new ArrayList<>();
-        coordinates.forEach(sp -> pointsList.add(ProjectionUtils.bufferProjected(GeometryUtils.makePoint(sp), buffer)));
-        Geometry[] pointsArray = pointsList.toArray(new Geometry[0]);
-        Geometry geometryCollection  = geometryFactory.createGeometryCollection(pointsArray);
-        geometryCollection = geometryCollection.union();
-        return geometryCollection;
+        return makePolygonFromCoordinates(coordinates, buffer, false);
+    }
+
+    /**
+     * Same as above, parallel mode is recommended for thousands of coordinates
+     */
+    public static Geometry makePolygonFromCoordinates(List<Coordinate> coordinates, double buffer, boolean parallel) {
+        List<Point> points = new ArrayList<>(coordinates.size());
+        coordinates.forEach(sp -> points.add(makePoint(sp)));
+        return ProjectionUtils.bufferUnionProjected(points, buffer, parallel);
     }
 
     /**
@@ -502,6 +614,10 @@ public class GeometryUtils {
      * Can be slow
      */
     public static Geometry geometryCollectionDifference(Geometry first, Geometry second) {
+        return geometryCollectionDifference(GeometryContext.getDefault(), first, second);
+    }
+
+    public static Geometry geometryCollectionDifference(GeometryContext context, Geometry first, Geometry second) {
         if (first.isEmpty()) {
             return first;
         }
@@ -512,7 +628,7 @@ public class GeometryUtils {
         for (int geomIdx1 = 0; geomIdx1 < first.getNumGeometries(); ++geomIdx1) {
             Geometry part = first.getGeometryN(geomIdx1);
             for (int geomIdx2 = 0; geomIdx2 < second.getNumGeometries(); ++geomIdx2) {
-                part = SafeOperations.safeDifference(part, second.getGeometryN(geomIdx2));
+                part = SafeOperations.safeDifference(context, part, second.getGeometryN(geomIdx2), 1.0);
                 if (part.isEmpty()) {
                     break;
                 }
@@ -522,12 +638,12 @@ public class GeometryUtils {
             }
         }
         if (results.isEmpty()) {
-            return geometryFactory.createEmpty(first.getDimension());
+            return context.getGeometryFactory().createEmpty(first.getDimension());
         }
         if (results.size() == 1) {
             return results.get(0);
         }
-        return geometryFactory.createGeometryCollection(results.toArray(Geometry[]::new));
+        return context.getGeometryFactory().createGeometryCollection(results.toArray(Geometry[]::new));
     }
 
     /**
@@ -539,26 +655,46 @@ public class GeometryUtils {
             return emptyList();
         }
         List<Geometry> rz = new ArrayList<>(geom.getNumGeometries());
-        for (int geomIdx = 0; geomIdx < geom.getNumGeometries(); ++geomIdx) {
-            Geometry part = geom.getGeometryN(geomIdx);
-            if (part.getNumGeometries() > 1) {
-                rz.addAll(flattenGeometry(part));
-            } else {
-                rz.add(part);
-            }
-        }
+        new GeometryPartsSpliterator(geom).forEachRemaining(rz::add);
         return rz;
     }
 
+    /**
+     * Lazy version of flattenGeometry(). Parts are visited depth-first in the same order, without building intermediate lists
+     */
+    public static Stream<Geometry> streamGeometryParts(Geometry geom) {
+        return streamGeometryParts(geom, false);
+    }
+
+    public static Stream<Geometry> streamGeometryParts(Geometry geom, boolean parallel) {
+        return StreamSupport.stream(new GeometryPartsSpliterator(geom), parallel);
+    }
+
+    public static Iterator<Geometry> iterateGeometryParts(Geometry geom) {
+        return Spliterators.iterator(new GeometryPartsSpliterator(geom));
+    }
+
+    /**
+     * Converts GeometryCollection that contains only points, only lines or only polygons (at any depth) into MultiPoint,
+     * MultiLineString or MultiPolygon. Returns original geometry if it is not a GeometryCollection or has mixed content.
+     * Type is decided in a single lazy pass over collection parts, that stops on first mismatch.
+     */
     public static Geometry tryConvertGCToCorrectSubclass(Geometry geometryCollection) {
+        return tryConvertGCToCorrectSubclass(getGeometryFactory(), geometryCollection);
+    }
+
+    public static Geometry tryConvertGCToCorrectSubclass(GeometryFactory factory, Geometry geometryCollection) {
         if (geometryCollection.getClass() != GeometryCollection.class) {
             return geometryCollection;
         }
         boolean hasOnlyPoints = true;
         boolean hasOnlyLines = true;
         boolean hasOnlyPolygons = true;
-        List<Geometry> flattened = flattenGeometry(geometryCollection);
-        for (Geometry g : flattened) {
+        int partsCount = 0;
+        GeometryPartsSpliterator parts = new GeometryPartsSpliterator(geometryCollection);
+        Geometry[] current = new Geometry[1];
+        while ((hasOnlyPoints || hasOnlyLines || hasOnlyPolygons) && parts.tryAdvance(g -> current[0] = g)) {
+            Geometry g = current[0];
             if (!(g instanceof Point)) {
                 hasOnlyPoints = false;
             }
@@ -568,15 +704,25 @@ public class GeometryUtils {
             if (!(g instanceof Polygon)) {
                 hasOnlyPolygons = false;
             }
+            ++partsCount;
         }
         if (hasOnlyPoints) {
-            return geometryFactory.createMultiPoint(flattened.stream().map(it -> (Point)it).toArray(Point[]::new));
+            return factory.createMultiPoint(collectParts(geometryCollection, new Point[partsCount]));
         } else if (hasOnlyLines) {
-            return geometryFactory.createMultiLineString(flattened.stream().map(it -> (LineString)it).toArray(LineString[]::new));
+            return factory.createMultiLineString(collectParts(geometryCollection, new LineString[partsCount]));
         } else if (hasOnlyPolygons) {
-            return geometryFactory.createMultiPolygon(flattened.stream().map(it -> (Polygon)it).toArray(Polygon[]::new));
+            return factory.createMultiPolygon(collectParts(geometryCollection, new Polygon[partsCount]));
         }
         return geometryCollection;
     }
 
+    @SuppressWarnings("unchecked")
+    private static <T extends Geometry> T[] collectParts(Geometry geometryCollection, T[] target) {
+        int[] idx = new int[1];
+        new GeometryPartsSpliterator(geometryCollection).forEachRemaining(g -> {
+            target[idx[0]++] = (T) g;
+        });
+        return target;
+    }
+
 }
@@ -10,7 +10,9 @@ import java.util.Set;
  * It is a common problem when noone knows if lat or lon should be on first place.
  * We use a lat-lon coordinates, while geojson and some external tools use lon-lat.
  * So we must inverse coordinates.
+ * @deprecated skips coordinates that are equal by value to already inverted ones, use AxisSwap instead
  */
+@Deprecated
 public class InvertCoordinateFilter implements CoordinateFilter {
     @SuppressWarnings("SuspiciousNameCombination")
 
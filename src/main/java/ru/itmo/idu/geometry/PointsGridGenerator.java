@@ -2,38 +2,241 @@ package ru.itmo.idu.geometry;
 
 import lombok.val;
 import org.geotools.geometry.jts.JTS;
-import org.geotools.referencing.CRS;
-import org.geotools.referencing.GeodeticCalculator;
-import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.util.AffineTransformation;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.TransformException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * Generates a regular grid of points inside a WGS84 polygon. Grid rows follow each other in mainAngle direction
+ * (azimuth in degrees) and are perpendicular to it, all points are stepMeters apart.
+ */
 public class PointsGridGenerator {
 
+    public enum Mode {
+        /**
+         * Walks the whole rotated envelope with geodesic kernel of the context (GeodeticCalculator by default) and tests
+         * every point against the polygon
+         */
+        GEODETIC,
+        /**
+         * Builds the grid in local CRS, intersects every grid row with polygon edges and emits only points inside of
+         * resulting intervals. Does not test points one by one, so work is proportional to amount of points inside
+         * of the polygon and not to the area of its envelope. Differs from GEODETIC by projection distortion of local CRS,
+         * which is negligible at city scale
+         */
+        SCANLINE
+    }
+
+    /**
+     * Receives grid points without creating any objects for them. Coordinates are in WGS84
+     */
+    @FunctionalInterface
+    public interface PointConsumer {
+        void accept(double x, double y);
+    }
+
+    /**
+     * Amount of grid rows processed by one task in parallel mode
+     */
+    private static final int ROW_BAND_SIZE = 16;
+
+    public static List<Point> generatePoints(CoordinateReferenceSystem localCRS,
+                                             Geometry bounds,
+                                             double stepMeters,
+                                             double mainAngle,
+                                             Mode mode) throws FactoryException, TransformException {
+        return generatePoints(GeometryContext.getDefault(), localCRS, bounds, stepMeters, mainAngle, mode);
+    }
+
+    /**
+     * Same as above, transforms, geodesic kernel of GEODETIC mode and factory for points are taken from given context
+     */
+    public static List<Point> generatePoints(GeometryContext context,
+                                             CoordinateReferenceSystem localCRS,
+                                             Geometry bounds,
+                                             double stepMeters,
+                                             double mainAngle,
+                                             Mode mode) throws FactoryException, TransformException {
+        if (mode == Mode.GEODETIC) {
+            return generatePoints(context, localCRS, bounds, stepMeters, mainAngle);
+        }
+        val factory = context.getGeometryFactory();
+        List<Point> points = new ArrayList<>();
+        generatePoints(context, localCRS, bounds, stepMeters, mainAngle, (x, y) -> points.add(GeometryUtils.makePoint(factory, x, y)), false);
+        return points;
+    }
+
+    /**
+     * Pushes points of SCANLINE grid to consumer row by row, in the same order as generatePoints() with SCANLINE mode
+     */
+    public static void generatePoints(CoordinateReferenceSystem localCRS,
+                                      Geometry bounds,
+                                      double stepMeters,
+                                      double mainAngle,
+                                      PointConsumer consumer) throws FactoryException, TransformException {
+        generatePoints(localCRS, bounds, stepMeters, mainAngle, consumer, false);
+    }
+
+    /**
+     * Pushes points of SCANLINE grid to consumer.
+     * @param parallel Process bands of rows in parallel. Consumer shall be thread-safe then, and points come in no particular order
+     */
+    public static void generatePoints(CoordinateReferenceSystem localCRS,
+                                      Geometry bounds,
+                                      double stepMeters,
+                                      double mainAngle,
+                                      PointConsumer consumer,
+                                      boolean parallel) throws FactoryException, TransformException {
+        generatePoints(GeometryContext.getDefault(), localCRS, bounds, stepMeters, mainAngle, consumer, parallel);
+    }
+
+    public static void generatePoints(GeometryContext context,
+                                      CoordinateReferenceSystem localCRS,
+                                      Geometry bounds,
+                                      double stepMeters,
+                                      double mainAngle,
+                                      PointConsumer consumer,
+                                      boolean parallel) throws FactoryException, TransformException {
+        val grid = new ScanlineGrid(context, localCRS, bounds, stepMeters, mainAngle);
+        forEachBand(grid, parallel, (fromRow, toRow) -> {
+            double[] buffer = new double[0];
+            for (int row = fromRow; row < toRow; ++row) {
+                int count = grid.getRowPointsCount(row);
+                if (buffer.length < count * 2) {
+                    buffer = new double[count * 2];
+                }
+                grid.fillRow(row, buffer, 0);
+                for (int i = 0; i < count; ++i) {
+                    consumer.accept(buffer[2 * i], buffer[2 * i + 1]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns coordinates of SCANLINE grid points as x1, y1, x2, y2 ... in the same order as generatePoints().
+     * Amount of points is known before generation, so array is allocated only once and in parallel mode
+     * every band of rows writes into its own part of it.
+     */
+    public static double[] generateCoordinates(CoordinateReferenceSystem localCRS,
+                                               Geometry bounds,
+                                               double stepMeters,
+                                               double mainAngle,
+                                               boolean parallel) throws FactoryException, TransformException {
+        return generateCoordinates(GeometryContext.getDefault(), localCRS, bounds, stepMeters, mainAngle, parallel);
+    }
+
+    public static double[] generateCoordinates(GeometryContext context,
+                                               CoordinateReferenceSystem localCRS,
+                                               Geometry bounds,
+                                               double stepMeters,
+                                               double mainAngle,
+                                               boolean parallel) throws FactoryException, TransformException {
+        val grid = new ScanlineGrid(context, localCRS, bounds, stepMeters, mainAngle);
+        if (grid.getPointsCount() > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Too many points for a single array, use streamPoints() or PointConsumer instead");
+        }
+        double[] result = new double[(int) grid.getPointsCount() * 2];
+        forEachBand(grid, parallel, (fromRow, toRow) -> {
+            for (int row = fromRow; row < toRow; ++row) {
+                grid.fillRow(row, result, (int) grid.getPointsBefore(row) * 2);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Lazy stream of SCANLINE grid points. Rows are generated only when stream reaches them, so memory usage does not depend
+     * on amount of points. Stream is SIZED and in parallel mode it is split by bands of rows.
+     * Transform errors are thrown as RuntimeException
+     */
+    public static Stream<Point> streamPoints(CoordinateReferenceSystem localCRS,
+                                             Geometry bounds,
+                                             double stepMeters,
+                                             double mainAngle,
+                                             boolean parallel) throws FactoryException, TransformException {
+        return streamPoints(GeometryContext.getDefault(), localCRS, bounds, stepMeters, mainAngle, parallel);
+    }
+
+    public static Stream<Point> streamPoints(GeometryContext context,
+                                             CoordinateReferenceSystem localCRS,
+                                             Geometry bounds,
+                                             double stepMeters,
+                                             double mainAngle,
+                                             boolean parallel) throws FactoryException, TransformException {
+        val grid = new ScanlineGrid(context, localCRS, bounds, stepMeters, mainAngle);
+        return StreamSupport.stream(new GridSpliterator(context.getGeometryFactory(), grid, 0, grid.getRowsCount()), parallel);
+    }
+
+    private interface BandAction {
+        void run(int fromRow, int toRow) throws TransformException;
+    }
+
+    private static void forEachBand(ScanlineGrid grid, boolean parallel, BandAction action) throws TransformException {
+        if (!parallel) {
+            action.run(0, grid.getRowsCount());
+            return;
+        }
+        int bandsCount = (grid.getRowsCount() + ROW_BAND_SIZE - 1) / ROW_BAND_SIZE;
+        try {
+            IntStream.range(0, bandsCount).parallel().forEach(band -> {
+                try {
+                    action.run(band * ROW_BAND_SIZE, Math.min(grid.getRowsCount(), (band + 1) * ROW_BAND_SIZE));
+                } catch (TransformException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof TransformException) {
+                throw (TransformException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     public static List<Point> generatePoints(CoordinateReferenceSystem localCRS,
                                              Geometry bounds,
                                              double stepMeters,
                                              double mainAngle) throws FactoryException, TransformException {
+        return generatePoints(GeometryContext.getDefault(), localCRS, bounds, stepMeters, mainAngle);
+    }
+
+    public static List<Point> generatePoints(GeometryContext context,
+                                             CoordinateReferenceSystem localCRS,
+                                             Geometry bounds,
+                                             double stepMeters,
+                                             double mainAngle) throws FactoryException, TransformException {
 
         val envelope = bounds.getEnvelopeInternal();
-        val preparedBounds = GeometryUtils.preparedGeometryFactory.create(bounds);
+        val preparedBounds = context.prepare(bounds);
+        val factory = context.getGeometryFactory();
+        val kernel = context.getGeodesicKernel();
 
-        val globalToLocal = CRS.findMathTransform(DefaultGeographicCRS.WGS84, localCRS);
-        val localEnvelopeGeometry = JTS.transform(GeometryUtils.geometryFactory.toGeometry(envelope), globalToLocal);
+        val globalToLocal = context.getTransformFromWGS84(localCRS);
+        val localEnvelopeGeometry = JTS.transform(factory.toGeometry(envelope), globalToLocal);
         val localEnvelope = localEnvelopeGeometry.getEnvelopeInternal();
         val envelopeWidth = Math.max(localEnvelope.getWidth(), localEnvelope.getHeight());
         val envelopeDiagonal = Math.sqrt(Math.pow(localEnvelope.getWidth(), 2.0) + Math.pow(localEnvelope.getHeight(), 2.0));
 
         List<Point> points = new ArrayList<>();
-        val gc = new GeodeticCalculator();
-        var point = GeometryUtils.makePoint(new Coordinate(envelope.getMinX(), envelope.getMinY()));
+        var point = GeometryUtils.makePoint(factory, envelope.getMinX(), envelope.getMinY());
 
         double mainStepAngle = mainAngle;
         while (mainStepAngle < 0.0) {
@@ -45,7 +248,7 @@ public class PointsGridGenerator {
 
         var distance = 0.0;
         do {
-            gc.setStartingGeographicPoint(point.getX(), point.getY());
+            val start = point.getCoordinate();
             if (preparedBounds.contains(point)) {
                 points.add(point);
             }
@@ -57,9 +260,8 @@ public class PointsGridGenerator {
             for(double direction : directions) {
                 pointIdx = 1;
                 do {
-                    gc.setDirection(mainStepAngle + direction, stepMeters * pointIdx);
-                    val destPoint = gc.getDestinationGeographicPoint();
-                    intermediatePoint = GeometryUtils.makePoint(new Coordinate(destPoint.getX(), destPoint.getY()));
+                    val destination = kernel.destination(start, mainStepAngle + direction, stepMeters * pointIdx);
+                    intermediatePoint = GeometryUtils.makePoint(factory, destination);
 
                     if (preparedBounds.contains(intermediatePoint)) {
                         points.add(intermediatePoint);
@@ -69,9 +271,7 @@ public class PointsGridGenerator {
                 while (stepMeters * pointIdx < envelopeWidth);
             }
 
-            gc.setDirection(mainStepAngle, stepMeters);
-            val destPoint = gc.getDestinationGeographicPoint();
-            point = GeometryUtils.makePoint(new Coordinate(destPoint.getX(), destPoint.getY()));
+            point = GeometryUtils.makePoint(factory, kernel.destination(start, mainStepAngle, stepMeters));
             distance += stepMeters;
 
         } while (distance < envelopeDiagonal);
@@ -79,4 +279,253 @@ public class PointsGridGenerator {
         return points;
     }
 
+    /**
+     * Grid rotated by mainAngle in local CRS. Polygon is moved into grid coordinates (u along a row, v across rows) with an
+     * affine transform, so that every row is a horizontal line v = row * step. Crossings of polygon edges with every row
+     * are computed once and stored sorted per row, pairs of consecutive crossings are the inside intervals.
+     */
+    private static class ScanlineGrid {
+        private final double step;
+        private final AffineTransformation gridToLocal;
+        private final MathTransform localToGlobal;
+        private final int firstRow;
+        private final int rowsCount;
+        /**
+         * Crossings of row i are crossings[rowStart[i]] ... crossings[rowStart[i + 1] - 1]
+         */
+        private final int[] rowStart;
+        private final double[] crossings;
+        /**
+         * Amount of points in all rows before row i
+         */
+        private final long[] pointsBefore;
+
+        ScanlineGrid(GeometryContext context,
+                     CoordinateReferenceSystem localCRS,
+                     Geometry bounds,
+                     double stepMeters,
+                     double mainAngle) throws FactoryException, TransformException {
+            if (stepMeters <= 0) {
+                throw new IllegalArgumentException("stepMeters shall be positive");
+            }
+            this.step = stepMeters;
+            val envelope = bounds.getEnvelopeInternal();
+            val globalToLocal = context.getTransformFromWGS84(localCRS);
+            this.localToGlobal = context.getTransformToWGS84(localCRS);
+
+            // grid origin is at the corner of the envelope, same as in GEODETIC mode
+            double[] origin = new double[] {envelope.getMinX(), envelope.getMinY()};
+            globalToLocal.transform(origin, 0, origin, 0, 1);
+            double angle = Math.toRadians(mainAngle);
+            // azimuth is counted clockwise from north, rows go along main direction, points in a row go across it
+            double mainX = Math.sin(angle), mainY = Math.cos(angle);
+            double acrossX = mainY, acrossY = -mainX;
+            val localToGrid = new AffineTransformation(
+                    acrossX, acrossY, -(acrossX * origin[0] + acrossY * origin[1]),
+                    mainX, mainY, -(mainX * origin[0] + mainY * origin[1])
+            );
+            this.gridToLocal = new AffineTransformation(
+                    acrossX, mainX, origin[0],
+                    acrossY, mainY, origin[1]
+            );
+
+            val gridBounds = localToGrid.transform(JTS.transform(bounds, globalToLocal));
+            val gridEnvelope = gridBounds.getEnvelopeInternal();
+            this.firstRow = (int) Math.ceil(gridEnvelope.getMinY() / step);
+            this.rowsCount = Math.max(0, (int) Math.floor(gridEnvelope.getMaxY() / step) - firstRow + 1);
+
+            List<CoordinateSequence> rings = new ArrayList<>();
+            GeometryUtils.streamGeometryParts(gridBounds).forEach(part -> {
+                if (part instanceof Polygon) {
+                    val polygon = (Polygon) part;
+                    rings.add(polygon.getExteriorRing().getCoordinateSequence());
+                    for (int i = 0; i < polygon.getNumInteriorRing(); ++i) {
+                        rings.add(polygon.getInteriorRingN(i).getCoordinateSequence());
+                    }
+                }
+            });
+
+            // counting pass, then filling pass, both use the same crossing rule
+            this.rowStart = new int[rowsCount + 1];
+            for (val ring : rings) {
+                forEachCrossing(ring, (row, u) -> ++rowStart[row + 1]);
+            }
+            for (int i = 0; i < rowsCount; ++i) {
+                rowStart[i + 1] += rowStart[i];
+            }
+            this.crossings = new double[rowStart[rowsCount]];
+            val fill = Arrays.copyOf(rowStart, rowsCount);
+            for (val ring : rings) {
+                forEachCrossing(ring, (row, u) -> crossings[fill[row]++] = u);
+            }
+            this.pointsBefore = new long[rowsCount + 1];
+            for (int i = 0; i < rowsCount; ++i) {
+                Arrays.sort(crossings, rowStart[i], rowStart[i + 1]);
+                pointsBefore[i + 1] = pointsBefore[i] + countRowPoints(i);
+            }
+        }
+
+        private interface CrossingConsumer {
+            void accept(int row, double u);
+        }
+
+        /**
+         * Edge crosses row v if exactly one of its ends has y <= v, so every vertex is counted once
+         * and each row has an even amount of crossings
+         */
+        private void forEachCrossing(CoordinateSequence ring, CrossingConsumer consumer) {
+            for (int i = 0; i < ring.size() - 1; ++i) {
+                double u1 = ring.getX(i), v1 = ring.getY(i);
+                double u2 = ring.getX(i + 1), v2 = ring.getY(i + 1);
+                int fromRow = Math.max(0, (int) Math.floor(Math.min(v1, v2) / step) - firstRow);
+                int toRow = Math.min(rowsCount - 1, (int) Math.ceil(Math.max(v1, v2) / step) - firstRow);
+                for (int row = fromRow; row <= toRow; ++row) {
+                    double v = (firstRow + row) * step;
+                    if ((v1 <= v) != (v2 <= v)) {
+                        consumer.accept(row, u1 + (v - v1) * (u2 - u1) / (v2 - v1));
+                    }
+                }
+            }
+        }
+
+        int getRowsCount() {
+            return rowsCount;
+        }
+
+        long getPointsCount() {
+            return pointsBefore[rowsCount];
+        }
+
+        long getPointsBefore(int row) {
+            return pointsBefore[row];
+        }
+
+        int getRowPointsCount(int row) {
+            return (int) (pointsBefore[row + 1] - pointsBefore[row]);
+        }
+
+        private int countRowPoints(int row) {
+            int count = 0;
+            for (int i = rowStart[row]; i < rowStart[row + 1]; i += 2) {
+                count += Math.max(0, lastColumn(crossings[i + 1]) - firstColumn(crossings[i]) + 1);
+            }
+            return count;
+        }
+
+        /**
+         * Writes points of a row in WGS84 as x1, y1, x2, y2 ... to dest starting from offset
+         */
+        void fillRow(int row, double[] dest, int offset) throws TransformException {
+            double v = (firstRow + row) * step;
+            val grid = new Coordinate(0, v);
+            val local = new Coordinate();
+            int idx = offset;
+            for (int i = rowStart[row]; i < rowStart[row + 1]; i += 2) {
+                int last = lastColumn(crossings[i + 1]);
+                for (int column = firstColumn(crossings[i]); column <= last; ++column) {
+                    grid.x = column * step;
+                    gridToLocal.transform(grid, local);
+                    dest[idx++] = local.x;
+                    dest[idx++] = local.y;
+                }
+            }
+            localToGlobal.transform(dest, offset, dest, offset, getRowPointsCount(row));
+        }
+
+        /**
+         * First column strictly inside of interval starting at u
+         */
+        private int firstColumn(double u) {
+            return (int) Math.floor(u / step) + 1;
+        }
+
+        /**
+         * Last column strictly inside of interval ending at u
+         */
+        private int lastColumn(double u) {
+            return (int) Math.ceil(u / step) - 1;
+        }
+    }
+
+    /**
+     * Generates points of grid rows [row, endRow) one row at a time. Splits by halving the range of rows
+     */
+    private static class GridSpliterator implements Spliterator<Point> {
+        private final GeometryFactory factory;
+        private final ScanlineGrid grid;
+        private int row;
+        private final int endRow;
+        /**
+         * Points of already loaded row, ones before bufferIdx are already consumed
+         */
+        private double[] buffer = new double[0];
+        private int bufferSize = 0;
+        private int bufferIdx = 0;
+
+        GridSpliterator(GeometryFactory factory, ScanlineGrid grid, int row, int endRow) {
+            this.factory = factory;
+            this.grid = grid;
+            this.row = row;
+            this.endRow = endRow;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Point> action) {
+            while (bufferIdx >= bufferSize) {
+                if (row >= endRow) {
+                    return false;
+                }
+                loadRow();
+            }
+            action.accept(GeometryUtils.makePoint(factory, buffer[2 * bufferIdx], buffer[2 * bufferIdx + 1]));
+            ++bufferIdx;
+            return true;
+        }
+
+        private void loadRow() {
+            int count = grid.getRowPointsCount(row);
+            if (buffer.length < count * 2) {
+                buffer = new double[count * 2];
+            }
+            try {
+                grid.fillRow(row, buffer, 0);
+            } catch (TransformException e) {
+                throw new RuntimeException(e);
+            }
+            ++row;
+            bufferSize = count;
+            bufferIdx = 0;
+        }
+
+        /**
+         * Prefix takes rest of the loaded row and first half of remaining rows
+         */
+        @Override
+        public Spliterator<Point> trySplit() {
+            int remainingRows = endRow - row;
+            if (remainingRows < 2) {
+                return null;
+            }
+            int mid = row + remainingRows / 2;
+            val prefix = new GridSpliterator(factory, grid, row, mid);
+            prefix.buffer = buffer;
+            prefix.bufferSize = bufferSize;
+            prefix.bufferIdx = bufferIdx;
+            buffer = new double[0];
+            bufferSize = 0;
+            bufferIdx = 0;
+            row = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (bufferSize - bufferIdx) + grid.getPointsBefore(endRow) - grid.getPointsBefore(row);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
 }
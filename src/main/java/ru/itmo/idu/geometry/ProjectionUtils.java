@@ -3,15 +3,13 @@ package ru.itmo.idu.geometry;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.geotools.geometry.jts.JTS;
-import org.geotools.referencing.CRS;
-import org.geotools.referencing.GeodeticCalculator;
-import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.locationtech.jts.algorithm.Angle;
 import org.locationtech.jts.algorithm.MinimumDiameter;
 import org.locationtech.jts.geom.*;
 import org.locationtech.jts.operation.buffer.BufferOp;
 import org.locationtech.jts.operation.buffer.BufferParameters;
 import org.locationtech.jts.operation.distance.DistanceOp;
+import org.locationtech.jts.operation.union.CascadedPolygonUnion;
 import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -19,10 +17,13 @@ import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.TransformException;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static ru.itmo.idu.geometry.CRSUtils.getLocalCRS;
-import static ru.itmo.idu.geometry.CRSUtils.getLocalCRSTransform;
 import static ru.itmo.idu.geometry.GeometryUtils.makePoint;
 
 /**
@@ -34,24 +35,40 @@ import static ru.itmo.idu.geometry.GeometryUtils.makePoint;
 @SuppressWarnings({"unused", "WeakerAccess"})
 public class ProjectionUtils {
 
-    public static MathTransform latLonToXY;
+    /**
+     * @deprecated kept for compatibility. Use transformToMercator() or
+     * GeometryContext.getTransformFromWGS84(GeometryContext.getMercatorCRS())
+     */
+    @Deprecated
+    public static final MathTransform latLonToXY;
+
+    /**
+     * @deprecated kept for compatibility. Use transformFromMercator() or
+     * GeometryContext.getTransformToWGS84(GeometryContext.getMercatorCRS())
+     */
+    @Deprecated
+    public static final MathTransform xyToLatLon;
+
+    /**
+     * Amount of buffers unioned together by a single thread in parallel bufferUnionProjected()
+     */
+    private static final int UNION_PARTITION_SIZE = 256;
+
+    private static final MathTransform WGS84_TO_MERCATOR;
 
-    public static MathTransform xyToLatLon;
+    private static final MathTransform MERCATOR_TO_WGS84;
 
     static {
-        String code = "EPSG:3857";
-        CoordinateReferenceSystem auto;
         try {
-
-            auto = CRS.decode(code);
-            latLonToXY = CRS.findMathTransform(
-                    DefaultGeographicCRS.WGS84, auto);
-            xyToLatLon = CRS.findMathTransform(auto,
-                    DefaultGeographicCRS.WGS84);
+            var context = GeometryContext.getDefault();
+            WGS84_TO_MERCATOR = context.getTransformFromWGS84(context.getMercatorCRS());
+            MERCATOR_TO_WGS84 = context.getTransformToWGS84(context.getMercatorCRS());
         } catch (FactoryException e) {
             log.error("Failed to create transforms", e);
             throw new RuntimeException(e);
         }
+        latLonToXY = WGS84_TO_MERCATOR;
+        xyToLatLon = MERCATOR_TO_WGS84;
     }
 
 
@@ -78,8 +95,20 @@ public class ProjectionUtils {
         if (geom.isEmpty()) {
             return geom;
         }
+        return bufferProjected(GeometryContext.getDefault(), geom, meters, bufferParameters);
+    }
+
+    /**
+     * Same as bufferProjected(), but local CRS, transforms and metrics are taken from given context
+     */
+    public static Geometry bufferProjected(GeometryContext context,
+                                           Geometry geom,
+                                           double meters, BufferParameters bufferParameters) {
+        if (geom.isEmpty()) {
+            return geom;
+        }
         try {
-            return bufferProjected(getLocalCRS(geom), geom, meters, bufferParameters);
+            return bufferProjected(context, context.getLocalCRS(geom), geom, meters, bufferParameters);
         } catch (FactoryException e) {
             log.error("Failed to buffer geometry", e);
             return geom;
@@ -98,6 +127,15 @@ public class ProjectionUtils {
             Geometry geom,
             double meters,
             BufferParameters bufferParameters) {
+        return bufferProjected(GeometryContext.getDefault(), localCrs, geom, meters, bufferParameters);
+    }
+
+    public static Geometry bufferProjected(
+            GeometryContext context,
+            CoordinateReferenceSystem localCrs,
+            Geometry geom,
+            double meters,
+            BufferParameters bufferParameters) {
         try {
             if (geom.isEmpty()) {
                 return geom;
@@ -105,21 +143,117 @@ public class ProjectionUtils {
 
             geom = (Geometry) geom.clone();
 
-            val globalToLocal = CRS.findMathTransform(DefaultGeographicCRS.WGS84, localCrs);
-            val localToGlobal = CRS.findMathTransform(localCrs, DefaultGeographicCRS.WGS84);
-
-            Geometry projectedGeom = JTS.transform(geom, globalToLocal);
+            Geometry projectedGeom = context.transformToLocalCRS(localCrs, geom);
             // buffer
             Geometry projectedBufferedGeom =  BufferOp.bufferOp(projectedGeom, meters, bufferParameters);
             // reproject the geometry to the original projection
 
-            return JTS.transform(projectedBufferedGeom, localToGlobal);
+            return context.transformFromLocalCRS(localCrs, projectedBufferedGeom);
         } catch (Exception ex) {
             log.error("Failed to buffer geometry", ex);
             return geom;
         }
     }
 
+    /**
+     * Buffers every geometry of a collection by given amount of meters and unions the results.
+     * Unlike calling bufferProjected() for every geometry, all geometries are projected to a single shared local CRS once,
+     * buffered and unioned there using cascaded union, and only the final result is projected back to WGS84.
+     * @param geoms Geometries in WGS84
+     * @param parallel If true, buffers are built in parallel and union is done separately for spatially close groups of
+     *                 buffers, which are merged at the end. Makes sense for thousands of geometries
+     * @return Union of all buffers in WGS84
+     */
+    public static Geometry bufferUnionProjected(CoordinateReferenceSystem localCrs,
+                                                Collection<? extends Geometry> geoms,
+                                                double meters,
+                                                BufferParameters bufferParameters,
+                                                boolean parallel) {
+        return bufferUnionProjected(GeometryContext.getDefault(), localCrs, geoms, meters, bufferParameters, parallel);
+    }
+
+    /**
+     * Same as bufferUnionProjected(), but transforms, metrics and factory of the empty result are taken from given context
+     */
+    public static Geometry bufferUnionProjected(GeometryContext context,
+                                                CoordinateReferenceSystem localCrs,
+                                                Collection<? extends Geometry> geoms,
+                                                double meters,
+                                                BufferParameters bufferParameters,
+                                                boolean parallel) {
+        if (geoms.isEmpty()) {
+            return context.getGeometryFactory().createEmpty(2);
+        }
+        try {
+            // project everything at once, so that transform is applied in one pass
+            val projected = context.transformToLocalCRS(localCrs,
+                    context.getGeometryFactory().createGeometryCollection(geoms.toArray(Geometry[]::new)));
+            val indices = parallel ? IntStream.range(0, projected.getNumGeometries()).parallel() : IntStream.range(0, projected.getNumGeometries());
+            List<Geometry> buffers = indices
+                    .mapToObj(idx -> BufferOp.bufferOp(projected.getGeometryN(idx), meters, bufferParameters))
+                    .filter(buffer -> !buffer.isEmpty())
+                    .collect(Collectors.toList());
+            if (buffers.isEmpty()) {
+                return context.getGeometryFactory().createEmpty(2);
+            }
+
+            Geometry union;
+            if (parallel && buffers.size() > UNION_PARTITION_SIZE) {
+                union = partitionedUnion(buffers);
+            } else {
+                union = CascadedPolygonUnion.union(buffers);
+            }
+            return context.transformFromLocalCRS(localCrs, union);
+        } catch (Exception ex) {
+            log.error("Failed to buffer geometries", ex);
+            return context.getGeometryFactory().createEmpty(2);
+        }
+    }
+
+    public static Geometry bufferUnionProjected(Collection<? extends Geometry> geoms,
+                                                double meters,
+                                                boolean parallel) {
+        return bufferUnionProjected(GeometryContext.getDefault(), geoms, meters, parallel);
+    }
+
+    /**
+     * Same as bufferUnionProjected(), local CRS is centred in the middle of envelope of all geometries
+     */
+    public static Geometry bufferUnionProjected(GeometryContext context,
+                                                Collection<? extends Geometry> geoms,
+                                                double meters,
+                                                boolean parallel) {
+        if (geoms.isEmpty()) {
+            return context.getGeometryFactory().createEmpty(2);
+        }
+        try {
+            Envelope envelope = new Envelope();
+            geoms.forEach(g -> envelope.expandToInclude(g.getEnvelopeInternal()));
+            return bufferUnionProjected(context, context.getLocalCRS(envelope.centre()), geoms, meters,
+                    new BufferParameters(4, BufferParameters.CAP_ROUND, BufferParameters.JOIN_ROUND, BufferParameters.DEFAULT_MITRE_LIMIT),
+                    parallel);
+        } catch (FactoryException e) {
+            log.error("Failed to buffer geometries", e);
+            return context.getGeometryFactory().createEmpty(2);
+        }
+    }
+
+    /**
+     * Sorts polygons along X axis and unions groups of neighbours in parallel. Neighbours mostly overlap each other,
+     * so partial unions are small and merging them at the end is cheap.
+     */
+    private static Geometry partitionedUnion(List<Geometry> polygons) {
+        polygons.sort(Comparator.comparingDouble(g -> g.getEnvelopeInternal().getMinX()));
+        int partsCount = (polygons.size() + UNION_PARTITION_SIZE - 1) / UNION_PARTITION_SIZE;
+        List<Geometry> partialUnions = IntStream.range(0, partsCount)
+                .parallel()
+                .mapToObj(partIdx -> CascadedPolygonUnion.union(
+                        polygons.subList(partIdx * UNION_PARTITION_SIZE, Math.min(polygons.size(), (partIdx + 1) * UNION_PARTITION_SIZE))
+                ))
+                .collect(Collectors.toList());
+        return CascadedPolygonUnion.union(partialUnions);
+    }
+
     /**
      * Simplifies geometry, collapsing points that are less than meters from each other
      * Projects to Mercator, simplifies, projects back
@@ -139,65 +273,44 @@ public class ProjectionUtils {
     }
 
     public static double calcArea(CoordinateReferenceSystem crs, Geometry geometry) {
-        if (geometry.isEmpty()) {
-            return 0.0;
-        }
-        Geometry projected = null;
-        try {
-            projected = transformToLocalCRS(crs, geometry);
-        } catch (Exception e) {
-            log.error("Failed to calc area", e);
-            return geometry.getArea();
-        }
-        return projected.getArea();
+        return calcArea(GeometryContext.getDefault(), crs, geometry);
+    }
+
+    /**
+     * Same as GeometryContext.calcArea(), for symmetry with other methods taking a context
+     */
+    public static double calcArea(GeometryContext context, CoordinateReferenceSystem crs, Geometry geometry) {
+        return context.calcArea(crs, geometry);
     }
 
     /**
      * Projects given polygon to 2d plane and calculates its area in square meters
      */
     public static double calcArea(Geometry geometry) {
-        try {
-            if (geometry.isEmpty()){
-                return geometry.getArea();
-            } else {
-                val projed = JTS.transform(geometry, getLocalCRSTransform(geometry));
-                return projed.getArea();
-            }
-        } catch (Exception ex) {
-            log.error("Failed to calc area", ex);
-            return geometry.getArea();
-        }
+        return calcArea(GeometryContext.getDefault(), geometry);
+    }
+
+    public static double calcArea(GeometryContext context, Geometry geometry) {
+        return context.calcArea(geometry);
     }
 
     public static double calcLength(CoordinateReferenceSystem crs, Geometry geometry) {
-        try {
-            if (geometry.isEmpty()){
-                return 0.0;
-            } else {
-                val projed = transformToLocalCRS(crs, geometry);
-                return projed.getLength();
-            }
-        } catch (Exception ex) {
-            log.error("Failed to calc length", ex);
-            return geometry.getLength();
-        }
+        return calcLength(GeometryContext.getDefault(), crs, geometry);
+    }
+
+    public static double calcLength(GeometryContext context, CoordinateReferenceSystem crs, Geometry geometry) {
+        return context.calcLength(crs, geometry);
     }
 
     /**
      * Projects given line to 2d plane and calculates its length in meters
      */
     public static double calcLength(Geometry geometry) {
-        try {
-            if (geometry.isEmpty()){
-                return 0.0;
-            } else {
-                val projed = JTS.transform(geometry, getLocalCRSTransform(geometry));
-                return projed.getLength();
-            }
-        } catch (Exception ex) {
-            log.error("Failed to calc length", ex);
-            return geometry.getLength();
-        }
+        return calcLength(GeometryContext.getDefault(), geometry);
+    }
+
+    public static double calcLength(GeometryContext context, Geometry geometry) {
+        return context.calcLength(geometry);
     }
 
 
@@ -233,8 +346,8 @@ public class ProjectionUtils {
 
         try {
             return new Envelope(
-                    JTS.transform(bottomLeft, latLonToXY).getCoordinate(),
-                    JTS.transform(topRight, latLonToXY).getCoordinate()
+                    JTS.transform(bottomLeft, WGS84_TO_MERCATOR).getCoordinate(),
+                    JTS.transform(topRight, WGS84_TO_MERCATOR).getCoordinate()
             );
         } catch (TransformException e) {
             log.error("Failed to transform", e);
@@ -249,7 +362,7 @@ public class ProjectionUtils {
      */
     public static Geometry transformToMercator(Geometry geometry) {
         try {
-            return JTS.transform(geometry, latLonToXY);
+            return JTS.transform(geometry, WGS84_TO_MERCATOR);
         } catch (TransformException e) {
             log.error("Failed to transform", e);
             return geometry;
@@ -259,7 +372,7 @@ public class ProjectionUtils {
     public static Coordinate transformToMercator(Coordinate coordinate) {
         try {
             Coordinate dest = new Coordinate();
-            return JTS.transform(coordinate, dest, latLonToXY);
+            return JTS.transform(coordinate, dest, WGS84_TO_MERCATOR);
         } catch (TransformException e) {
             log.error("Failed to transform", e);
             return coordinate;
@@ -296,17 +409,11 @@ public class ProjectionUtils {
 
 
     public static Geometry transformToLocalCRS(Geometry geometry) throws FactoryException, TransformException {
-        if (geometry.isEmpty()){
-            return geometry;
-        }
-        return JTS.transform(geometry, getLocalCRSTransform(geometry));
+        return GeometryContext.getDefault().transformToLocalCRS(geometry);
     }
 
     public static Geometry transformToLocalCRS(CoordinateReferenceSystem crs, Geometry geometry) throws FactoryException, TransformException {
-        if (geometry.isEmpty()){
-            return geometry;
-        }
-        return JTS.transform(geometry, CRS.findMathTransform(DefaultGeographicCRS.WGS84, crs));
+        return GeometryContext.getDefault().transformToLocalCRS(crs, geometry);
     }
 
     public static Coordinate transformToLocalCRS(Coordinate coordinate) {
@@ -319,9 +426,13 @@ public class ProjectionUtils {
     }
 
     public static Coordinate transformToLocalCRS(CoordinateReferenceSystem crs, Coordinate coordinate) {
+        return transformToLocalCRS(GeometryContext.getDefault(), crs, coordinate);
+    }
+
+    public static Coordinate transformToLocalCRS(GeometryContext context, CoordinateReferenceSystem crs, Coordinate coordinate) {
         try {
             Coordinate dest = new Coordinate();
-            return JTS.transform(coordinate, dest, CRS.findMathTransform( DefaultGeographicCRS.WGS84, crs));
+            return JTS.transform(coordinate, dest, context.getTransformFromWGS84(crs));
         } catch (TransformException | FactoryException e) {
             log.error("Failed to transform", e);
             return coordinate;
@@ -329,11 +440,15 @@ public class ProjectionUtils {
     }
 
     public static Coordinate transformFromLocalCRS(CoordinateReferenceSystem crs, Coordinate coordinate) {
+        return transformFromLocalCRS(GeometryContext.getDefault(), crs, coordinate);
+    }
+
+    public static Coordinate transformFromLocalCRS(GeometryContext context, CoordinateReferenceSystem crs, Coordinate coordinate) {
         try {
             Coordinate dest = new Coordinate();
             return JTS.transform(coordinate,
                     dest,
-                    CRS.findMathTransform(crs, DefaultGeographicCRS.WGS84));
+                    context.getTransformToWGS84(crs));
         } catch (Exception e) {
             log.error("Failed to transform", e);
             return coordinate;
@@ -345,7 +460,7 @@ public class ProjectionUtils {
             Coordinate dest = new Coordinate();
             return JTS.transform(coordinate,
                     dest,
-                    CRS.findMathTransform(getLocalCRS(makePoint(coordinate)), DefaultGeographicCRS.WGS84));
+                    GeometryContext.getDefault().getTransformToWGS84(getLocalCRS(makePoint(coordinate))));
         } catch (Exception e) {
             log.error("Failed to transform", e);
             return coordinate;
@@ -375,11 +490,18 @@ public class ProjectionUtils {
     }
 
     public static Geometry transformFromLocalCRS(CoordinateReferenceSystem crs, Geometry geometry) {
+        return transformFromLocalCRS(GeometryContext.getDefault(), crs, geometry);
+    }
+
+    /**
+     * Same as GeometryContext.transformFromLocalCRS(), but returns source geometry if transformation fails
+     */
+    public static Geometry transformFromLocalCRS(GeometryContext context, CoordinateReferenceSystem crs, Geometry geometry) {
         if (geometry.isEmpty()) {
             return geometry;
         }
         try {
-            return JTS.transform(geometry, CRS.findMathTransform(crs, DefaultGeographicCRS.WGS84));
+            return context.transformFromLocalCRS(crs, geometry);
         } catch (Exception e) {
             log.error("Failed to transform", e);
             return geometry;
@@ -391,7 +513,7 @@ public class ProjectionUtils {
             return geometry;
         }
         try {
-            return JTS.transform(geometry, CRS.findMathTransform(getLocalCRS(geometry), DefaultGeographicCRS.WGS84));
+            return JTS.transform(geometry, GeometryContext.getDefault().getTransformToWGS84(getLocalCRS(geometry)));
         } catch (Exception e) {
             log.error("Failed to transform", e);
             return geometry;
@@ -422,7 +544,7 @@ public class ProjectionUtils {
      */
     public static Geometry transformFromMercator(Geometry geometry) {
         try {
-            return JTS.transform(geometry, xyToLatLon);
+            return JTS.transform(geometry, MERCATOR_TO_WGS84);
         } catch (TransformException e) {
             log.error("Failed to transform", e);
             return geometry;
@@ -432,7 +554,7 @@ public class ProjectionUtils {
     public static Coordinate transformFromMercator(Coordinate coordinate) {
         try {
             Coordinate dest = new Coordinate();
-            return JTS.transform(coordinate, dest, xyToLatLon);
+            return JTS.transform(coordinate, dest, MERCATOR_TO_WGS84);
         } catch (TransformException e) {
             log.error("Failed to transform", e);
             return coordinate;
@@ -467,10 +589,7 @@ public class ProjectionUtils {
      * Gets a point on Earth, which is located at a given distance and heading from given point
      */
     public static Coordinate getCoordinate(Coordinate start, double distance, double angle) {
-        GeodeticCalculator geodeticCalculator = new GeodeticCalculator();
-        geodeticCalculator.setStartingGeographicPoint(start.x, start.y);
-        geodeticCalculator.setDirection(angle, distance);
-        return new Coordinate(geodeticCalculator.getDestinationGeographicPoint().getX(), geodeticCalculator.getDestinationGeographicPoint().getY());
+        return GeometryContext.getDefault().getGeodesicKernel().destination(start, angle, distance);
     }
 
 
@@ -500,14 +619,10 @@ public class ProjectionUtils {
     public static Geometry makeAABB(Coordinate bottomLeft, double width, double height) {
         List<Coordinate> points = new ArrayList<>(5);
         points.add(bottomLeft);
-        GeodeticCalculator gc = new GeodeticCalculator();
-        gc.setStartingGeographicPoint(bottomLeft.x, bottomLeft.y);
-        gc.setDirection(0, height);
-        Coordinate topLeft = new Coordinate(gc.getDestinationGeographicPoint().getX(), gc.getDestinationGeographicPoint().getY());
+        GeodesicKernel kernel = GeometryContext.getDefault().getGeodesicKernel();
+        Coordinate topLeft = kernel.destination(bottomLeft, 0, height);
         points.add(topLeft);
-        gc.setStartingGeographicPoint(topLeft.x, topLeft.y);
-        gc.setDirection(90, width);
-        Coordinate topRight = new Coordinate(gc.getDestinationGeographicPoint().getX(), gc.getDestinationGeographicPoint().getY());
+        Coordinate topRight = kernel.destination(topLeft, 90, width);
         points.add(topRight);
         Coordinate bottomRight = new Coordinate(topRight.getX(), bottomLeft.getY());
         points.add(bottomRight);
@@ -533,11 +648,7 @@ public class ProjectionUtils {
 
 
     public static double calcAzimuth(Coordinate c1, Coordinate c2) {
-        GeodeticCalculator gc = new GeodeticCalculator();
-        gc.setStartingGeographicPoint(c1.x, c1.y);
-        gc.setDestinationGeographicPoint(c2.x, c2.y);
-
-        return gc.getAzimuth();
+        return GeometryContext.getDefault().getGeodesicKernel().azimuth(c1, c2);
     }
 
     public static double calcAzimuth(LineString ls) {
@@ -556,9 +667,13 @@ public class ProjectionUtils {
     }
 
     public static LineString increaseLineLength(LineString ls, double fraction) {
+        return increaseLineLength(GeometryContext.getDefault(), ls, fraction);
+    }
+
+    public static LineString increaseLineLength(GeometryContext context, LineString ls, double fraction) {
         try {
-            val localCrs = CRSUtils.getLocalCRS(ls);
-            return increaseLineLength(localCrs, ls, fraction);
+            val localCrs = context.getLocalCRS(ls);
+            return increaseLineLength(context, localCrs, ls, fraction);
         } catch (Exception ex) {
             log.error("Failed to increase line length", ex);
             return ls;
@@ -570,13 +685,14 @@ public class ProjectionUtils {
      * E.g. when a 0.5 fraction is passed, the line will be prolonged by 25% of its length from each end.
      * */
     public static LineString increaseLineLength(CoordinateReferenceSystem localCrs, LineString ls, double fraction) {
-        try {
-            val globalToLocal = CRS.findMathTransform(DefaultGeographicCRS.WGS84, localCrs);
-            val localToGlobal = CRS.findMathTransform(localCrs, DefaultGeographicCRS.WGS84);
+        return increaseLineLength(GeometryContext.getDefault(), localCrs, ls, fraction);
+    }
 
-            LineString lsLocal = (LineString) JTS.transform(ls, globalToLocal);
+    public static LineString increaseLineLength(GeometryContext context, CoordinateReferenceSystem localCrs, LineString ls, double fraction) {
+        try {
+            LineString lsLocal = (LineString) context.transformToLocalCRS(localCrs, ls);
             LineString increased = GeometryUtils.increaseLineLength(lsLocal, fraction);
-            return (LineString) JTS.transform(increased, localToGlobal);
+            return (LineString) context.transformFromLocalCRS(localCrs, increased);
         } catch (Exception ex) {
             log.error("Failed to increase line length", ex);
             return ls;
@@ -656,9 +772,6 @@ public class ProjectionUtils {
     }
 
     public static double getDistance(double lat1, double lon1, double lat2, double lon2) {
-        GeodeticCalculator gc = new GeodeticCalculator();
-        gc.setStartingGeographicPoint(lon1, lat1);
-        gc.setDestinationGeographicPoint(lon2, lat2);
-        return gc.getOrthodromicDistance();
+        return GeometryContext.getDefault().getGeodesicKernel().distance(new Coordinate(lon1, lat1), new Coordinate(lon2, lat2));
     }
 }
@@ -4,16 +4,14 @@ import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
 import org.locationtech.jts.geom.TopologyException;
 import org.locationtech.jts.geom.prep.PreparedGeometry;
-import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.operation.buffer.BufferParameters;
 import org.locationtech.jts.operation.valid.IsValidOp;
 
-import static ru.itmo.idu.geometry.GeometryUtils.geometryFactory;
-
 public class SafeOperations {
 
-    private static Geometry fixGeometry(Geometry geom) {
+    private static Geometry fixGeometry(GeometryContext context, Geometry geom) {
         if (geom == null) {
-            return geometryFactory.createEmpty(2);
+            return context.getGeometryFactory().createEmpty(2);
         }
         if (geom.isEmpty()) {
             return geom;
@@ -21,7 +19,7 @@ public class SafeOperations {
         if (geom.getClass() == GeometryCollection.class) {
             // many geometry operations do not work properly on geometry collection arguments, but work on multipolygons
             // do not use instanceof since MultiLineString is also a GeometryCollection, but buffering will turn it into empty polygon
-            geom = GeometryUtils.tryConvertGCToCorrectSubclass(geom);
+            geom = GeometryUtils.tryConvertGCToCorrectSubclass(context.getGeometryFactory(), geom);
 
             if (geom.getClass() == GeometryCollection.class) {
                 // failed to covert, GC contains features of different types
@@ -33,20 +31,24 @@ public class SafeOperations {
         if (validOp.isValid()) {
             return geom;
         }
-        Geometry rz = GeometryUtils.fixGeometry(geom, validOp.getValidationError());
+        Geometry rz = GeometryUtils.fixGeometry(context.getGeometryFactory(), geom, validOp.getValidationError());
         if (rz == null) {
             return geom;
         }
         return rz;
     }
 
-    public static Boolean safeIntersects(PreparedGeometry geom1, Geometry geom2, double bufferMeters){
-        Geometry geom2Fixed = fixGeometry(geom2);
+    public static Boolean safeIntersects(PreparedGeometry geom1, Geometry geom2, double bufferMeters) {
+        return safeIntersects(GeometryContext.getDefault(), geom1, geom2, bufferMeters);
+    }
+
+    public static Boolean safeIntersects(GeometryContext context, PreparedGeometry geom1, Geometry geom2, double bufferMeters) {
+        Geometry geom2Fixed = fixGeometry(context, geom2);
         try {
             return geom1.intersects(geom2Fixed);
         } catch (TopologyException tpe) {
             try {
-                return ProjectionUtils.bufferProjected(geom1.getGeometry(), bufferMeters).intersects(geom2Fixed);
+                return ProjectionUtils.bufferProjected(context, geom1.getGeometry(), bufferMeters, new BufferParameters()).intersects(geom2Fixed);
             } catch (TopologyException tpe2) {
                 return false;
             }
@@ -58,10 +60,13 @@ public class SafeOperations {
     }
 
     public static Boolean safeIntersects(Geometry geom1, Geometry geom2, double bufferMeters) {
-        Geometry geom1Fixed = fixGeometry(geom1);
-        PreparedGeometryFactory factory = new PreparedGeometryFactory();
-        PreparedGeometry geom1Prepared = factory.create(geom1Fixed);
-        return safeIntersects(geom1Prepared, geom2, bufferMeters);
+        return safeIntersects(GeometryContext.getDefault(), geom1, geom2, bufferMeters);
+    }
+
+    public static Boolean safeIntersects(GeometryContext context, Geometry geom1, Geometry geom2, double bufferMeters) {
+        Geometry geom1Fixed = fixGeometry(context, geom1);
+        PreparedGeometry geom1Prepared = context.prepare(geom1Fixed);
+        return safeIntersects(context, geom1Prepared, geom2, bufferMeters);
     }
 
     public static Boolean safeIntersects(Geometry geom1, Geometry geom2){
@@ -69,17 +74,21 @@ public class SafeOperations {
     }
 
     public static Geometry safeIntersection(PreparedGeometry geom1, Geometry geom2, double bufferMeters) {
+        return safeIntersection(GeometryContext.getDefault(), geom1, geom2, bufferMeters);
+    }
+
+    public static Geometry safeIntersection(GeometryContext context, PreparedGeometry geom1, Geometry geom2, double bufferMeters) {
         if (geom1.getGeometry().isEmpty() || geom2.isEmpty()) {
-            return geometryFactory.createEmpty(2);
+            return context.getGeometryFactory().createEmpty(2);
         }
-        Geometry geom2Fixed = fixGeometry(geom2);
+        Geometry geom2Fixed = fixGeometry(context, geom2);
         try {
             return geom1.getGeometry().intersection(geom2Fixed);
         } catch (TopologyException tpe) {
             try {
-                return ProjectionUtils.bufferProjected(geom1.getGeometry(), bufferMeters).intersection(geom2Fixed);
+                return ProjectionUtils.bufferProjected(context, geom1.getGeometry(), bufferMeters, new BufferParameters()).intersection(geom2Fixed);
             } catch (TopologyException tpe2) {
-                return geometryFactory.createEmpty(2);
+                return context.getGeometryFactory().createEmpty(2);
             }
         }
     }
@@ -89,13 +98,16 @@ public class SafeOperations {
     }
 
     public static Geometry safeIntersection(Geometry geom1, Geometry geom2, double bufferMeters) {
+        return safeIntersection(GeometryContext.getDefault(), geom1, geom2, bufferMeters);
+    }
+
+    public static Geometry safeIntersection(GeometryContext context, Geometry geom1, Geometry geom2, double bufferMeters) {
         if (geom1.isEmpty() || geom2.isEmpty()) {
-            return geometryFactory.createEmpty(2);
+            return context.getGeometryFactory().createEmpty(2);
         }
-        Geometry geom1Fixed = fixGeometry(geom1);
-        PreparedGeometryFactory factory = new PreparedGeometryFactory();
-        PreparedGeometry geom1Prepared = factory.create(geom1Fixed);
-        return safeIntersection(geom1Prepared, geom2, bufferMeters);
+        Geometry geom1Fixed = fixGeometry(context, geom1);
+        PreparedGeometry geom1Prepared = context.prepare(geom1Fixed);
+        return safeIntersection(context, geom1Prepared, geom2, bufferMeters);
     }
 
     public static Geometry safeIntersection(Geometry geom1, Geometry geom2) {
@@ -103,25 +115,29 @@ public class SafeOperations {
     }
 
     public static Geometry safeDifference(PreparedGeometry geom1, Geometry geom2, double bufferMeters) {
-        Geometry geom2Fixed = fixGeometry(geom2);
+        return safeDifference(GeometryContext.getDefault(), geom1, geom2, bufferMeters);
+    }
+
+    public static Geometry safeDifference(GeometryContext context, PreparedGeometry geom1, Geometry geom2, double bufferMeters) {
+        Geometry geom2Fixed = fixGeometry(context, geom2);
         final boolean isGeometryCollection = geom1.getGeometry().getNumGeometries() > 1 || geom2.getNumGeometries() > 1;
         try {
             if (isGeometryCollection) {
-                return GeometryUtils.geometryCollectionDifference(geom1.getGeometry(), geom2);
+                return GeometryUtils.geometryCollectionDifference(context, geom1.getGeometry(), geom2);
             } else {
                 return geom1.getGeometry().difference(geom2Fixed);
             }
         } catch (TopologyException tpe) {
             try {
 
-                final Geometry slightlyBufferedFirst = ProjectionUtils.bufferProjected(geom1.getGeometry(), bufferMeters);
+                final Geometry slightlyBufferedFirst = ProjectionUtils.bufferProjected(context, geom1.getGeometry(), bufferMeters, new BufferParameters());
                 if (isGeometryCollection) {
                     return slightlyBufferedFirst.difference(geom2Fixed);
                 } else {
                     return slightlyBufferedFirst.difference(geom2Fixed);
                 }
             } catch (TopologyException tpe2) {
-                return geometryFactory.createEmpty(2);
+                return context.getGeometryFactory().createEmpty(2);
             }
         }
     }
@@ -131,10 +147,13 @@ public class SafeOperations {
     }
 
     public static Geometry safeDifference(Geometry geom1, Geometry geom2, double bufferMeters) {
-        Geometry geom1Fixed = fixGeometry(geom1);
-        PreparedGeometryFactory factory = new PreparedGeometryFactory();
-        PreparedGeometry geom1Prepared = factory.create(geom1Fixed);
-        return safeDifference(geom1Prepared, geom2, bufferMeters);
+        return safeDifference(GeometryContext.getDefault(), geom1, geom2, bufferMeters);
+    }
+
+    public static Geometry safeDifference(GeometryContext context, Geometry geom1, Geometry geom2, double bufferMeters) {
+        Geometry geom1Fixed = fixGeometry(context, geom1);
+        PreparedGeometry geom1Prepared = context.prepare(geom1Fixed);
+        return safeDifference(context, geom1Prepared, geom2, bufferMeters);
     }
 
     public static Geometry safeDifference(Geometry geom1, Geometry geom2) {
@@ -142,14 +161,18 @@ public class SafeOperations {
     }
 
     public static Geometry safeUnion(PreparedGeometry geom1, Geometry geom2, double bufferMeters) {
-        Geometry geom2Fixed = fixGeometry(geom2);
+        return safeUnion(GeometryContext.getDefault(), geom1, geom2, bufferMeters);
+    }
+
+    public static Geometry safeUnion(GeometryContext context, PreparedGeometry geom1, Geometry geom2, double bufferMeters) {
+        Geometry geom2Fixed = fixGeometry(context, geom2);
         try {
             return geom1.getGeometry().union(geom2Fixed);
         } catch (TopologyException tpe) {
             try {
-                return ProjectionUtils.bufferProjected(geom1.getGeometry(), bufferMeters).union(geom2Fixed);
+                return ProjectionUtils.bufferProjected(context, geom1.getGeometry(), bufferMeters, new BufferParameters()).union(geom2Fixed);
             } catch (TopologyException tpe2) {
-                return geometryFactory.createEmpty(2);
+                return context.getGeometryFactory().createEmpty(2);
             }
         }
     }
@@ -159,23 +182,30 @@ public class SafeOperations {
     }
 
     public static Geometry safeUnion(Geometry geom1, Geometry geom2, double bufferMeters) {
-        Geometry geom1Fixed = fixGeometry(geom1);
-        PreparedGeometryFactory factory = new PreparedGeometryFactory();
-        PreparedGeometry geom1Prepared = factory.create(geom1Fixed);
-        return safeUnion(geom1Prepared, geom2, bufferMeters);
+        return safeUnion(GeometryContext.getDefault(), geom1, geom2, bufferMeters);
+    }
+
+    public static Geometry safeUnion(GeometryContext context, Geometry geom1, Geometry geom2, double bufferMeters) {
+        Geometry geom1Fixed = fixGeometry(context, geom1);
+        PreparedGeometry geom1Prepared = context.prepare(geom1Fixed);
+        return safeUnion(context, geom1Prepared, geom2, bufferMeters);
     }
 
     public static Geometry safeUnion(Geometry geom1, Geometry geom2) {
         return safeUnion(geom1, geom2, 1.0);
     }
 
-    public static Boolean safeCovers(PreparedGeometry geom1, Geometry geom2, double bufferMeters){
-        Geometry geom2Fixed = fixGeometry(geom2);
+    public static Boolean safeCovers(PreparedGeometry geom1, Geometry geom2, double bufferMeters) {
+        return safeCovers(GeometryContext.getDefault(), geom1, geom2, bufferMeters);
+    }
+
+    public static Boolean safeCovers(GeometryContext context, PreparedGeometry geom1, Geometry geom2, double bufferMeters) {
+        Geometry geom2Fixed = fixGeometry(context, geom2);
         try {
             return geom1.covers(geom2Fixed);
         } catch (TopologyException tpe) {
             try {
-                return ProjectionUtils.bufferProjected(geom1.getGeometry(), bufferMeters).covers(geom2Fixed);
+                return ProjectionUtils.bufferProjected(context, geom1.getGeometry(), bufferMeters, new BufferParameters()).covers(geom2Fixed);
             } catch (TopologyException tpe2) {
                 return false;
             }
@@ -186,24 +216,31 @@ public class SafeOperations {
         return safeCovers(geom1, geom2, 1.0);
     }
 
-    public static Boolean safeCovers(Geometry geom1, Geometry geom2, double bufferMeters){
-        Geometry geom1Fixed = fixGeometry(geom1);
-        PreparedGeometryFactory factory = new PreparedGeometryFactory();
-        PreparedGeometry geom1Prepared = factory.create(geom1Fixed);
-        return safeCovers(geom1Prepared, geom2, bufferMeters);
+    public static Boolean safeCovers(Geometry geom1, Geometry geom2, double bufferMeters) {
+        return safeCovers(GeometryContext.getDefault(), geom1, geom2, bufferMeters);
+    }
+
+    public static Boolean safeCovers(GeometryContext context, Geometry geom1, Geometry geom2, double bufferMeters) {
+        Geometry geom1Fixed = fixGeometry(context, geom1);
+        PreparedGeometry geom1Prepared = context.prepare(geom1Fixed);
+        return safeCovers(context, geom1Prepared, geom2, bufferMeters);
     }
 
     public static Boolean safeCovers(Geometry geom1, Geometry geom2) {
         return safeCovers(geom1, geom2, 1.0);
     }
 
-    public static Boolean safeContains(PreparedGeometry geom1, Geometry geom2, double bufferMeters){
-        Geometry geom2Fixed = fixGeometry(geom2);
+    public static Boolean safeContains(PreparedGeometry geom1, Geometry geom2, double bufferMeters) {
+        return safeContains(GeometryContext.getDefault(), geom1, geom2, bufferMeters);
+    }
+
+    public static Boolean safeContains(GeometryContext context, PreparedGeometry geom1, Geometry geom2, double bufferMeters) {
+        Geometry geom2Fixed = fixGeometry(context, geom2);
         try {
             return geom1.contains(geom2Fixed);
         } catch (TopologyException tpe) {
             try {
-                return ProjectionUtils.bufferProjected(geom1.getGeometry(), bufferMeters).contains(geom2Fixed);
+                return ProjectionUtils.bufferProjected(context, geom1.getGeometry(), bufferMeters, new BufferParameters()).contains(geom2Fixed);
             } catch (TopologyException tpe2) {
                 return false;
             }
@@ -214,11 +251,14 @@ public class SafeOperations {
         return safeContains(geom1, geom2, 1.0);
     }
 
-    public static Boolean safeContains(Geometry geom1, Geometry geom2, double bufferMeters){
-        Geometry geom1Fixed = fixGeometry(geom1);
-        PreparedGeometryFactory factory = new PreparedGeometryFactory();
-        PreparedGeometry geom1Prepared = factory.create(geom1Fixed);
-        return safeContains(geom1Prepared, geom2, bufferMeters);
+    public static Boolean safeContains(Geometry geom1, Geometry geom2, double bufferMeters) {
+        return safeContains(GeometryContext.getDefault(), geom1, geom2, bufferMeters);
+    }
+
+    public static Boolean safeContains(GeometryContext context, Geometry geom1, Geometry geom2, double bufferMeters) {
+        Geometry geom1Fixed = fixGeometry(context, geom1);
+        PreparedGeometry geom1Prepared = context.prepare(geom1Fixed);
+        return safeContains(context, geom1Prepared, geom2, bufferMeters);
     }
 
     public static Boolean safeContains(Geometry geom1, Geometry geom2) {
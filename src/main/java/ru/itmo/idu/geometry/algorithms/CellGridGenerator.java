@@ -0,0 +1,272 @@
+package ru.itmo.idu.geometry.algorithms;
+
+import lombok.Setter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.operation.overlayng.OverlayNG;
+import org.locationtech.jts.operation.overlayng.OverlayNGRobust;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.TransformException;
+import ru.itmo.idu.geometry.GeometryContext;
+import ru.itmo.idu.geometry.GeometryUtils;
+import ru.itmo.idu.geometry.ProjectionUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Covers an area with square or hexagonal cells clipped to it, e.g. for aggregation of data by grid cells.
+ * <p>
+ * Cells are processed in tiles of TILE_CELLS x TILE_CELLS cells. A tile that is covered by the area emits its cells
+ * without any checks, a tile that does not intersect the area is skipped. For other tiles area is clipped to the
+ * tile once, and then each cell is tested against this small piece: cells covered by it are emitted as is and only
+ * boundary cells are clipped. So clipping cost depends on the area boundary near a cell and not on the whole area.
+ * Tiles are independent and can be processed in parallel.
+ */
+@Slf4j
+public class CellGridGenerator {
+
+    public enum CellShape {
+        SQUARE,
+        /**
+         * Pointy-top hexagons, odd rows are shifted by half of a cell to the right
+         */
+        HEXAGON
+    }
+
+    /**
+     * Grid cell. Row and column are indices in the grid built from the lower left corner of area envelope
+     */
+    @Value
+    public static class Cell {
+        int row;
+        int column;
+        Geometry geometry;
+        /**
+         * False if cell is completely inside of the area and geometry is a full cell
+         */
+        boolean clipped;
+    }
+
+    private static final int TILE_CELLS = 16;
+
+    private final GeometryContext context;
+
+    private final Geometry area;
+
+    private final double cellSize;
+
+    private final CellShape shape;
+
+    @Setter
+    private boolean parallel = false;
+
+    /**
+     * Area is in local metric CRS, use generateCellsWGS84() for geometries in WGS84.
+     * cellSize is a distance between centres of neighbouring cells in a row (side of a square or width of a hexagon)
+     */
+    public CellGridGenerator(Geometry area, double cellSize, CellShape shape) {
+        this(GeometryContext.getDefault(), area, cellSize, shape);
+    }
+
+    /**
+     * Cells are created with geometry factory of given context
+     */
+    public CellGridGenerator(GeometryContext context, Geometry area, double cellSize, CellShape shape) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cellSize shall be positive");
+        }
+        this.context = context;
+        this.area = area;
+        this.cellSize = cellSize;
+        this.shape = shape;
+    }
+
+    /**
+     * Distance between rows of cells
+     */
+    private double getRowStep() {
+        return shape == CellShape.HEXAGON ? cellSize * Math.sqrt(3) / 2 : cellSize;
+    }
+
+    /**
+     * Distance from hexagon centre to its vertices
+     */
+    private double getHexRadius() {
+        return cellSize / Math.sqrt(3);
+    }
+
+    /**
+     * Streams cells tile by tile, cells of a tile go row by row. Order is the same for parallel streams
+     */
+    public Stream<Cell> streamCells() {
+        if (area.isEmpty()) {
+            return Stream.empty();
+        }
+        var envelope = area.getEnvelopeInternal();
+        var preparedArea = context.prepare(area);
+        // one extra row and column, as hexagons in odd rows and first row stick out of cells grid
+        int rows = (int) Math.ceil(envelope.getHeight() / getRowStep()) + 1;
+        int columns = (int) Math.ceil(envelope.getWidth() / cellSize) + 1;
+        int tileRows = (rows + TILE_CELLS - 1) / TILE_CELLS;
+        int tileColumns = (columns + TILE_CELLS - 1) / TILE_CELLS;
+
+        IntStream tiles = IntStream.range(0, tileRows * tileColumns);
+        if (parallel) {
+            tiles = tiles.parallel();
+        }
+        return tiles
+                .mapToObj(tile -> {
+                    int fromRow = (tile / tileColumns) * TILE_CELLS;
+                    int fromColumn = (tile % tileColumns) * TILE_CELLS;
+                    return processTile(envelope, preparedArea,
+                            fromRow, Math.min(rows, fromRow + TILE_CELLS),
+                            fromColumn, Math.min(columns, fromColumn + TILE_CELLS));
+                })
+                .flatMap(List::stream);
+    }
+
+    public List<Cell> generateCells() {
+        return streamCells().collect(Collectors.toList());
+    }
+
+    private List<Cell> processTile(Envelope envelope, PreparedGeometry preparedArea,
+                                   int fromRow, int toRow, int fromColumn, int toColumn) {
+        var tileEnvelope = new Envelope();
+        // corner cells of two first and two last rows, as shifted and not shifted rows of hexagons stick out differently
+        for (int row : new int[] {fromRow, Math.min(fromRow + 1, toRow - 1), Math.max(toRow - 2, fromRow), toRow - 1}) {
+            tileEnvelope.expandToInclude(makeCell(envelope, row, fromColumn).getEnvelopeInternal());
+            tileEnvelope.expandToInclude(makeCell(envelope, row, toColumn - 1).getEnvelopeInternal());
+        }
+        var tileGeometry = context.getGeometryFactory().toGeometry(tileEnvelope);
+        if (!preparedArea.intersects(tileGeometry)) {
+            return Collections.emptyList();
+        }
+
+        List<Cell> result = new ArrayList<>();
+        if (preparedArea.covers(tileGeometry)) {
+            for (int row = fromRow; row < toRow; ++row) {
+                for (int column = fromColumn; column < toColumn; ++column) {
+                    result.add(new Cell(row, column, makeCell(envelope, row, column), false));
+                }
+            }
+            return result;
+        }
+
+        Geometry tileArea;
+        try {
+            tileArea = OverlayNGRobust.overlay(area, tileGeometry, OverlayNG.INTERSECTION);
+        } catch (RuntimeException e) {
+            log.error("Failed to clip area to a tile, cells of tile are skipped", e);
+            return result;
+        }
+        var preparedTileArea = context.prepare(tileArea);
+        for (int row = fromRow; row < toRow; ++row) {
+            for (int column = fromColumn; column < toColumn; ++column) {
+                var cell = makeCell(envelope, row, column);
+                if (!preparedTileArea.intersects(cell)) {
+                    continue;
+                }
+                if (preparedTileArea.covers(cell)) {
+                    result.add(new Cell(row, column, cell, false));
+                    continue;
+                }
+                var clipped = clip(tileArea, cell);
+                if (clipped != null) {
+                    result.add(new Cell(row, column, clipped, true));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns polygonal part of intersection or null if it is empty
+     */
+    private Geometry clip(Geometry tileArea, Polygon cell) {
+        try {
+            // result is made by factory of the first argument, same as cells that are not clipped
+            var clipped = OverlayNGRobust.overlay(cell, tileArea, OverlayNG.INTERSECTION);
+            if (!(clipped instanceof Polygonal)) {
+                // touching cells give lines or points, mixed results are collections
+                var polygons = GeometryUtils.streamGeometryParts(clipped)
+                        .filter(part -> part instanceof Polygon)
+                        .toArray(Polygon[]::new);
+                clipped = polygons.length == 1 ? polygons[0] : context.getGeometryFactory().createMultiPolygon(polygons);
+            }
+            return clipped.isEmpty() ? null : clipped;
+        } catch (RuntimeException e) {
+            log.error("Failed to clip a cell", e);
+            return null;
+        }
+    }
+
+    private Polygon makeCell(Envelope envelope, int row, int column) {
+        if (shape == CellShape.SQUARE) {
+            return GeometryUtils.makeRectangle(
+                    context.getGeometryFactory(),
+                    envelope.getMinX() + column * cellSize,
+                    envelope.getMinY() + row * cellSize,
+                    cellSize,
+                    cellSize
+            );
+        }
+        double centreX = envelope.getMinX() + (column + (row % 2 == 1 ? 0.5 : 0.0)) * cellSize;
+        double centreY = envelope.getMinY() + row * getRowStep();
+        double radius = getHexRadius();
+        var coords = new Coordinate[7];
+        for (int i = 0; i < 6; ++i) {
+            double angle = Math.toRadians(30 + 60 * i);
+            coords[i] = new Coordinate(centreX + radius * Math.cos(angle), centreY + radius * Math.sin(angle));
+        }
+        coords[6] = coords[0].copy();
+        return context.getGeometryFactory().createPolygon(coords);
+    }
+
+    /**
+     * Generates cells covering given area in WGS84, cellSizeMeters is in meters
+     */
+    public static List<Cell> generateCellsWGS84(CoordinateReferenceSystem crs,
+                                                Geometry area,
+                                                double cellSizeMeters,
+                                                CellShape shape,
+                                                boolean parallel) throws FactoryException, TransformException {
+        return generateCellsWGS84(GeometryContext.getDefault(), crs, area, cellSizeMeters, shape, parallel);
+    }
+
+    public static List<Cell> generateCellsWGS84(GeometryContext context,
+                                                CoordinateReferenceSystem crs,
+                                                Geometry area,
+                                                double cellSizeMeters,
+                                                CellShape shape,
+                                                boolean parallel) throws FactoryException, TransformException {
+        if (area.isEmpty()) {
+            return Collections.emptyList();
+        }
+        var localArea = context.transformToLocalCRS(crs, area);
+        var generator = new CellGridGenerator(context, localArea, cellSizeMeters, shape);
+        generator.setParallel(parallel);
+        return generator.streamCells()
+                .map(cell -> new Cell(cell.getRow(), cell.getColumn(),
+                        ProjectionUtils.transformFromLocalCRS(context, crs, cell.getGeometry()), cell.isClipped()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Static wrapper helper
+     */
+    public static List<Cell> generateCells(Geometry area, double cellSize, CellShape shape) {
+        return new CellGridGenerator(area, cellSize, shape).generateCells();
+    }
+}
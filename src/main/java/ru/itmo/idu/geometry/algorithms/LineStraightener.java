@@ -2,15 +2,41 @@ package ru.itmo.idu.geometry.algorithms;
 
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.prep.PreparedGeometry;
 import ru.itmo.idu.geometry.GeometryUtils;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class LineStraightener {
 
+    public enum Mode {
+        /**
+         * Extends a ray from the last kept vertex one vertex at a time and stops at the first vertex that can not be
+         * reached by a straight segment inside of the area. Needs up to n^2 containment tests for a line of n vertices
+         */
+        GREEDY,
+        /**
+         * Looks for the end of the ray by galloping (testing vertices 1, 2, 4, 8 ... steps ahead) and then by binary
+         * search between the last reachable and the first unreachable tested vertex. Needs O(log n) containment tests
+         * per resulting segment.
+         * <p>
+         * Gives the same result as GREEDY when the set of vertices reachable from the ray start is a prefix of the rest of the line,
+         * which is the usual case for paths inside of blocks. Otherwise it may skip over a vertex at which GREEDY would stop
+         * and end the ray at a further reachable vertex, so the result can have fewer (rarely more) vertices than GREEDY.
+         * pointsToKeep are kept and never jumped over in both modes. Unlike GREEDY, which takes a kept vertex as soon as
+         * the ray reaches it, a kept vertex is reached only by a segment inside of the area, so all resulting segments
+         * except ones between neighbouring source vertices are inside of the area
+         */
+        GALLOPING
+    }
+
     /**
      * Given a line, area and points, tries to straighten the line (throwing away intermediate points). Straightened
      * line shall be within given area. Provided pointsToKeep are not thrown away
@@ -18,17 +44,74 @@ public class LineStraightener {
     public static LineString straightenLineString(LineString lineToStraighten,
                                                    Geometry area,
                                                    List<Coordinate> pointsToKeep) {
+        return straightenLineString(lineToStraighten, area, pointsToKeep, Mode.GREEDY);
+    }
+
+    public static LineString straightenLineString(LineString lineToStraighten,
+                                                  Geometry area,
+                                                  List<Coordinate> pointsToKeep,
+                                                  Mode mode) {
+        return straightenLineStringPrepared(
+                lineToStraighten,
+                area != null ? GeometryUtils.prepareGeometry(area) : null,
+                pointsToKeep != null ? new HashSet<>(pointsToKeep) : null,
+                mode
+        );
+    }
+
+    /**
+     * Same as straightenLineString(), but for many lines within the same area. Area is prepared only once and points
+     * to keep are looked up in a hash set. Resulting lines are in the same order as source ones.
+     * @param parallel Straighten lines in parallel
+     */
+    public static List<LineString> straightenLineStrings(Collection<? extends LineString> linesToStraighten,
+                                                         Geometry area,
+                                                         Collection<Coordinate> pointsToKeep,
+                                                         boolean parallel) {
+        return straightenLineStrings(linesToStraighten, area, pointsToKeep, parallel, Mode.GREEDY);
+    }
+
+    public static List<LineString> straightenLineStrings(Collection<? extends LineString> linesToStraighten,
+                                                         Geometry area,
+                                                         Collection<Coordinate> pointsToKeep,
+                                                         boolean parallel,
+                                                         Mode mode) {
+        PreparedGeometry preparedArea = area != null ? GeometryUtils.prepareGeometry(area) : null;
+        Set<Coordinate> keepSet = pointsToKeep != null ? new HashSet<>(pointsToKeep) : null;
+        var stream = parallel ? linesToStraighten.parallelStream() : linesToStraighten.stream();
+        return stream
+                .map(line -> straightenLineStringPrepared(line, preparedArea, keepSet, mode))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Version for callers that straighten lines within the same area on their own. Prepared geometries are thread-safe,
+     * so preparedArea can be shared between threads. Both preparedArea and pointsToKeep can be null
+     */
+    public static LineString straightenLineStringPrepared(LineString lineToStraighten,
+                                                          PreparedGeometry preparedArea,
+                                                          Set<Coordinate> pointsToKeep) {
+        return straightenLineStringPrepared(lineToStraighten, preparedArea, pointsToKeep, Mode.GREEDY);
+    }
+
+    public static LineString straightenLineStringPrepared(LineString lineToStraighten,
+                                                          PreparedGeometry preparedArea,
+                                                          Set<Coordinate> pointsToKeep,
+                                                          Mode mode) {
         Coordinate[] coords = lineToStraighten.getCoordinates();
         if (coords.length <= 2) {
             return lineToStraighten;
         }
+        // result is made by factory of source line, so that lines of a non-default GeometryContext stay in it
+        var factory = lineToStraighten.getFactory();
+        if (mode == Mode.GALLOPING) {
+            return straightenGalloping(factory, coords, preparedArea, pointsToKeep);
+        }
         var startIdx = 0;
         var rayIdx = 1;
         var newCoords = new ArrayList<Coordinate>();
         newCoords.add(coords[startIdx]);
 
-        PreparedGeometry preparedArea = area != null ? GeometryUtils.prepareGeometry(area) : null;
-
         do {
             var startCoord = coords[startIdx];
             var endCoord = coords[rayIdx];
@@ -58,8 +141,73 @@ public class LineStraightener {
         }
         newCoords.add(coords[rayIdx]);
 
-        return GeometryUtils.makeLine(newCoords.toArray(new Coordinate[0]));
+        return GeometryUtils.makeLine(factory, newCoords.toArray(new Coordinate[0]));
     }
 
+    private static LineString straightenGalloping(GeometryFactory factory,
+                                                  Coordinate[] coords,
+                                                  PreparedGeometry preparedArea,
+                                                  Set<Coordinate> pointsToKeep) {
+        // nextStop[i] is the first vertex after i that is kept or the last vertex, rays never go past it
+        int[] nextStop = new int[coords.length];
+        nextStop[coords.length - 1] = coords.length - 1;
+        for (int i = coords.length - 2; i >= 0; --i) {
+            boolean isStop = i + 1 == coords.length - 1 || (pointsToKeep != null && pointsToKeep.contains(coords[i + 1]));
+            nextStop[i] = isStop ? i + 1 : nextStop[i + 1];
+        }
+
+        var newCoords = new ArrayList<Coordinate>();
+        newCoords.add(coords[0]);
+        int startIdx = 0;
+        while (startIdx < coords.length - 1) {
+            startIdx = findRayEnd(coords, preparedArea, startIdx, nextStop[startIdx]);
+            newCoords.add(coords[startIdx]);
+        }
+        return GeometryUtils.makeLine(factory, newCoords.toArray(new Coordinate[0]));
+    }
 
+    /**
+     * Returns the furthest vertex up to stopIdx that is found to be reachable from startIdx. Next vertex is always
+     * taken, even if segment to it is not inside of the area, same as in GREEDY mode
+     */
+    private static int findRayEnd(Coordinate[] coords,
+                                  PreparedGeometry preparedArea,
+                                  int startIdx,
+                                  int stopIdx) {
+        if (preparedArea == null) {
+            return stopIdx;
+        }
+        int reachable = startIdx + 1;
+        int unreachable = -1;
+        int step = 1;
+        while (reachable < stopIdx) {
+            step *= 2;
+            int candidate = (int) Math.min((long) startIdx + step, stopIdx);
+            if (isReachable(coords, preparedArea, startIdx, candidate)) {
+                reachable = candidate;
+            } else {
+                unreachable = candidate;
+                break;
+            }
+        }
+        if (unreachable < 0) {
+            return reachable;
+        }
+        while (unreachable - reachable > 1) {
+            int mid = (reachable + unreachable) >>> 1;
+            if (isReachable(coords, preparedArea, startIdx, mid)) {
+                reachable = mid;
+            } else {
+                unreachable = mid;
+            }
+        }
+        return reachable;
+    }
+
+    private static boolean isReachable(Coordinate[] coords,
+                                       PreparedGeometry preparedArea,
+                                       int startIdx,
+                                       int endIdx) {
+        return preparedArea.contains(GeometryUtils.makeLine(coords[startIdx], coords[endIdx]));
+    }
 }
@@ -1,19 +1,30 @@
 package ru.itmo.idu.geometry.algorithms;
 
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.algorithm.locate.IndexedPointInAreaLocator;
 import org.locationtech.jts.geom.*;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 import org.locationtech.jts.shape.random.RandomPointsBuilder;
 import org.locationtech.jts.triangulate.VoronoiDiagramBuilder;
+import org.locationtech.jts.triangulate.polygon.ConstrainedDelaunayTriangulator;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.TransformException;
+import ru.itmo.idu.geometry.GeometryContext;
 import ru.itmo.idu.geometry.GeometryUtils;
 import ru.itmo.idu.geometry.ProjectionUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Lloyds algorithm fills polygon with given amount of points, distributing them almost equally at even distances
@@ -25,17 +36,74 @@ import java.util.stream.Collectors;
  *
  * @link <a href="https://en.wikipedia.org/wiki/Lloyd%27s_algorithm">...</a>
  */
+@Slf4j
 public class LloydAlgorithm {
 
+    /**
+     * Attempts to sample a random point inside area envelope before switching to sampling in area triangles
+     */
+    private static final int MAX_ATTEMPTS_PER_POINT = 100;
+
+    /**
+     * Coincident sites are moved apart by this fraction of area size before building Voronoi diagram
+     */
+    private static final double SEPARATION_STEP_FRACTION = 1e-9;
+
     private final Geometry area;
 
     private final double pointDistance;
 
-    private MultiPoint currentPoints;
+    private final PreparedGeometry preparedArea;
+
+    private final GeometryContext context;
 
     @Setter
     private int maxIterations = 50;
 
+    /**
+     * Iterations stop when points move less than this distance (in area units). 0 means always do maxIterations
+     */
+    @Setter
+    private double convergenceTolerance = 0.0;
+
+    @Setter
+    private ConvergenceCriterion convergenceCriterion = ConvergenceCriterion.MAX_DISPLACEMENT;
+
+    /**
+     * Clip Voronoi cells and calculate their centroids in parallel
+     */
+    @Setter
+    private boolean parallel = false;
+
+    /**
+     * Random generator for initial points. If not set, JTS RandomPointsBuilder is used, which is not reproducible
+     */
+    @Setter
+    private Random random;
+
+    /**
+     * Width of a ring around changed region, points in which are moved by relaxIncrementally() as well
+     */
+    @Setter
+    private double neighbourhoodWidth;
+
+    /**
+     * Durations of iterations done by last finished run, in nanoseconds. Replaced as a whole when a run finishes, so that
+     * runs do not share any mutable state
+     */
+    private volatile List<Long> iterationTimes = Collections.emptyList();
+
+    public enum ConvergenceCriterion {
+        /**
+         * Stop when every point moved less than tolerance on last iteration
+         */
+        MAX_DISPLACEMENT,
+        /**
+         * Stop when average distance points moved on last iteration is less than tolerance
+         */
+        MEAN_DISPLACEMENT
+    }
+
     /**
      * Will generate points filling this polygonal area with points
      * Points will have average given distance from each other
@@ -44,44 +112,123 @@ public class LloydAlgorithm {
      * pointDistance is in units of area CRS (meters)
      */
     public LloydAlgorithm(Geometry area, double pointDistance) {
+        this(GeometryContext.getDefault(), area, pointDistance);
+    }
+
+    /**
+     * Same as above, geometries are created by factory of given context.
+     * Runs keep no state in the instance except iteration statistics, so an instance can be run from several threads
+     * if settings are not changed meanwhile. Shared Random makes results of concurrent runs not reproducible though
+     */
+    public LloydAlgorithm(GeometryContext context, Geometry area, double pointDistance) {
+        this.context = context;
         this.area = area;
         this.pointDistance = pointDistance;
         if (pointDistance <= 0) {
             throw new IllegalArgumentException("pointDistance shall be positive");
         }
+        this.preparedArea = context.prepare(area);
+        this.neighbourhoodWidth = 3 * pointDistance;
     }
 
-    private MultiPoint run() {
+    private MultiPoint run(MultiPoint initialPoints) {
+        var currentPoints = initialPoints;
+        List<Long> times = new ArrayList<>();
         for (int iteration = 0; iteration < maxIterations; ++iteration) {
+            long iterationStart = System.nanoTime();
             var vdb = new VoronoiDiagramBuilder();
             vdb.setSites(currentPoints);
-            var vd = vdb.getDiagram(GeometryUtils.geometryFactory);
-            var centroids = calculateCentroids(vd);
+            var vd = vdb.getDiagram(context.getGeometryFactory());
+            var cellCentroids = calculateCentroids(vd);
+            var centroids = new ArrayList<Coordinate>(cellCentroids.length);
+            double maxDisplacement = 0.0;
+            double totalDisplacement = 0.0;
+            for (int cellIdx = 0; cellIdx < cellCentroids.length; ++cellIdx) {
+                var centroid = cellCentroids[cellIdx];
+                if (centroid == null) {
+                    continue;
+                }
+                centroids.add(centroid);
+                // voronoi builder stores site coordinate as cell user data
+                var site = (Coordinate) vd.getGeometryN(cellIdx).getUserData();
+                double displacement = site != null ? site.distance(centroid) : Double.POSITIVE_INFINITY;
+                maxDisplacement = Math.max(maxDisplacement, displacement);
+                totalDisplacement += displacement;
+            }
             currentPoints = createMultiPoint(centroids);
+            times.add(System.nanoTime() - iterationStart);
+
+            if (convergenceTolerance > 0 && !centroids.isEmpty()) {
+                double displacement = convergenceCriterion == ConvergenceCriterion.MAX_DISPLACEMENT
+                        ? maxDisplacement
+                        : totalDisplacement / centroids.size();
+                if (displacement < convergenceTolerance) {
+                    break;
+                }
+            }
         }
+        iterationTimes = Collections.unmodifiableList(times);
         return currentPoints;
     }
 
-    private List<Coordinate> calculateCentroids(Geometry clusters) {
-        var centroids = new ArrayList<Coordinate>();
-        for (int i = 0; i < clusters.getNumGeometries(); ++i) {
-            var diagramCell = clusters.getGeometryN(i);
-            try {
-                var clampedDiagramCell = diagramCell.intersection(area);
-                if (clampedDiagramCell.isEmpty()) {
-                    continue;
-                }
-                centroids.add(clampedDiagramCell.getCentroid().getCoordinate());
-            } catch (TopologyException ex) {
-                // we can't do anything, just ignore this cell
+    /**
+     * Returns centroids of diagram cells clipped by area, null for cells that are outside of it
+     */
+    private Coordinate[] calculateCentroids(Geometry clusters) {
+        IntStream cellIndices = IntStream.range(0, clusters.getNumGeometries());
+        if (parallel) {
+            cellIndices = cellIndices.parallel();
+        }
+        return cellIndices
+                .mapToObj(i -> calculateCentroid(clusters.getGeometryN(i)))
+                .toArray(Coordinate[]::new);
+    }
+
+    private Coordinate calculateCentroid(Geometry diagramCell) {
+        return calculateClippedCentroid(diagramCell, area, preparedArea);
+    }
+
+    /**
+     * Centroid of a diagram cell clipped by area, null if cell is outside of area
+     */
+    static Coordinate calculateClippedCentroid(Geometry diagramCell, Geometry area, PreparedGeometry preparedArea) {
+        try {
+            if (preparedArea.covers(diagramCell)) {
+                // cell is completely inside, no need to clip it
+                return diagramCell.getCentroid().getCoordinate();
             }
+            var clampedDiagramCell = diagramCell.intersection(area);
+            if (clampedDiagramCell.isEmpty()) {
+                return null;
+            }
+            return clampedDiagramCell.getCentroid().getCoordinate();
+        } catch (TopologyException ex) {
+            // we can't do anything, just ignore this cell
+            return null;
         }
-        return centroids;
+    }
+
+    /**
+     * Amount of iterations done by last run
+     */
+    public int getIterationsCount() {
+        return iterationTimes.size();
+    }
+
+    /**
+     * Durations of each iteration done by last run, in nanoseconds
+     */
+    public List<Long> getIterationTimes() {
+        return iterationTimes;
+    }
+
+    public double getAverageIterationTimeMillis() {
+        return iterationTimes.stream().mapToLong(Long::longValue).average().orElse(0.0) / 1_000_000.0;
     }
 
     private MultiPoint createMultiPoint(List<Coordinate> coordinates) {
         var points = coordinates.stream().map(point -> area.getFactory().createPoint(point) ).collect(Collectors.toList());
-        return GeometryUtils.geometryFactory.createMultiPoint(points.toArray(Point[]::new));
+        return context.getGeometryFactory().createMultiPoint(points.toArray(Point[]::new));
     }
 
     /**
@@ -91,16 +238,246 @@ public class LloydAlgorithm {
         if (area.isEmpty()) {
             return new Coordinate[0];
         }
-        // start with random points inside our area, point amount depends on desired distance between them and area square
-        var pointsCount = (int)Math.ceil((area.getArea() / (Math.pow(pointDistance, 2.0))));
-        var rpb = new RandomPointsBuilder();
-        rpb.setNumPoints(pointsCount);
-        rpb.setExtent(area);
-        currentPoints = (MultiPoint) rpb.getGeometry();
-        var rzLocal = run();
+        var rzLocal = run(makeInitialPoints(context.getGeometryFactory(), area, pointDistance, random));
+        return rzLocal.getCoordinates();
+    }
+
+    /**
+     * Same as above, but starts from given points instead of random ones (e.g. result of a previous run for a slightly
+     * different area). Good initial points make algorithm converge in a few iterations, see setConvergenceTolerance()
+     */
+    public Coordinate[] generateLloydPoints(Coordinate[] initialPoints) {
+        if (area.isEmpty()) {
+            return new Coordinate[0];
+        }
+        var rzLocal = run(context.getGeometryFactory().createMultiPointFromCoords(initialPoints));
         return rzLocal.getCoordinates();
     }
 
+    /**
+     * Re-relaxes only points located inside changed region and a ring of neighbourhoodWidth around it, all other points
+     * are kept in place and are used as fixed Voronoi sites. Amount of points inside changed region is adjusted to
+     * match its new area: random points are added or extra points are removed.
+     * Intended for interactive editing, when a small part of the area was changed after previous run.
+     * @param previousPoints Result of previous run, possibly for a different area
+     * @param changedRegion Part of the area that was changed, in area units
+     * @return All points for current area
+     */
+    public Coordinate[] relaxIncrementally(Coordinate[] previousPoints, Geometry changedRegion) {
+        if (area.isEmpty()) {
+            return new Coordinate[0];
+        }
+        var activeRegion = changedRegion.buffer(neighbourhoodWidth);
+        var preparedActiveRegion = context.prepare(activeRegion);
+        var activeArea = area.intersection(activeRegion);
+        if (activeArea.isEmpty()) {
+            iterationTimes = Collections.emptyList();
+            return Arrays.stream(previousPoints)
+                    .filter(c -> preparedArea.covers(GeometryUtils.makePoint(context.getGeometryFactory(), c)))
+                    .toArray(Coordinate[]::new);
+        }
+        var preparedActiveArea = context.prepare(activeArea);
+
+        // fixed points far from active region do not affect its Voronoi cells
+        var siteEnvelope = activeRegion.getEnvelopeInternal();
+        siteEnvelope.expandBy(neighbourhoodWidth);
+        var fixed = new ArrayList<Coordinate>();
+        var fixedSites = new ArrayList<Coordinate>();
+        var moving = new ArrayList<Coordinate>();
+        for (Coordinate c : previousPoints) {
+            var point = GeometryUtils.makePoint(context.getGeometryFactory(), c);
+            if (preparedActiveRegion.covers(point)) {
+                if (preparedActiveArea.covers(point)) {
+                    moving.add(c.copy());
+                }
+            } else if (preparedArea.covers(point)) {
+                fixed.add(c);
+                if (siteEnvelope.contains(c)) {
+                    fixedSites.add(c);
+                }
+            }
+        }
+
+        var targetCount = (int) Math.ceil(activeArea.getArea() / Math.pow(pointDistance, 2.0));
+        var rnd = random != null ? random : new Random();
+        while (moving.size() > targetCount) {
+            moving.remove(rnd.nextInt(moving.size()));
+        }
+        if (moving.size() < targetCount) {
+            var added = makeRandomPoints(context.getGeometryFactory(), activeArea, targetCount - moving.size(), rnd);
+            moving.addAll(Arrays.asList(added.getCoordinates()));
+        }
+
+        var movingArray = moving.toArray(Coordinate[]::new);
+        var times = new ArrayList<Long>();
+        relaxWithFixedSites(context.getGeometryFactory(), movingArray, fixedSites, activeArea, preparedActiveArea,
+                maxIterations, convergenceTolerance, convergenceCriterion, times);
+        iterationTimes = Collections.unmodifiableList(times);
+
+        var result = new Coordinate[fixed.size() + movingArray.length];
+        for (int i = 0; i < fixed.size(); ++i) {
+            result[i] = fixed.get(i);
+        }
+        System.arraycopy(movingArray, 0, result, fixed.size(), movingArray.length);
+        return result;
+    }
+
+    /**
+     * Moves given points to centroids of their Voronoi cells clipped by area. Fixed sites take part in Voronoi diagram,
+     * but are not moved. Points are updated in place. Moving points coinciding with other sites are shifted slightly
+     * first, so each of them gets its own cell.
+     * @param convergenceTolerance Stop when points move less than this distance, 0 to always do maxIterations
+     * @param convergenceCriterion How displacements of points are compared with convergenceTolerance
+     * @param iterationTimes Durations of iterations are added here if not null
+     */
+    static void relaxWithFixedSites(GeometryFactory factory,
+                                    Coordinate[] moving,
+                                    List<Coordinate> fixed,
+                                    Geometry area,
+                                    PreparedGeometry preparedArea,
+                                    int maxIterations,
+                                    double convergenceTolerance,
+                                    ConvergenceCriterion convergenceCriterion,
+                                    List<Long> iterationTimes) {
+        if (moving.length == 0) {
+            return;
+        }
+        var fixedSites = new HashSet<>(fixed);
+        var areaEnvelope = area.getEnvelopeInternal();
+        double separationStep = Math.max(areaEnvelope.getWidth(), areaEnvelope.getHeight()) * SEPARATION_STEP_FRACTION;
+        for (int iteration = 0; iteration < maxIterations; ++iteration) {
+            long iterationStart = System.nanoTime();
+            Map<Coordinate, Integer> movingIndices = new HashMap<>(moving.length * 2);
+            var sites = new ArrayList<Coordinate>(moving.length + fixed.size());
+            for (int i = 0; i < moving.length; ++i) {
+                // voronoi builder merges coincident sites, so such points would share a single cell
+                while (fixedSites.contains(moving[i]) || movingIndices.containsKey(moving[i])) {
+                    moving[i] = new Coordinate(moving[i].x + Math.max(separationStep, 4 * Math.ulp(moving[i].x)), moving[i].y);
+                }
+                movingIndices.put(moving[i], i);
+                sites.add(moving[i]);
+            }
+            sites.addAll(fixed);
+
+            var vdb = new VoronoiDiagramBuilder();
+            vdb.setSites(sites);
+            var vd = vdb.getDiagram(factory);
+            double maxDisplacement = 0.0;
+            double totalDisplacement = 0.0;
+            int movedCount = 0;
+            var moved = new Coordinate[moving.length];
+            for (int cellIdx = 0; cellIdx < vd.getNumGeometries(); ++cellIdx) {
+                var cell = vd.getGeometryN(cellIdx);
+                // voronoi builder stores site coordinate as cell user data
+                Integer movingIdx = movingIndices.get((Coordinate) cell.getUserData());
+                if (movingIdx == null) {
+                    continue;
+                }
+                var centroid = calculateClippedCentroid(cell, area, preparedArea);
+                if (centroid != null) {
+                    moved[movingIdx] = centroid;
+                }
+            }
+            for (int i = 0; i < moving.length; ++i) {
+                if (moved[i] != null) {
+                    double displacement = moved[i].distance(moving[i]);
+                    maxDisplacement = Math.max(maxDisplacement, displacement);
+                    totalDisplacement += displacement;
+                    ++movedCount;
+                    moving[i] = moved[i];
+                }
+            }
+            if (iterationTimes != null) {
+                iterationTimes.add(System.nanoTime() - iterationStart);
+            }
+            if (convergenceTolerance > 0 && movedCount > 0) {
+                double displacement = convergenceCriterion == ConvergenceCriterion.MAX_DISPLACEMENT
+                        ? maxDisplacement
+                        : totalDisplacement / movedCount;
+                if (displacement < convergenceTolerance) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Random points inside area, point amount depends on desired distance between them and area square
+     */
+    static MultiPoint makeInitialPoints(GeometryFactory factory, Geometry area, double pointDistance, Random random) {
+        var pointsCount = (int)Math.ceil((area.getArea() / (Math.pow(pointDistance, 2.0))));
+        return makeRandomPoints(factory, area, pointsCount, random);
+    }
+
+    /**
+     * Given amount of random points inside area. Uses provided random generator if not null, so results can be reproduced.
+     * Points are sampled in area envelope and rejected if they are outside. For thin areas, which take a small part of
+     * their envelope, rejection is stopped after MAX_ATTEMPTS_PER_POINT attempts per point and the rest of points are
+     * sampled in triangles of area
+     */
+    static MultiPoint makeRandomPoints(GeometryFactory factory, Geometry area, int pointsCount, Random random) {
+        if (random == null) {
+            var rpb = new RandomPointsBuilder(factory);
+            rpb.setNumPoints(pointsCount);
+            rpb.setExtent(area);
+            return (MultiPoint) rpb.getGeometry();
+        }
+        var envelope = area.getEnvelopeInternal();
+        var locator = new IndexedPointInAreaLocator(area);
+        var coordinates = new Coordinate[pointsCount];
+        int found = 0;
+        long attemptsLeft = (long) pointsCount * MAX_ATTEMPTS_PER_POINT;
+        while (found < pointsCount && attemptsLeft-- > 0) {
+            var c = new Coordinate(
+                    envelope.getMinX() + random.nextDouble() * envelope.getWidth(),
+                    envelope.getMinY() + random.nextDouble() * envelope.getHeight()
+            );
+            if (locator.locate(c) == Location.INTERIOR) {
+                coordinates[found++] = c;
+            }
+        }
+        if (found < pointsCount) {
+            addPointsInTriangles(area, coordinates, found, random);
+        }
+        return factory.createMultiPointFromCoords(coordinates);
+    }
+
+    /**
+     * Fills coordinates starting from given index with points distributed uniformly over triangulation of area
+     */
+    private static void addPointsInTriangles(Geometry area, Coordinate[] coordinates, int from, Random random) {
+        var triangles = ConstrainedDelaunayTriangulator.triangulate(area);
+        var cumulativeAreas = new double[triangles.getNumGeometries()];
+        double totalArea = 0.0;
+        for (int i = 0; i < cumulativeAreas.length; ++i) {
+            totalArea += triangles.getGeometryN(i).getArea();
+            cumulativeAreas[i] = totalArea;
+        }
+        if (totalArea <= 0) {
+            log.warn("Area has no triangles to place {} points", coordinates.length - from);
+            var centre = area.getEnvelopeInternal().centre();
+            Arrays.fill(coordinates, from, coordinates.length, centre);
+            return;
+        }
+        for (int i = from; i < coordinates.length; ++i) {
+            int triangleIdx = Arrays.binarySearch(cumulativeAreas, random.nextDouble() * totalArea);
+            if (triangleIdx < 0) {
+                triangleIdx = Math.min(-triangleIdx - 1, cumulativeAreas.length - 1);
+            }
+            var vertices = triangles.getGeometryN(triangleIdx).getCoordinates();
+            double u = random.nextDouble();
+            double v = random.nextDouble();
+            if (u + v > 1.0) {
+                u = 1.0 - u;
+                v = 1.0 - v;
+            }
+            coordinates[i] = new Coordinate(
+                    vertices[0].x + u * (vertices[1].x - vertices[0].x) + v * (vertices[2].x - vertices[0].x),
+                    vertices[0].y + u * (vertices[1].y - vertices[0].y) + v * (vertices[2].y - vertices[0].y)
+            );
+        }
+    }
+
     /**
      * Generates coordinates of evenly distributed points within given geometry in WGS84
      * Helper method for wrapping LloydAlgorithm for geometries with lat-lon coordinates
@@ -108,13 +485,20 @@ public class LloydAlgorithm {
     public static Coordinate[] generateLloydPointsWGS84(CoordinateReferenceSystem crs,
                                                         Geometry area,
                                                         double metersBetweenPoints) throws FactoryException, TransformException {
+        return generateLloydPointsWGS84(GeometryContext.getDefault(), crs, area, metersBetweenPoints);
+    }
+
+    public static Coordinate[] generateLloydPointsWGS84(GeometryContext context,
+                                                        CoordinateReferenceSystem crs,
+                                                        Geometry area,
+                                                        double metersBetweenPoints) throws FactoryException, TransformException {
         if (area.isEmpty()) {
             return new Coordinate[0];
         }
-        var localArea = ProjectionUtils.transformToLocalCRS(crs, area);
-        var algo = new LloydAlgorithm(localArea, metersBetweenPoints);
+        var localArea = context.transformToLocalCRS(crs, area);
+        var algo = new LloydAlgorithm(context, localArea, metersBetweenPoints);
         Coordinate[] localCoords = algo.generateLloydPoints();
-        return Arrays.stream(localCoords).map(coord -> ProjectionUtils.transformFromLocalCRS(crs, coord)).toArray(Coordinate[]::new);
+        return Arrays.stream(localCoords).map(coord -> ProjectionUtils.transformFromLocalCRS(context, crs, coord)).toArray(Coordinate[]::new);
     }
 
     /**
@@ -0,0 +1,226 @@
+package ru.itmo.idu.geometry.algorithms;
+
+import lombok.Setter;
+import org.locationtech.jts.algorithm.locate.IndexedPointInAreaLocator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Location;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.TransformException;
+import ru.itmo.idu.geometry.GeometryContext;
+import ru.itmo.idu.geometry.ProjectionUtils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Fills polygon with random points that are not closer than given distance to each other (Poisson-disk sampling, Bridson's algorithm).
+ * Runs in time linear to amount of points and is much faster than LloydAlgorithm, while giving similar visual result:
+ * points are evenly distributed and do not form any regular grid. Average distance to the nearest point is
+ * about 1.1 - 1.3 of minimal distance.
+ * <p>
+ * Area is covered by a background grid with cell size of minDistance / sqrt(2), so every cell holds at most one point
+ * and neighbour checks look only at nearby cells. Points are grown from active ones by sampling an annulus of
+ * [minDistance, 2 * minDistance] around them. Once no active points are left, empty grid cells are scanned to seed parts
+ * of the area that growth could not reach (separate polygons, narrow passages).
+ *
+ * @link <a href="https://www.cs.ubc.ca/~rbridson/docs/bridson-siggraph07-poissondisk.pdf">...</a>
+ */
+public class PoissonDiskSampler {
+
+    private final Geometry area;
+
+    private final double minDistance;
+
+    /**
+     * Amount of candidates sampled around an active point before it is considered done
+     */
+    @Setter
+    private int maxAttempts = 30;
+
+    @Setter
+    private Random random = new Random();
+
+    /**
+     * Area is in local metric CRS, use generatePointsWGS84() for geometries in WGS84.
+     * minDistance is in units of area CRS (meters)
+     */
+    public PoissonDiskSampler(Geometry area, double minDistance) {
+        if (minDistance <= 0) {
+            throw new IllegalArgumentException("minDistance shall be positive");
+        }
+        this.area = area;
+        this.minDistance = minDistance;
+    }
+
+    public Coordinate[] generatePoints() {
+        if (area.isEmpty()) {
+            return new Coordinate[0];
+        }
+        var envelope = area.getEnvelopeInternal();
+        var locator = new IndexedPointInAreaLocator(area);
+        double cellSize = minDistance / Math.sqrt(2);
+        int columns = (int) Math.ceil(envelope.getWidth() / cellSize) + 1;
+        int rows = (int) Math.ceil(envelope.getHeight() / cellSize) + 1;
+        var grid = new Grid(envelope, cellSize, columns, rows);
+
+        for (int row = 0; row < rows; ++row) {
+            for (int column = 0; column < columns; ++column) {
+                if (grid.cells[row * columns + column] >= 0) {
+                    continue;
+                }
+                // try to start growth from a random point in an empty cell
+                double x = envelope.getMinX() + (column + random.nextDouble()) * cellSize;
+                double y = envelope.getMinY() + (row + random.nextDouble()) * cellSize;
+                if (isInside(locator, x, y) && grid.isFree(x, y, minDistance)) {
+                    grow(grid, locator, grid.add(x, y));
+                }
+            }
+        }
+
+        var result = new Coordinate[grid.size];
+        for (int i = 0; i < grid.size; ++i) {
+            result[i] = new Coordinate(grid.xs[i], grid.ys[i]);
+        }
+        return result;
+    }
+
+    private void grow(Grid grid, IndexedPointInAreaLocator locator, int seedIdx) {
+        var active = new int[16];
+        int activeSize = 0;
+        active[activeSize++] = seedIdx;
+        while (activeSize > 0) {
+            int activeIdx = random.nextInt(activeSize);
+            int pointIdx = active[activeIdx];
+            boolean found = false;
+            for (int attempt = 0; attempt < maxAttempts; ++attempt) {
+                double angle = random.nextDouble() * 2 * Math.PI;
+                // uniform sampling of the annulus area
+                double radius = minDistance * Math.sqrt(1 + 3 * random.nextDouble());
+                double x = grid.xs[pointIdx] + radius * Math.cos(angle);
+                double y = grid.ys[pointIdx] + radius * Math.sin(angle);
+                if (grid.contains(x, y) && grid.isFree(x, y, minDistance) && isInside(locator, x, y)) {
+                    if (activeSize == active.length) {
+                        active = Arrays.copyOf(active, active.length * 2);
+                    }
+                    active[activeSize++] = grid.add(x, y);
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                active[activeIdx] = active[--activeSize];
+            }
+        }
+    }
+
+    private static boolean isInside(IndexedPointInAreaLocator locator, double x, double y) {
+        return locator.locate(new Coordinate(x, y)) == Location.INTERIOR;
+    }
+
+    /**
+     * Background grid, each cell contains index of a point in it or -1. Points are stored in primitive arrays
+     */
+    private static class Grid {
+        final Envelope envelope;
+        final double cellSize;
+        final int columns;
+        final int rows;
+        final int[] cells;
+        double[] xs = new double[64];
+        double[] ys = new double[64];
+        int size = 0;
+
+        Grid(Envelope envelope, double cellSize, int columns, int rows) {
+            this.envelope = envelope;
+            this.cellSize = cellSize;
+            this.columns = columns;
+            this.rows = rows;
+            this.cells = new int[columns * rows];
+            Arrays.fill(cells, -1);
+        }
+
+        boolean contains(double x, double y) {
+            return envelope.contains(x, y);
+        }
+
+        int column(double x) {
+            return (int) ((x - envelope.getMinX()) / cellSize);
+        }
+
+        int row(double y) {
+            return (int) ((y - envelope.getMinY()) / cellSize);
+        }
+
+        /**
+         * Checks that there are no points closer than minDistance. As cell diagonal equals to minDistance, such points
+         * can only be in 2 cells around the one containing given point
+         */
+        boolean isFree(double x, double y, double minDistance) {
+            int column = column(x);
+            int row = row(y);
+            double minDistanceSq = minDistance * minDistance;
+            for (int r = Math.max(0, row - 2); r <= Math.min(rows - 1, row + 2); ++r) {
+                for (int c = Math.max(0, column - 2); c <= Math.min(columns - 1, column + 2); ++c) {
+                    int idx = cells[r * columns + c];
+                    if (idx >= 0) {
+                        double dx = xs[idx] - x;
+                        double dy = ys[idx] - y;
+                        if (dx * dx + dy * dy < minDistanceSq) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        int add(double x, double y) {
+            if (size == xs.length) {
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+            }
+            xs[size] = x;
+            ys[size] = y;
+            cells[row(y) * columns + column(x)] = size;
+            return size++;
+        }
+    }
+
+    /**
+     * Generates coordinates of evenly distributed points within given geometry in WGS84.
+     * Has the same signature as LloydAlgorithm.generateLloydPointsWGS84(), but metersBetweenPoints is a minimal
+     * distance here, while for LloydAlgorithm it is an average one. Resulting points are about 1.1 - 1.3 times sparser,
+     * so pass a proportionally smaller distance when replacing LloydAlgorithm with this method
+     */
+    public static Coordinate[] generatePointsWGS84(CoordinateReferenceSystem crs,
+                                                   Geometry area,
+                                                   double metersBetweenPoints) throws FactoryException, TransformException {
+        return generatePointsWGS84(GeometryContext.getDefault(), crs, area, metersBetweenPoints);
+    }
+
+    /**
+     * Same as above, transforms are taken from given context
+     */
+    public static Coordinate[] generatePointsWGS84(GeometryContext context,
+                                                   CoordinateReferenceSystem crs,
+                                                   Geometry area,
+                                                   double metersBetweenPoints) throws FactoryException, TransformException {
+        if (area.isEmpty()) {
+            return new Coordinate[0];
+        }
+        var localArea = context.transformToLocalCRS(crs, area);
+        var sampler = new PoissonDiskSampler(localArea, metersBetweenPoints);
+        Coordinate[] localCoords = sampler.generatePoints();
+        return Arrays.stream(localCoords).map(coord -> ProjectionUtils.transformFromLocalCRS(context, crs, coord)).toArray(Coordinate[]::new);
+    }
+
+    /**
+     * Static wrapper helper
+     */
+    public static Coordinate[] generatePoints(Geometry area, double minDistance) {
+        return new PoissonDiskSampler(area, minDistance).generatePoints();
+    }
+}
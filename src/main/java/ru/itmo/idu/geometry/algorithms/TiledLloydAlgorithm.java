@@ -0,0 +1,266 @@
+package ru.itmo.idu.geometry.algorithms;
+
+import lombok.Setter;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.TransformException;
+import ru.itmo.idu.geometry.GeometryContext;
+import ru.itmo.idu.geometry.ProjectionUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Partitioned version of LloydAlgorithm for large areas (hundreds of thousands of points).
+ * <p>
+ * Instead of building a single Voronoi diagram for all points, area envelope is split into square tiles, which are
+ * relaxed in parallel. Each point is owned by a tile it is located in. While relaxing a tile, points of neighbouring
+ * tiles within a halo around it take part in Voronoi diagram but stay fixed, so cells of owned points near tile borders
+ * are the same as in a global diagram. Tiles are relaxed for several iterations (a round), then points are reassigned
+ * to tiles by their new positions, so points may freely move across tile borders between rounds.
+ * <p>
+ * Unlike LloydAlgorithm, points are never lost, so resulting amount of points equals to initial one. Spacing between
+ * points is statistically the same as in a global run.
+ */
+public class TiledLloydAlgorithm {
+
+    private final GeometryContext context;
+
+    private final Geometry area;
+
+    private final double pointDistance;
+
+    private final double tileSize;
+
+    @Setter
+    private int maxIterations = 50;
+
+    /**
+     * Amount of iterations done inside tiles before points are reassigned to tiles
+     */
+    @Setter
+    private int iterationsPerRound = 5;
+
+    /**
+     * Width of a border around a tile, points from which are used as fixed sites. Shall be at least 2-3 distances between
+     * points and is limited by tile size
+     */
+    @Setter
+    private double haloWidth;
+
+    /**
+     * Random generator for initial points. If not set, JTS RandomPointsBuilder is used, which is not reproducible
+     */
+    @Setter
+    private Random random;
+
+    /**
+     * Area and pointDistance are the same as for LloydAlgorithm, tileSize is in area units (meters)
+     */
+    public TiledLloydAlgorithm(Geometry area, double pointDistance, double tileSize) {
+        this(GeometryContext.getDefault(), area, pointDistance, tileSize);
+    }
+
+    /**
+     * Same as above, geometries are created by factory of given context
+     */
+    public TiledLloydAlgorithm(GeometryContext context, Geometry area, double pointDistance, double tileSize) {
+        if (pointDistance <= 0) {
+            throw new IllegalArgumentException("pointDistance shall be positive");
+        }
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize shall be positive");
+        }
+        this.context = context;
+        this.area = area;
+        this.pointDistance = pointDistance;
+        this.tileSize = tileSize;
+        this.haloWidth = 3 * pointDistance;
+    }
+
+    /**
+     * Generates coordinates of evenly distributed points within given geometry
+     */
+    public Coordinate[] generateLloydPoints() {
+        if (area.isEmpty()) {
+            return new Coordinate[0];
+        }
+        return relax(LloydAlgorithm.makeInitialPoints(context.getGeometryFactory(), area, pointDistance, random).getCoordinates());
+    }
+
+    private Coordinate[] relax(Coordinate[] points) {
+        var grid = new TileGrid(area.getEnvelopeInternal(), tileSize, Math.min(haloWidth, tileSize));
+        Map<Integer, Geometry> tileAreas = new ConcurrentHashMap<>();
+        Map<Integer, PreparedGeometry> preparedTileAreas = new ConcurrentHashMap<>();
+
+        for (int iteration = 0; iteration < maxIterations; iteration += iterationsPerRound) {
+            int roundIterations = Math.min(iterationsPerRound, maxIterations - iteration);
+            int[][] tilePoints = grid.assignPoints(points);
+            Coordinate[] current = points;
+            Coordinate[] next = Arrays.copyOf(points, points.length);
+
+            IntStream.range(0, tilePoints.length).parallel().forEach(tileIdx -> {
+                if (tilePoints[tileIdx].length == 0) {
+                    return;
+                }
+                var tileArea = tileAreas.computeIfAbsent(tileIdx,
+                        idx -> area.intersection(context.getGeometryFactory().toGeometry(grid.getExpandedEnvelope(idx))));
+                var preparedTileArea = preparedTileAreas.computeIfAbsent(tileIdx, idx -> context.prepare(tileArea));
+                relaxTile(context.getGeometryFactory(), grid, tileIdx, tilePoints, current, next, tileArea, preparedTileArea, roundIterations);
+            });
+            points = next;
+        }
+        return points;
+    }
+
+    /**
+     * Moves points owned by a tile, writing their new positions to next array. Each point is owned by a single tile,
+     * so tiles never write to the same array elements
+     */
+    private static void relaxTile(GeometryFactory factory,
+                                  TileGrid grid,
+                                  int tileIdx,
+                                  int[][] tilePoints,
+                                  Coordinate[] current,
+                                  Coordinate[] next,
+                                  Geometry tileArea,
+                                  PreparedGeometry preparedTileArea,
+                                  int iterations) {
+        int[] owned = tilePoints[tileIdx];
+        var moving = new Coordinate[owned.length];
+        for (int i = 0; i < owned.length; ++i) {
+            moving[i] = current[owned[i]].copy();
+        }
+        var fixed = new ArrayList<Coordinate>();
+        var expandedEnvelope = grid.getExpandedEnvelope(tileIdx);
+        for (int neighbourIdx : grid.getNeighbours(tileIdx)) {
+            for (int pointIdx : tilePoints[neighbourIdx]) {
+                if (expandedEnvelope.contains(current[pointIdx])) {
+                    fixed.add(current[pointIdx]);
+                }
+            }
+        }
+
+        LloydAlgorithm.relaxWithFixedSites(factory, moving, fixed, tileArea, preparedTileArea, iterations, 0.0,
+                LloydAlgorithm.ConvergenceCriterion.MAX_DISPLACEMENT, null);
+
+        for (int i = 0; i < owned.length; ++i) {
+            next[owned[i]] = moving[i];
+        }
+    }
+
+    /**
+     * Regular grid of square tiles covering an envelope
+     */
+    private static class TileGrid {
+        final Envelope envelope;
+        final double tileSize;
+        final double halo;
+        final int columns;
+        final int rows;
+
+        TileGrid(Envelope envelope, double tileSize, double halo) {
+            this.envelope = envelope;
+            this.tileSize = tileSize;
+            this.halo = halo;
+            this.columns = Math.max(1, (int) Math.ceil(envelope.getWidth() / tileSize));
+            this.rows = Math.max(1, (int) Math.ceil(envelope.getHeight() / tileSize));
+        }
+
+        int getTileIndex(Coordinate c) {
+            int column = Math.min(columns - 1, Math.max(0, (int) ((c.x - envelope.getMinX()) / tileSize)));
+            int row = Math.min(rows - 1, Math.max(0, (int) ((c.y - envelope.getMinY()) / tileSize)));
+            return row * columns + column;
+        }
+
+        Envelope getExpandedEnvelope(int tileIdx) {
+            int column = tileIdx % columns;
+            int row = tileIdx / columns;
+            double minX = envelope.getMinX() + column * tileSize;
+            double minY = envelope.getMinY() + row * tileSize;
+            var tileEnvelope = new Envelope(minX, minX + tileSize, minY, minY + tileSize);
+            tileEnvelope.expandBy(halo);
+            return tileEnvelope;
+        }
+
+        /**
+         * Tiles that touch given one, halo is never larger than a tile, so only they can have points inside its halo
+         */
+        List<Integer> getNeighbours(int tileIdx) {
+            int column = tileIdx % columns;
+            int row = tileIdx / columns;
+            var result = new ArrayList<Integer>(8);
+            for (int neighbourRow = Math.max(0, row - 1); neighbourRow <= Math.min(rows - 1, row + 1); ++neighbourRow) {
+                for (int neighbourColumn = Math.max(0, column - 1); neighbourColumn <= Math.min(columns - 1, column + 1); ++neighbourColumn) {
+                    if (neighbourRow != row || neighbourColumn != column) {
+                        result.add(neighbourRow * columns + neighbourColumn);
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns indices of points located in each tile
+         */
+        int[][] assignPoints(Coordinate[] points) {
+            int[] pointTiles = new int[points.length];
+            int[] counts = new int[columns * rows];
+            for (int i = 0; i < points.length; ++i) {
+                pointTiles[i] = getTileIndex(points[i]);
+                ++counts[pointTiles[i]];
+            }
+            int[][] result = new int[counts.length][];
+            for (int tileIdx = 0; tileIdx < counts.length; ++tileIdx) {
+                result[tileIdx] = new int[counts[tileIdx]];
+                counts[tileIdx] = 0;
+            }
+            for (int i = 0; i < points.length; ++i) {
+                result[pointTiles[i]][counts[pointTiles[i]]++] = i;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Generates coordinates of evenly distributed points within given geometry in WGS84
+     * Helper method for wrapping TiledLloydAlgorithm for geometries with lat-lon coordinates
+     */
+    public static Coordinate[] generateLloydPointsWGS84(CoordinateReferenceSystem crs,
+                                                        Geometry area,
+                                                        double metersBetweenPoints,
+                                                        double tileSizeMeters) throws FactoryException, TransformException {
+        return generateLloydPointsWGS84(GeometryContext.getDefault(), crs, area, metersBetweenPoints, tileSizeMeters);
+    }
+
+    public static Coordinate[] generateLloydPointsWGS84(GeometryContext context,
+                                                        CoordinateReferenceSystem crs,
+                                                        Geometry area,
+                                                        double metersBetweenPoints,
+                                                        double tileSizeMeters) throws FactoryException, TransformException {
+        if (area.isEmpty()) {
+            return new Coordinate[0];
+        }
+        var localArea = context.transformToLocalCRS(crs, area);
+        var algo = new TiledLloydAlgorithm(context, localArea, metersBetweenPoints, tileSizeMeters);
+        Coordinate[] localCoords = algo.generateLloydPoints();
+        return Arrays.stream(localCoords).map(coord -> ProjectionUtils.transformFromLocalCRS(context, crs, coord)).toArray(Coordinate[]::new);
+    }
+
+    /**
+     * Static wrapper helper
+     */
+    public static Coordinate[] generateLloydPoints(Geometry area, double distanceBetweenPoints, double tileSize) {
+        return new TiledLloydAlgorithm(area, distanceBetweenPoints, tileSize).generateLloydPoints();
+    }
+}
@@ -0,0 +1,35 @@
+package ru.itmo.idu.geometry.io;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import lombok.Value;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * Single feature of a GeoJSON FeatureCollection
+ */
+@Value
+public class GeoJsonFeature {
+    /**
+     * Feature id, null if feature has no id
+     */
+    JsonElement id;
+    /**
+     * Null if feature has null geometry or geometry could not be parsed
+     */
+    Geometry geometry;
+    /**
+     * Never null, empty for features with null properties
+     */
+    JsonObject properties;
+
+    public GeoJsonFeature(JsonElement id, Geometry geometry, JsonObject properties) {
+        this.id = id;
+        this.geometry = geometry;
+        this.properties = properties != null ? properties : new JsonObject();
+    }
+
+    public GeoJsonFeature(Geometry geometry, JsonObject properties) {
+        this(null, geometry, properties);
+    }
+}
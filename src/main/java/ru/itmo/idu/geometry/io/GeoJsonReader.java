@@ -0,0 +1,395 @@
+package ru.itmo.idu.geometry.io;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import ru.itmo.idu.geometry.GeometryContext;
+import ru.itmo.idu.geometry.GeometryUtils;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads features of a GeoJSON FeatureCollection one at a time. Only the current feature is kept in memory, so
+ * collections of any size can be processed with a small heap. Members of the collection other than "features"
+ * (name, crs, bbox) are skipped, members of features and geometries can go in any order.
+ * <p>
+ * Geometries are created with geometry factory of given GeometryContext (default one if not given). If swapAxes is set, first two ordinates of every position
+ * are swapped while parsing, e.g. to get lat-lon coordinates from lon-lat GeoJSON.
+ * <p>
+ * Features with unsupported or malformed geometries (e.g. positions with less than two numbers) are returned with null
+ * geometry and a logged error, reading goes on with the next feature. Errors of JSON syntax can not be recovered and are
+ * thrown as UncheckedIOException from hasNext()/next(), as well as a root that is not a FeatureCollection.
+ */
+@Slf4j
+public class GeoJsonReader implements Iterator<GeoJsonFeature>, Closeable {
+
+    private final JsonReader reader;
+
+    private final GeometryFactory factory;
+
+    private final boolean swapAxes;
+
+    private boolean inFeatures = false;
+
+    private boolean finished = false;
+
+    /**
+     * Set by readCoordinates() when a value that is not a position or an array of positions was skipped
+     */
+    private boolean malformedCoordinates = false;
+
+    public GeoJsonReader(GeometryContext context, InputStream inputStream, boolean swapAxes) {
+        this.reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        this.factory = context.getGeometryFactory();
+        this.swapAxes = swapAxes;
+    }
+
+    public GeoJsonReader(InputStream inputStream, boolean swapAxes) {
+        this(GeometryContext.getDefault(), inputStream, swapAxes);
+    }
+
+    public GeoJsonReader(InputStream inputStream) {
+        this(inputStream, false);
+    }
+
+    public static GeoJsonReader open(Path path, boolean swapAxes) throws IOException {
+        return open(GeometryContext.getDefault(), path, swapAxes);
+    }
+
+    public static GeoJsonReader open(GeometryContext context, Path path, boolean swapAxes) throws IOException {
+        return new GeoJsonReader(context, new BufferedInputStream(Files.newInputStream(path), 1 << 16), swapAxes);
+    }
+
+    /**
+     * Lazy stream of features. Closing the stream closes the reader
+     */
+    public Stream<GeoJsonFeature> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Reads all features of a collection into memory. Use only for small files
+     */
+    public static List<GeoJsonFeature> readAll(InputStream inputStream, boolean swapAxes) throws IOException {
+        return readAll(GeometryContext.getDefault(), inputStream, swapAxes);
+    }
+
+    public static List<GeoJsonFeature> readAll(GeometryContext context, InputStream inputStream, boolean swapAxes) throws IOException {
+        List<GeoJsonFeature> result = new ArrayList<>();
+        try (GeoJsonReader reader = new GeoJsonReader(context, inputStream, swapAxes)) {
+            reader.forEachRemaining(result::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return result;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return moveToNextFeature();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public GeoJsonFeature next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return readFeature();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Positions reader before the next feature of "features" array, returns false if there are no more features
+     */
+    private boolean moveToNextFeature() throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (!inFeatures) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                finished = true;
+                throw new IOException("GeoJSON root is not an object but " + reader.peek());
+            }
+            reader.beginObject();
+            String type = null;
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("features") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    inFeatures = true;
+                    break;
+                }
+                if (name.equals("type") && reader.peek() == JsonToken.STRING) {
+                    type = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            if (!inFeatures) {
+                finished = true;
+                throw new IOException("GeoJSON root is not a FeatureCollection, its type is " + type);
+            }
+        }
+        if (reader.hasNext()) {
+            return true;
+        }
+        reader.endArray();
+        // members after "features" array are skipped
+        while (reader.hasNext()) {
+            reader.nextName();
+            reader.skipValue();
+        }
+        reader.endObject();
+        finished = true;
+        return false;
+    }
+
+    private GeoJsonFeature readFeature() throws IOException {
+        JsonElement id = null;
+        Geometry geometry = null;
+        JsonObject properties = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = JsonParser.parseReader(reader);
+                    break;
+                case "properties":
+                    JsonElement propertiesElement = JsonParser.parseReader(reader);
+                    properties = propertiesElement.isJsonObject() ? propertiesElement.getAsJsonObject() : null;
+                    break;
+                case "geometry":
+                    geometry = readGeometry();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new GeoJsonFeature(id instanceof JsonNull ? null : id, geometry, properties);
+    }
+
+    /**
+     * Reads a geometry object. Coordinates can go before type, so they are read into nested lists first
+     */
+    private Geometry readGeometry() throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            log.error("Geometry is not an object but {}", reader.peek());
+            reader.skipValue();
+            return null;
+        }
+        String type = null;
+        Object coordinates = null;
+        boolean malformed = false;
+        List<Geometry> geometries = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type":
+                    if (reader.peek() == JsonToken.STRING) {
+                        type = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                case "coordinates":
+                    malformedCoordinates = false;
+                    coordinates = readCoordinates();
+                    malformed = malformedCoordinates;
+                    break;
+                case "geometries":
+                    geometries = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        Geometry part = readGeometry();
+                        if (part != null) {
+                            geometries.add(part);
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (malformed) {
+            log.error("Malformed coordinates of geometry of type {}", type);
+            return null;
+        }
+        try {
+            return buildGeometry(type, coordinates, geometries);
+        } catch (RuntimeException e) {
+            log.error("Failed to build geometry of type {}", type, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns Coordinate for a position and List of nested values for arrays of positions. Malformed values are skipped
+     * to the end and reported by malformedCoordinates flag, so reader stays at the next member of geometry
+     */
+    private Object readCoordinates() throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        if (token != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            malformedCoordinates = true;
+            return null;
+        }
+        reader.beginArray();
+        if (reader.peek() == JsonToken.NUMBER) {
+            return readPosition();
+        }
+        List<Object> result = new ArrayList<>();
+        while (reader.hasNext()) {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                malformedCoordinates = true;
+                continue;
+            }
+            result.add(readCoordinates());
+        }
+        reader.endArray();
+        return result;
+    }
+
+    /**
+     * Reads numbers of a position after its opening bracket up to the closing one
+     */
+    private Coordinate readPosition() throws IOException {
+        double[] ordinates = {Coordinate.NULL_ORDINATE, Coordinate.NULL_ORDINATE, Coordinate.NULL_ORDINATE};
+        int count = 0;
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.NUMBER) {
+                reader.skipValue();
+                malformedCoordinates = true;
+                continue;
+            }
+            double value = reader.nextDouble();
+            // measures and other extra ordinates are not supported by GeoJSON spec and are dropped
+            if (count < ordinates.length) {
+                ordinates[count] = value;
+            }
+            ++count;
+        }
+        reader.endArray();
+        if (count < 2) {
+            malformedCoordinates = true;
+            return null;
+        }
+        return swapAxes
+                ? new Coordinate(ordinates[1], ordinates[0], ordinates[2])
+                : new Coordinate(ordinates[0], ordinates[1], ordinates[2]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Geometry buildGeometry(String type, Object coordinates, List<Geometry> geometries) {
+        if (type == null) {
+            throw new IllegalArgumentException("Geometry has no type");
+        }
+        switch (type) {
+            case "Point":
+                return coordinates == null ? factory.createPoint() : GeometryUtils.makePoint(factory, (Coordinate) coordinates);
+            case "LineString":
+                return makeLineString((List<Object>) coordinates);
+            case "Polygon":
+                return makePolygon((List<Object>) coordinates);
+            case "MultiPoint":
+                return factory.createMultiPoint(((List<Object>) coordinates).stream()
+                        .map(c -> GeometryUtils.makePoint(factory, (Coordinate) c))
+                        .toArray(Point[]::new));
+            case "MultiLineString":
+                return factory.createMultiLineString(((List<Object>) coordinates).stream()
+                        .map(c -> makeLineString((List<Object>) c))
+                        .toArray(LineString[]::new));
+            case "MultiPolygon":
+                return factory.createMultiPolygon(((List<Object>) coordinates).stream()
+                        .map(c -> makePolygon((List<Object>) c))
+                        .toArray(Polygon[]::new));
+            case "GeometryCollection":
+                return factory.createGeometryCollection(geometries == null ? new Geometry[0] : geometries.toArray(new Geometry[0]));
+            default:
+                throw new IllegalArgumentException("Unsupported geometry type " + type);
+        }
+    }
+
+    private static Coordinate[] toCoordinates(List<Object> positions) {
+        return positions == null ? new Coordinate[0] : positions.toArray(new Coordinate[0]);
+    }
+
+    private LineString makeLineString(List<Object> positions) {
+        return factory.createLineString(makeSequence(toCoordinates(positions)));
+    }
+
+    private CoordinateSequence makeSequence(Coordinate[] coordinates) {
+        return GeometryUtils.makeCoordinateSequence(factory.getCoordinateSequenceFactory(), coordinates);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Polygon makePolygon(List<Object> rings) {
+        if (rings == null || rings.isEmpty()) {
+            return factory.createPolygon();
+        }
+        LinearRing shell = factory.createLinearRing(makeSequence(toCoordinates((List<Object>) rings.get(0))));
+        LinearRing[] holes = new LinearRing[rings.size() - 1];
+        for (int i = 1; i < rings.size(); ++i) {
+            holes[i - 1] = factory.createLinearRing(makeSequence(toCoordinates((List<Object>) rings.get(i))));
+        }
+        return factory.createPolygon(shell, holes);
+    }
+}
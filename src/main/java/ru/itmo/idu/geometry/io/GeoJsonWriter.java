@@ -0,0 +1,210 @@
+package ru.itmo.idu.geometry.io;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes features to a GeoJSON FeatureCollection one at a time, so memory usage does not depend on amount of features.
+ * Coordinates are written directly from coordinate sequences. If swapAxes is set, first two ordinates are swapped
+ * while writing, e.g. to write lat-lon geometries as lon-lat GeoJSON.
+ * Collection is finished by close().
+ */
+public class GeoJsonWriter implements Closeable, Flushable {
+
+    private static final Gson GSON = new Gson();
+
+    private final JsonWriter writer;
+
+    private final boolean swapAxes;
+
+    public GeoJsonWriter(OutputStream outputStream, boolean swapAxes) throws IOException {
+        this.writer = new JsonWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        this.swapAxes = swapAxes;
+        writer.beginObject();
+        writer.name("type").value("FeatureCollection");
+        writer.name("features").beginArray();
+    }
+
+    public GeoJsonWriter(OutputStream outputStream) throws IOException {
+        this(outputStream, false);
+    }
+
+    public static GeoJsonWriter open(Path path, boolean swapAxes) throws IOException {
+        return new GeoJsonWriter(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16), swapAxes);
+    }
+
+    public void write(GeoJsonFeature feature) throws IOException {
+        write(feature.getId(), feature.getGeometry(), feature.getProperties());
+    }
+
+    public void write(Geometry geometry, JsonObject properties) throws IOException {
+        write(null, geometry, properties);
+    }
+
+    /**
+     * Geometries with NaN or infinite X or Y (or infinite Z) can not be written to JSON, for them IllegalArgumentException
+     * is thrown before anything is written, so the feature can be skipped and writing goes on
+     */
+    public void write(JsonElement id, Geometry geometry, JsonObject properties) throws IOException {
+        if (geometry != null && !hasFiniteCoordinates(geometry)) {
+            throw new IllegalArgumentException("Geometry has NaN or infinite coordinates and can not be written to GeoJSON");
+        }
+        writer.beginObject();
+        writer.name("type").value("Feature");
+        if (id != null && !id.isJsonNull()) {
+            writer.name("id");
+            GSON.toJson(id, writer);
+        }
+        writer.name("properties");
+        GSON.toJson(properties != null ? properties : new JsonObject(), writer);
+        writer.name("geometry");
+        writeGeometry(geometry);
+        writer.endObject();
+    }
+
+    private void writeGeometry(Geometry geometry) throws IOException {
+        if (geometry == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginObject();
+        // GeoJSON has no separate type for rings
+        writer.name("type").value(geometry instanceof LinearRing ? Geometry.TYPENAME_LINESTRING : geometry.getGeometryType());
+        if (geometry instanceof Point) {
+            writer.name("coordinates");
+            if (geometry.isEmpty()) {
+                writer.beginArray().endArray();
+            } else {
+                writePosition(((Point) geometry).getCoordinateSequence(), 0);
+            }
+        } else if (geometry instanceof LineString) {
+            writer.name("coordinates");
+            writeSequence(((LineString) geometry).getCoordinateSequence());
+        } else if (geometry instanceof Polygon) {
+            writer.name("coordinates");
+            writePolygon((Polygon) geometry);
+        } else if (geometry instanceof MultiPoint) {
+            writer.name("coordinates").beginArray();
+            for (int i = 0; i < geometry.getNumGeometries(); ++i) {
+                writePosition(((Point) geometry.getGeometryN(i)).getCoordinateSequence(), 0);
+            }
+            writer.endArray();
+        } else if (geometry instanceof MultiLineString) {
+            writer.name("coordinates").beginArray();
+            for (int i = 0; i < geometry.getNumGeometries(); ++i) {
+                writeSequence(((LineString) geometry.getGeometryN(i)).getCoordinateSequence());
+            }
+            writer.endArray();
+        } else if (geometry instanceof MultiPolygon) {
+            writer.name("coordinates").beginArray();
+            for (int i = 0; i < geometry.getNumGeometries(); ++i) {
+                writePolygon((Polygon) geometry.getGeometryN(i));
+            }
+            writer.endArray();
+        } else if (geometry instanceof GeometryCollection) {
+            writer.name("geometries").beginArray();
+            for (int i = 0; i < geometry.getNumGeometries(); ++i) {
+                writeGeometry(geometry.getGeometryN(i));
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Missing Z is stored as NaN and is not written, so it is allowed
+     */
+    private static boolean hasFiniteCoordinates(Geometry geometry) {
+        boolean[] finite = new boolean[] {true};
+        geometry.apply(new CoordinateSequenceFilter() {
+            @Override
+            public void filter(CoordinateSequence seq, int i) {
+                if (!Double.isFinite(seq.getX(i)) || !Double.isFinite(seq.getY(i))
+                        || (seq.hasZ() && Double.isInfinite(seq.getZ(i)))) {
+                    finite[0] = false;
+                }
+            }
+
+            @Override
+            public boolean isDone() {
+                return !finite[0];
+            }
+
+            @Override
+            public boolean isGeometryChanged() {
+                return false;
+            }
+        });
+        return finite[0];
+    }
+
+    private void writePolygon(Polygon polygon) throws IOException {
+        writer.beginArray();
+        if (!polygon.isEmpty()) {
+            writeSequence(polygon.getExteriorRing().getCoordinateSequence());
+            for (int i = 0; i < polygon.getNumInteriorRing(); ++i) {
+                writeSequence(polygon.getInteriorRingN(i).getCoordinateSequence());
+            }
+        }
+        writer.endArray();
+    }
+
+    private void writeSequence(CoordinateSequence seq) throws IOException {
+        writer.beginArray();
+        for (int i = 0; i < seq.size(); ++i) {
+            writePosition(seq, i);
+        }
+        writer.endArray();
+    }
+
+    private void writePosition(CoordinateSequence seq, int i) throws IOException {
+        writer.beginArray();
+        if (swapAxes) {
+            writer.value(seq.getY(i)).value(seq.getX(i));
+        } else {
+            writer.value(seq.getX(i)).value(seq.getY(i));
+        }
+        if (seq.hasZ() && !Double.isNaN(seq.getZ(i))) {
+            writer.value(seq.getZ(i));
+        }
+        writer.endArray();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Finishes the collection and closes underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        writer.endArray();
+        writer.endObject();
+        writer.close();
+    }
+}
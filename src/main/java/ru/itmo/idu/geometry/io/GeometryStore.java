@@ -0,0 +1,323 @@
+package ru.itmo.idu.geometry.io;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import ru.itmo.idu.geometry.GeometryContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Read-only memory-mapped store of geometries written by GeometryStoreWriter. Geometries are decoded only when requested,
+ * access by feature index takes constant time, and envelopes are available without decoding geometries.
+ * Instances are thread-safe.
+ * <p>
+ * File layout (big-endian):
+ * <ul>
+ *     <li>header of HEADER_SIZE bytes: magic, version, flags, length of CRS code, amount of features, offset of feature index,
+ *     size of the largest feature, quantization step and origin, envelope of all features</li>
+ *     <li>CRS code in UTF-8</li>
+ *     <li>features: type byte, then for points and lines amount of coordinates and coordinates, for polygons amount of rings
+ *     and rings, for collections amount of parts and parts. Coordinates are pairs of doubles or, for quantized stores,
+ *     pairs of ints that are multiplied by quantization step and added to origin</li>
+ *     <li>feature index: offset of a feature and its envelope (minX, minY, maxX, maxY, NaN for empty geometries) per feature</li>
+ * </ul>
+ * Files larger than 2 GB are mapped by overlapping segments, so that any feature lies completely in a single segment.
+ */
+public class GeometryStore implements Closeable {
+
+    static final int MAGIC = 0x4A475553;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 128;
+    static final int FLAG_QUANTIZED = 1;
+    static final int INDEX_ENTRY_SIZE = 40;
+
+    static final int TYPE_POINT = 1;
+    static final int TYPE_LINESTRING = 2;
+    static final int TYPE_POLYGON = 3;
+    static final int TYPE_MULTIPOINT = 4;
+    static final int TYPE_MULTILINESTRING = 5;
+    static final int TYPE_MULTIPOLYGON = 6;
+    static final int TYPE_GEOMETRYCOLLECTION = 7;
+
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    /**
+     * Segments overlap by the size of the largest feature, so it is limited to keep segments under 2 GB
+     */
+    static final long MAX_FEATURE_SIZE = SEGMENT_SIZE / 2;
+
+    private final GeometryContext context;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer[] segments;
+
+    private final long featureCount;
+
+    private final long indexOffset;
+
+    private final boolean quantized;
+
+    private final double quantizationStep;
+
+    private final double originX;
+
+    private final double originY;
+
+    private final Envelope totalEnvelope;
+
+    private final String crsCode;
+
+    private GeometryStore(GeometryContext context, FileChannel channel) throws IOException {
+        this.context = context;
+        this.channel = channel;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException("Not a geometry store file");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported geometry store version " + version);
+        }
+        this.quantized = (header.getInt() & FLAG_QUANTIZED) != 0;
+        int crsLength = header.getInt();
+        this.featureCount = header.getLong();
+        this.indexOffset = header.getLong();
+        long maxFeatureSize = header.getLong();
+        this.quantizationStep = header.getDouble();
+        this.originX = header.getDouble();
+        this.originY = header.getDouble();
+        double minX = header.getDouble();
+        double minY = header.getDouble();
+        double maxX = header.getDouble();
+        double maxY = header.getDouble();
+        this.totalEnvelope = Double.isNaN(minX) ? new Envelope() : new Envelope(minX, maxX, minY, maxY);
+
+        ByteBuffer crsBytes = ByteBuffer.allocate(crsLength);
+        channel.read(crsBytes, HEADER_SIZE);
+        this.crsCode = crsLength > 0 ? new String(crsBytes.array(), StandardCharsets.UTF_8) : null;
+
+        long fileSize = channel.size();
+        long overlap = Math.max(maxFeatureSize, INDEX_ENTRY_SIZE);
+        int segmentsCount = (int) ((fileSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        this.segments = new MappedByteBuffer[segmentsCount];
+        for (int i = 0; i < segmentsCount; ++i) {
+            long start = i * SEGMENT_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(fileSize - start, SEGMENT_SIZE + overlap));
+        }
+    }
+
+    public static GeometryStore open(Path path) throws IOException {
+        return open(GeometryContext.getDefault(), path);
+    }
+
+    /**
+     * Geometries are decoded with geometry factory of given context, CRS is decoded with its cache
+     */
+    public static GeometryStore open(GeometryContext context, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new GeometryStore(context, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long size() {
+        return featureCount;
+    }
+
+    public boolean isQuantized() {
+        return quantized;
+    }
+
+    /**
+     * Envelope of all stored geometries
+     */
+    public Envelope getTotalEnvelope() {
+        return new Envelope(totalEnvelope);
+    }
+
+    /**
+     * Code of CRS of stored geometries or null if it was not set
+     */
+    public String getCrsCode() {
+        return crsCode;
+    }
+
+    /**
+     * Decodes CRS of stored geometries, returns null if it was not set
+     */
+    public CoordinateReferenceSystem getCRS() throws FactoryException {
+        return crsCode != null ? context.decodeCRS(crsCode) : null;
+    }
+
+    /**
+     * Envelope of a geometry, read from the feature index without decoding geometry itself
+     */
+    public Envelope getEnvelope(long idx) {
+        long entry = indexEntryPosition(idx);
+        ByteBuffer segment = segments[(int) (entry >>> SEGMENT_BITS)];
+        int pos = (int) (entry & (SEGMENT_SIZE - 1)) + 8;
+        double minX = segment.getDouble(pos);
+        if (Double.isNaN(minX)) {
+            return new Envelope();
+        }
+        return new Envelope(minX, segment.getDouble(pos + 16), segment.getDouble(pos + 8), segment.getDouble(pos + 24));
+    }
+
+    /**
+     * Decodes geometry with given index. Geometries are created with geometry factory of the context store was opened with
+     */
+    public Geometry getGeometry(long idx) {
+        long entry = indexEntryPosition(idx);
+        long offset = segments[(int) (entry >>> SEGMENT_BITS)].getLong((int) (entry & (SEGMENT_SIZE - 1)));
+        var cursor = new Cursor(segments[(int) (offset >>> SEGMENT_BITS)], (int) (offset & (SEGMENT_SIZE - 1)));
+        return readGeometry(cursor);
+    }
+
+    /**
+     * Lazy stream of all geometries in the order they were written
+     */
+    public Stream<Geometry> stream(boolean parallel) {
+        if (featureCount > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many features for a stream, use getGeometry() instead");
+        }
+        IntStream indices = IntStream.range(0, (int) featureCount);
+        if (parallel) {
+            indices = indices.parallel();
+        }
+        return indices.mapToObj(this::getGeometry);
+    }
+
+    /**
+     * Closes file channel. Mapped memory is released by garbage collector when store is no longer referenced
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long indexEntryPosition(long idx) {
+        if (idx < 0 || idx >= featureCount) {
+            throw new IndexOutOfBoundsException("Feature " + idx + " of " + featureCount);
+        }
+        return indexOffset + idx * INDEX_ENTRY_SIZE;
+    }
+
+    /**
+     * Reads values from a segment by absolute positions, so segments are shared by threads without copying
+     */
+    private static class Cursor {
+        private final ByteBuffer segment;
+        private int pos;
+
+        Cursor(ByteBuffer segment, int pos) {
+            this.segment = segment;
+            this.pos = pos;
+        }
+
+        int readByte() {
+            return segment.get(pos++);
+        }
+
+        int readInt() {
+            int value = segment.getInt(pos);
+            pos += 4;
+            return value;
+        }
+
+        double readDouble() {
+            double value = segment.getDouble(pos);
+            pos += 8;
+            return value;
+        }
+    }
+
+    private Geometry readGeometry(Cursor cursor) {
+        var factory = context.getGeometryFactory();
+        int type = cursor.readByte();
+        switch (type) {
+            case TYPE_POINT:
+                return factory.createPoint(readSequence(cursor));
+            case TYPE_LINESTRING:
+                return factory.createLineString(readSequence(cursor));
+            case TYPE_POLYGON:
+                return readPolygon(cursor);
+            default:
+                break;
+        }
+        var parts = new Geometry[cursor.readInt()];
+        for (int i = 0; i < parts.length; ++i) {
+            parts[i] = readGeometry(cursor);
+        }
+        switch (type) {
+            case TYPE_MULTIPOINT:
+                return factory.createMultiPoint(castParts(parts, new Point[parts.length]));
+            case TYPE_MULTILINESTRING:
+                return factory.createMultiLineString(castParts(parts, new LineString[parts.length]));
+            case TYPE_MULTIPOLYGON:
+                return factory.createMultiPolygon(castParts(parts, new Polygon[parts.length]));
+            case TYPE_GEOMETRYCOLLECTION:
+                return factory.createGeometryCollection(parts);
+            default:
+                throw new IllegalStateException("Unknown geometry type " + type + ", store is corrupted");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Geometry> T[] castParts(Geometry[] parts, T[] result) {
+        for (int i = 0; i < parts.length; ++i) {
+            result[i] = (T) parts[i];
+        }
+        return result;
+    }
+
+    private Polygon readPolygon(Cursor cursor) {
+        var factory = context.getGeometryFactory();
+        int ringsCount = cursor.readInt();
+        if (ringsCount == 0) {
+            return factory.createPolygon();
+        }
+        LinearRing shell = factory.createLinearRing(readSequence(cursor));
+        LinearRing[] holes = new LinearRing[ringsCount - 1];
+        for (int i = 0; i < holes.length; ++i) {
+            holes[i] = factory.createLinearRing(readSequence(cursor));
+        }
+        return factory.createPolygon(shell, holes);
+    }
+
+    private CoordinateSequence readSequence(Cursor cursor) {
+        int size = cursor.readInt();
+        CoordinateSequence seq = context.getGeometryFactory().getCoordinateSequenceFactory().create(size, 2);
+        for (int i = 0; i < size; ++i) {
+            if (quantized) {
+                seq.setOrdinate(i, CoordinateSequence.X, originX + cursor.readInt() * quantizationStep);
+                seq.setOrdinate(i, CoordinateSequence.Y, originY + cursor.readInt() * quantizationStep);
+            } else {
+                seq.setOrdinate(i, CoordinateSequence.X, cursor.readDouble());
+                seq.setOrdinate(i, CoordinateSequence.Y, cursor.readDouble());
+            }
+        }
+        return seq;
+    }
+}
@@ -0,0 +1,279 @@
+package ru.itmo.idu.geometry.io;
+
+import org.geotools.geometry.jts.JTS;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.operation.TransformException;
+import ru.itmo.idu.geometry.CRSUtils;
+import ru.itmo.idu.geometry.GeometryContext;
+import ru.itmo.idu.geometry.GeometryUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+import static ru.itmo.idu.geometry.io.GeometryStore.*;
+
+/**
+ * Writes geometries to a GeometryStore file one by one. Only the current feature is kept in memory, offsets and envelopes
+ * of features are streamed to a temporary file and appended to the store by close(), which also writes the header.
+ * Geometries are stored as 2D, Z and M are dropped.
+ */
+public class GeometryStoreWriter implements Closeable {
+
+    private final Path path;
+
+    private final Path indexPath;
+
+    private final DataOutputStream data;
+
+    private final DataOutputStream index;
+
+    private final String crsCode;
+
+    /**
+     * Grid step of quantized coordinates in CRS units, 0 if coordinates are stored as doubles
+     */
+    private final double quantizationStep;
+
+    private double originX = Double.NaN;
+
+    private double originY = Double.NaN;
+
+    private long position;
+
+    private long featureCount = 0;
+
+    private long maxFeatureSize = 0;
+
+    private final Envelope totalEnvelope = new Envelope();
+
+    private boolean closed = false;
+
+    /**
+     * @param crsCode Code of CRS of stored geometries that can be decoded by CRS.decode(), e.g. from CRSUtils.getLocalCRSCode().
+     *                Can be null
+     * @param quantizationStep If positive, coordinates are stored as 4-byte integers on a grid with this step (in CRS units)
+     *                         around the first written coordinate, e.g. 0.01 for centimeters in local CRS. Otherwise
+     *                         coordinates are stored as doubles
+     */
+    public GeometryStoreWriter(Path path, String crsCode, double quantizationStep) throws IOException {
+        this.path = path;
+        this.crsCode = crsCode;
+        this.quantizationStep = Math.max(0.0, quantizationStep);
+        this.indexPath = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".idx");
+        this.data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        this.index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexPath), 1 << 16));
+
+        // header is written by close(), reserve space for it
+        data.write(new byte[HEADER_SIZE]);
+        byte[] crsBytes = crsCode != null ? crsCode.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        data.write(crsBytes);
+        position = HEADER_SIZE + crsBytes.length;
+    }
+
+    public GeometryStoreWriter(Path path, String crsCode) throws IOException {
+        this(path, crsCode, 0.0);
+    }
+
+    /**
+     * Appends a geometry and returns its index in the store. Null geometries are stored as empty geometry collections
+     */
+    public long write(Geometry geometry) throws IOException {
+        long start = position;
+        writeGeometry(geometry != null ? geometry : GeometryUtils.getGeometryFactory().createGeometryCollection());
+        long size = position - start;
+        if (size > MAX_FEATURE_SIZE) {
+            throw new IllegalArgumentException("Geometry is too large to be stored: " + size + " bytes");
+        }
+        maxFeatureSize = Math.max(maxFeatureSize, size);
+
+        Envelope envelope = geometry != null ? geometry.getEnvelopeInternal() : new Envelope();
+        index.writeLong(start);
+        if (envelope.isNull()) {
+            for (int i = 0; i < 4; ++i) {
+                index.writeDouble(Double.NaN);
+            }
+        } else {
+            index.writeDouble(envelope.getMinX());
+            index.writeDouble(envelope.getMinY());
+            index.writeDouble(envelope.getMaxX());
+            index.writeDouble(envelope.getMaxY());
+            totalEnvelope.expandToInclude(envelope);
+        }
+        return featureCount++;
+    }
+
+    public void writeAll(Collection<? extends Geometry> geometries) throws IOException {
+        for (Geometry geometry : geometries) {
+            write(geometry);
+        }
+    }
+
+    /**
+     * Projects WGS84 geometries to a local CRS of the whole layer and stores them, so that later runs can read
+     * projected geometries and skip projection. Store keeps code of used local CRS.
+     */
+    public static void writeProjected(Path path,
+                                      Collection<? extends Geometry> wgs84Geometries,
+                                      double quantizationStep) throws IOException, FactoryException, TransformException {
+        writeProjected(GeometryContext.getDefault(), path, wgs84Geometries, quantizationStep);
+    }
+
+    /**
+     * Same as above, CRS and transform are taken from cache of given context
+     */
+    public static void writeProjected(GeometryContext context,
+                                      Path path,
+                                      Collection<? extends Geometry> wgs84Geometries,
+                                      double quantizationStep) throws IOException, FactoryException, TransformException {
+        Envelope layerEnvelope = new Envelope();
+        wgs84Geometries.forEach(g -> layerEnvelope.expandToInclude(g.getEnvelopeInternal()));
+        String crsCode = CRSUtils.getLocalCRSCode(layerEnvelope.isNull() ? new Coordinate(0, 0) : layerEnvelope.centre());
+        var transform = context.getTransformFromWGS84(context.decodeCRS(crsCode));
+        try (GeometryStoreWriter writer = new GeometryStoreWriter(path, crsCode, quantizationStep)) {
+            for (Geometry geometry : wgs84Geometries) {
+                writer.write(JTS.transform(geometry, transform));
+            }
+        }
+    }
+
+    private void writeGeometry(Geometry geometry) throws IOException {
+        if (geometry instanceof Point) {
+            writeByte(TYPE_POINT);
+            writeSequence(((Point) geometry).getCoordinateSequence());
+        } else if (geometry instanceof LineString) {
+            writeByte(TYPE_LINESTRING);
+            writeSequence(((LineString) geometry).getCoordinateSequence());
+        } else if (geometry instanceof Polygon) {
+            writeByte(TYPE_POLYGON);
+            writePolygon((Polygon) geometry);
+        } else if (geometry instanceof GeometryCollection) {
+            if (geometry instanceof MultiPoint) {
+                writeByte(TYPE_MULTIPOINT);
+            } else if (geometry instanceof MultiLineString) {
+                writeByte(TYPE_MULTILINESTRING);
+            } else if (geometry instanceof MultiPolygon) {
+                writeByte(TYPE_MULTIPOLYGON);
+            } else {
+                writeByte(TYPE_GEOMETRYCOLLECTION);
+            }
+            writeInt(geometry.getNumGeometries());
+            for (int i = 0; i < geometry.getNumGeometries(); ++i) {
+                writeGeometry(geometry.getGeometryN(i));
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported geometry type " + geometry.getGeometryType());
+        }
+    }
+
+    private void writePolygon(Polygon polygon) throws IOException {
+        if (polygon.isEmpty()) {
+            writeInt(0);
+            return;
+        }
+        writeInt(polygon.getNumInteriorRing() + 1);
+        writeSequence(polygon.getExteriorRing().getCoordinateSequence());
+        for (int i = 0; i < polygon.getNumInteriorRing(); ++i) {
+            writeSequence(polygon.getInteriorRingN(i).getCoordinateSequence());
+        }
+    }
+
+    private void writeSequence(CoordinateSequence seq) throws IOException {
+        writeInt(seq.size());
+        for (int i = 0; i < seq.size(); ++i) {
+            double x = seq.getX(i);
+            double y = seq.getY(i);
+            if (quantizationStep > 0) {
+                if (Double.isNaN(originX)) {
+                    originX = x;
+                    originY = y;
+                }
+                writeInt(quantize(x, originX));
+                writeInt(quantize(y, originY));
+            } else {
+                data.writeDouble(x);
+                data.writeDouble(y);
+                position += 16;
+            }
+        }
+    }
+
+    private int quantize(double value, double origin) {
+        long quantized = Math.round((value - origin) / quantizationStep);
+        if (quantized < Integer.MIN_VALUE || quantized > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Coordinate " + value + " is too far from origin " + origin + " for quantization step " + quantizationStep);
+        }
+        return (int) quantized;
+    }
+
+    private void writeByte(int value) throws IOException {
+        data.writeByte(value);
+        position += 1;
+    }
+
+    private void writeInt(int value) throws IOException {
+        data.writeInt(value);
+        position += 4;
+    }
+
+    /**
+     * Appends index of features and writes header. Store can not be read before it is closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        long indexOffset = position;
+        data.close();
+        index.close();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+             FileChannel indexChannel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            long transferred = 0;
+            long indexSize = indexChannel.size();
+            while (transferred < indexSize) {
+                transferred += indexChannel.transferTo(transferred, indexSize - transferred, channel.position(indexOffset + transferred));
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(quantizationStep > 0 ? FLAG_QUANTIZED : 0);
+            header.putInt(crsCode != null ? crsCode.getBytes(StandardCharsets.UTF_8).length : 0);
+            header.putLong(featureCount);
+            header.putLong(indexOffset);
+            header.putLong(maxFeatureSize);
+            header.putDouble(quantizationStep);
+            header.putDouble(Double.isNaN(originX) ? 0.0 : originX);
+            header.putDouble(Double.isNaN(originY) ? 0.0 : originY);
+            header.putDouble(totalEnvelope.isNull() ? Double.NaN : totalEnvelope.getMinX());
+            header.putDouble(totalEnvelope.isNull() ? Double.NaN : totalEnvelope.getMinY());
+            header.putDouble(totalEnvelope.isNull() ? Double.NaN : totalEnvelope.getMaxX());
+            header.putDouble(totalEnvelope.isNull() ? Double.NaN : totalEnvelope.getMaxY());
+            header.rewind();
+            channel.write(header, 0);
+        } finally {
+            Files.deleteIfExists(indexPath);
+        }
+    }
+}
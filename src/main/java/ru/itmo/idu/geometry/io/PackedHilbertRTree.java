@@ -0,0 +1,362 @@
+package ru.itmo.idu.geometry.io;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import ru.itmo.idu.geometry.GeometryUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Static R-tree over feature envelopes, stored in a file and queried directly from mapped memory without deserialization.
+ * <p>
+ * Tree is bulk-loaded: features are sorted by Hilbert curve index of their envelope centres, then packed into leaf nodes
+ * of nodeSize entries, and upper levels are built in the same way until a single root is left. All nodes are stored as
+ * a flat array, root first and leaves last. Each node is 40 bytes: envelope (minX, minY, maxX, maxY) and a pointer,
+ * which is an index of the first child node for inner nodes and a feature index for leaves.
+ * <p>
+ * Index does not keep geometries. Feature indices are the ones of a geometry source, e.g. GeometryStore, and candidates are
+ * materialized from it only when needed. Features with empty envelopes are not indexed. Instances are thread-safe.
+ */
+public class PackedHilbertRTree implements Closeable {
+
+    private static final int MAGIC = 0x4A475254;
+    private static final int VERSION = 1;
+    private static final int NODE_SIZE_BYTES = 40;
+    /**
+     * Segments contain whole nodes, so that no node crosses a segment border
+     */
+    private static final long NODES_PER_SEGMENT = 1L << 25;
+    private static final int HILBERT_BITS = 16;
+
+    /**
+     * Tree is built in arrays of 4 doubles per node
+     */
+    private static final long MAX_FEATURES = Integer.MAX_VALUE / 5;
+
+    public static final int DEFAULT_NODE_SIZE = 16;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer[] segments;
+
+    private final int nodeSize;
+
+    private final long itemsCount;
+
+    /**
+     * Index of the first node of each level, level 0 is leaves. Last element is the total amount of nodes
+     */
+    private final long[] levelStarts;
+
+    private PackedHilbertRTree(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = ByteBuffer.allocate(24);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < 24 || header.getInt() != MAGIC) {
+            throw new IOException("Not a packed R-tree file");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported packed R-tree version " + version);
+        }
+        this.nodeSize = header.getInt();
+        int levelsCount = header.getInt();
+        this.itemsCount = header.getLong();
+
+        ByteBuffer levels = ByteBuffer.allocate(8 * (levelsCount + 1));
+        channel.read(levels, 24);
+        levels.flip();
+        this.levelStarts = new long[levelsCount + 1];
+        for (int i = 0; i <= levelsCount; ++i) {
+            levelStarts[i] = levels.getLong();
+        }
+
+        long nodesStart = getHeaderSize(levelsCount);
+        long nodesCount = levelStarts[levelsCount];
+        int segmentsCount = (int) ((nodesCount + NODES_PER_SEGMENT - 1) / NODES_PER_SEGMENT);
+        this.segments = new MappedByteBuffer[segmentsCount];
+        for (int i = 0; i < segmentsCount; ++i) {
+            long firstNode = i * NODES_PER_SEGMENT;
+            long nodes = Math.min(NODES_PER_SEGMENT, nodesCount - firstNode);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, nodesStart + firstNode * NODE_SIZE_BYTES, nodes * NODE_SIZE_BYTES);
+        }
+    }
+
+    private static long getHeaderSize(int levelsCount) {
+        return 24 + 8L * (levelsCount + 1);
+    }
+
+    public static PackedHilbertRTree open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new PackedHilbertRTree(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Builds index over all features of a store and writes it to a file
+     */
+    public static void build(Path path, GeometryStore store, int nodeSize) throws IOException {
+        build(path, store.size(), store::getEnvelope, nodeSize);
+    }
+
+    /**
+     * Builds index over envelopes, feature index is an index in the list
+     */
+    public static void build(Path path, List<Envelope> envelopes, int nodeSize) throws IOException {
+        build(path, envelopes.size(), idx -> envelopes.get((int) idx), nodeSize);
+    }
+
+    /**
+     * Builds index and writes it to a file. Whole tree is built in memory, which takes about 90 bytes per feature
+     */
+    public static void build(Path path, long featuresCount, LongFunction<Envelope> envelopes, int nodeSize) throws IOException {
+        if (nodeSize < 2) {
+            throw new IllegalArgumentException("nodeSize shall be at least 2");
+        }
+        if (featuresCount > MAX_FEATURES) {
+            throw new IllegalArgumentException("Too many features: " + featuresCount);
+        }
+        // collect non-empty envelopes
+        Envelope total = new Envelope();
+        long[] featureIds = new long[(int) featuresCount];
+        double[] bounds = new double[featureIds.length * 4];
+        int itemsCount = 0;
+        for (long i = 0; i < featuresCount; ++i) {
+            Envelope envelope = envelopes.apply(i);
+            if (envelope == null || envelope.isNull()) {
+                continue;
+            }
+            featureIds[itemsCount] = i;
+            bounds[itemsCount * 4] = envelope.getMinX();
+            bounds[itemsCount * 4 + 1] = envelope.getMinY();
+            bounds[itemsCount * 4 + 2] = envelope.getMaxX();
+            bounds[itemsCount * 4 + 3] = envelope.getMaxY();
+            total.expandToInclude(envelope);
+            ++itemsCount;
+        }
+
+        // sort by Hilbert index of centres, keys keep item position in lower 32 bits
+        long[] keys = new long[itemsCount];
+        double maxHilbert = (1 << HILBERT_BITS) - 1;
+        double width = total.getWidth() > 0 ? total.getWidth() : 1.0;
+        double height = total.getHeight() > 0 ? total.getHeight() : 1.0;
+        for (int i = 0; i < itemsCount; ++i) {
+            double centreX = (bounds[i * 4] + bounds[i * 4 + 2]) / 2;
+            double centreY = (bounds[i * 4 + 1] + bounds[i * 4 + 3]) / 2;
+            int x = (int) (maxHilbert * (centreX - total.getMinX()) / width);
+            int y = (int) (maxHilbert * (centreY - total.getMinY()) / height);
+            // flipping sign bit makes signed sort order equal to unsigned one
+            keys[i] = ((hilbert(x, y) << 32) | i) ^ Long.MIN_VALUE;
+        }
+        Arrays.sort(keys);
+
+        // levels sizes, from leaves to root
+        long[] levelSizes = new long[64];
+        int levelsCount = 0;
+        long levelSize = itemsCount;
+        do {
+            levelSizes[levelsCount++] = levelSize;
+            levelSize = (levelSize + nodeSize - 1) / nodeSize;
+        } while (levelSizes[levelsCount - 1] > 1);
+        long[] levelStarts = new long[levelsCount + 1];
+        long nodesCount = 0;
+        for (int level = levelsCount - 1; level >= 0; --level) {
+            levelStarts[level] = nodesCount;
+            nodesCount += levelSizes[level];
+        }
+        levelStarts[levelsCount] = nodesCount;
+
+        double[] nodeBounds = new double[(int) nodesCount * 4];
+        long[] nodePointers = new long[(int) nodesCount];
+        for (int i = 0; i < itemsCount; ++i) {
+            int item = (int) ((keys[i] ^ Long.MIN_VALUE) & 0xFFFFFFFFL);
+            int node = (int) levelStarts[0] + i;
+            System.arraycopy(bounds, item * 4, nodeBounds, node * 4, 4);
+            nodePointers[node] = featureIds[item];
+        }
+        for (int level = 1; level < levelsCount; ++level) {
+            long childStart = levelStarts[level - 1];
+            long childEnd = childStart + levelSizes[level - 1];
+            for (long j = 0; j < levelSizes[level]; ++j) {
+                int node = (int) (levelStarts[level] + j);
+                long firstChild = childStart + j * nodeSize;
+                long lastChild = Math.min(childEnd, firstChild + nodeSize);
+                nodePointers[node] = firstChild;
+                nodeBounds[node * 4] = Double.POSITIVE_INFINITY;
+                nodeBounds[node * 4 + 1] = Double.POSITIVE_INFINITY;
+                nodeBounds[node * 4 + 2] = Double.NEGATIVE_INFINITY;
+                nodeBounds[node * 4 + 3] = Double.NEGATIVE_INFINITY;
+                for (long child = firstChild; child < lastChild; ++child) {
+                    nodeBounds[node * 4] = Math.min(nodeBounds[node * 4], nodeBounds[(int) child * 4]);
+                    nodeBounds[node * 4 + 1] = Math.min(nodeBounds[node * 4 + 1], nodeBounds[(int) child * 4 + 1]);
+                    nodeBounds[node * 4 + 2] = Math.max(nodeBounds[node * 4 + 2], nodeBounds[(int) child * 4 + 2]);
+                    nodeBounds[node * 4 + 3] = Math.max(nodeBounds[node * 4 + 3], nodeBounds[(int) child * 4 + 3]);
+                }
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nodeSize);
+            out.writeInt(levelsCount);
+            out.writeLong(itemsCount);
+            for (int i = 0; i <= levelsCount; ++i) {
+                out.writeLong(levelStarts[i]);
+            }
+            for (int node = 0; node < nodesCount; ++node) {
+                for (int i = 0; i < 4; ++i) {
+                    out.writeDouble(nodeBounds[node * 4 + i]);
+                }
+                out.writeLong(nodePointers[node]);
+            }
+        }
+    }
+
+    /**
+     * Index on Hilbert curve of a point on a 2^HILBERT_BITS x 2^HILBERT_BITS grid
+     */
+    static long hilbert(int x, int y) {
+        int n = 1 << HILBERT_BITS;
+        long d = 0;
+        for (int s = n / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Amount of indexed features
+     */
+    public long size() {
+        return itemsCount;
+    }
+
+    /**
+     * Passes indices of all features which envelopes intersect given one to consumer. Order is the order of leaves,
+     * so features close to each other come together
+     */
+    public void query(Envelope searchEnvelope, LongConsumer consumer) {
+        if (itemsCount == 0 || searchEnvelope.isNull()) {
+            return;
+        }
+        int rootLevel = levelStarts.length - 2;
+        // stack of node indices and their levels
+        long[] nodes = new long[64];
+        int[] levels = new int[64];
+        int stackSize = 0;
+        nodes[stackSize] = levelStarts[rootLevel];
+        levels[stackSize++] = rootLevel;
+        while (stackSize > 0) {
+            long node = nodes[--stackSize];
+            int level = levels[stackSize];
+            if (!intersects(node, searchEnvelope)) {
+                continue;
+            }
+            long pointer = getPointer(node);
+            if (level == 0) {
+                consumer.accept(pointer);
+                continue;
+            }
+            long childEnd = Math.min(pointer + nodeSize, getLevelEnd(level - 1));
+            // children are pushed in reverse order, so they are visited in file order
+            for (long child = childEnd - 1; child >= pointer; --child) {
+                if (stackSize == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, stackSize * 2);
+                    levels = Arrays.copyOf(levels, stackSize * 2);
+                }
+                nodes[stackSize] = child;
+                levels[stackSize++] = level - 1;
+            }
+        }
+    }
+
+    /**
+     * Returns indices of features which envelopes intersect given one
+     */
+    public long[] query(Envelope searchEnvelope) {
+        LongStream.Builder result = LongStream.builder();
+        query(searchEnvelope, result::add);
+        return result.build().toArray();
+    }
+
+    /**
+     * Lazy stream of candidate geometries which envelopes intersect given one. Geometries are taken from source only
+     * when stream reaches them
+     */
+    public Stream<Geometry> queryGeometries(Envelope searchEnvelope, LongFunction<Geometry> source) {
+        return Arrays.stream(query(searchEnvelope)).mapToObj(source);
+    }
+
+    /**
+     * Geometries from source that intersect given geometry. Candidates are found by envelopes, then checked with prepared geometry
+     */
+    public Stream<Geometry> queryIntersecting(Geometry geometry, LongFunction<Geometry> source) {
+        var prepared = GeometryUtils.prepareGeometry(geometry);
+        return queryGeometries(geometry.getEnvelopeInternal(), source).filter(prepared::intersects);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Levels are stored from root to leaves, so level ends where the level above it starts
+     */
+    private long getLevelEnd(int level) {
+        return level == 0 ? levelStarts[levelStarts.length - 1] : levelStarts[level - 1];
+    }
+
+    private ByteBuffer segment(long node) {
+        return segments[(int) (node / NODES_PER_SEGMENT)];
+    }
+
+    private int position(long node) {
+        return (int) (node % NODES_PER_SEGMENT) * NODE_SIZE_BYTES;
+    }
+
+    private boolean intersects(long node, Envelope envelope) {
+        ByteBuffer segment = segment(node);
+        int pos = position(node);
+        return !(segment.getDouble(pos) > envelope.getMaxX()
+                || segment.getDouble(pos + 8) > envelope.getMaxY()
+                || segment.getDouble(pos + 16) < envelope.getMinX()
+                || segment.getDouble(pos + 24) < envelope.getMinY());
+    }
+
+    private long getPointer(long node) {
+        return segment(node).getLong(position(node) + 32);
+    }
+}
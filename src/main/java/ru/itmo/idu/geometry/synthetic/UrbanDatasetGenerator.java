@@ -0,0 +1,356 @@
+package ru.itmo.idu.geometry.synthetic;
+
+import com.google.gson.JsonObject;
+import lombok.Setter;
+import lombok.Value;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.util.AffineTransformation;
+import org.locationtech.jts.geom.util.GeometryTransformer;
+import ru.itmo.idu.geometry.GeometryUtils;
+import ru.itmo.idu.geometry.io.GeoJsonWriter;
+import ru.itmo.idu.geometry.io.GeometryStoreWriter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Generates synthetic city-scale data for benchmarks and scaling tests: a street network and a grid of blocks with
+ * courtyards and buildings, mixed with problematic blocks that library algorithms shall handle: blocks with narrow
+ * angles, blocks with thin spikes and invalid polygons.
+ * <p>
+ * City is a square grid of cells around given centre, every cell has a block, its buildings and two streets along
+ * its bottom and left sides. Each cell is generated with its own random seeded by generator seed and cell index,
+ * so output depends only on the seed and settings, also for parallel streams and any amount of features.
+ * <p>
+ * Geometries are built in meters and converted to WGS84 (lon-lat) with equirectangular approximation around each
+ * point latitude, which is precise enough for synthetic data and is much cheaper than a real projection of millions
+ * of features. Use TEST_LATITUDES to check projection-dependent code far from the equator.
+ */
+public class UrbanDatasetGenerator {
+
+    public enum FeatureType {
+        STREET,
+        BLOCK,
+        BUILDING,
+        /**
+         * Block with two acute angles, 10 degrees at its lower left corner and 20 degrees at the upper right one
+         */
+        NARROW_ANGLE_BLOCK,
+        /**
+         * Block with a thin spike, 0.5 meters wide and 15 meters long
+         */
+        SPIKE_BLOCK,
+        /**
+         * Invalid block polygon: bowtie, hole crossing the shell or zero-width spike
+         */
+        INVALID_BLOCK
+    }
+
+    @Value
+    public static class Feature {
+        /**
+         * Index of city cell this feature belongs to
+         */
+        long cell;
+        FeatureType type;
+        Geometry geometry;
+    }
+
+    public static final double[] TEST_LATITUDES = {0.0, 60.0, 80.0};
+
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    private static final double MAX_LATITUDE = 85.0;
+
+    private static final double BLOCK_WIDTH = 120.0;
+
+    private static final double BLOCK_HEIGHT = 90.0;
+
+    private static final double BUILDING_MARGIN = 8.0;
+
+    private static final double STREET_VERTEX_STEP = 20.0;
+
+    private static final double NARROW_ANGLE = Math.toRadians(10.0);
+
+    private static final double SECOND_NARROW_ANGLE = Math.toRadians(20.0);
+
+    private final long seed;
+
+    private double latitude = 60.0;
+
+    @Setter
+    private double longitude = 30.0;
+
+    @Setter
+    private double streetWidth = 20.0;
+
+    /**
+     * Amount of buildings of a regular block, from 0 to 4. Buildings are placed in block corners
+     */
+    private int buildingsPerBlock = 4;
+
+    @Setter
+    private double courtyardShare = 0.3;
+
+    @Setter
+    private double narrowAngleShare = 0.01;
+
+    @Setter
+    private double spikeShare = 0.01;
+
+    @Setter
+    private double invalidShare = 0.005;
+
+    /**
+     * If false, geometries are left in meters around (0, 0) and no conversion to WGS84 is done
+     */
+    @Setter
+    private boolean wgs84 = true;
+
+    public UrbanDatasetGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Latitude of city centre, at most 85 degrees north or south
+     */
+    public void setLatitude(double latitude) {
+        if (Math.abs(latitude) > MAX_LATITUDE) {
+            throw new IllegalArgumentException("Latitude shall be within +-" + MAX_LATITUDE + " degrees");
+        }
+        this.latitude = latitude;
+    }
+
+    public void setBuildingsPerBlock(int buildingsPerBlock) {
+        if (buildingsPerBlock < 0 || buildingsPerBlock > 4) {
+            throw new IllegalArgumentException("buildingsPerBlock shall be from 0 to 4");
+        }
+        this.buildingsPerBlock = buildingsPerBlock;
+    }
+
+    /**
+     * Lazy stream of exactly featuresCount features, cell by cell. City size is chosen so that it is about square
+     */
+    public Stream<Feature> stream(long featuresCount, boolean parallel) {
+        // regular cells have a block, buildings and two streets, problematic blocks have no buildings,
+        // so city size is estimated by regular cells and cells are generated until there are enough features
+        long expectedCellsCount = featuresCount / (3 + buildingsPerBlock) + 1;
+        long cellsPerRow = (long) Math.ceil(Math.sqrt(expectedCellsCount));
+        LongStream cells = LongStream.range(0, featuresCount / 3 + 1);
+        if (parallel) {
+            cells = cells.parallel();
+        }
+        return cells
+                .mapToObj(cell -> generateCell(cell, cellsPerRow))
+                .flatMap(List::stream)
+                .limit(featuresCount);
+    }
+
+    /**
+     * Generates features in memory. Use stream() or write methods for millions of features
+     */
+    public List<Feature> generate(long featuresCount) {
+        return stream(featuresCount, false).collect(Collectors.toList());
+    }
+
+    /**
+     * Writes features to a GeometryStore. Store CRS is CRS:84 for WGS84 output and is not set for output in meters
+     */
+    public void writeGeometryStore(Path path, long featuresCount, double quantizationStep) throws IOException {
+        try (GeometryStoreWriter writer = new GeometryStoreWriter(path, wgs84 ? "CRS:84" : null, quantizationStep)) {
+            Iterator<Feature> features = stream(featuresCount, false).iterator();
+            while (features.hasNext()) {
+                writer.write(features.next().getGeometry());
+            }
+        }
+    }
+
+    /**
+     * Writes features to a GeoJSON FeatureCollection, feature type and cell index are written to properties
+     */
+    public void writeGeoJson(Path path, long featuresCount) throws IOException {
+        try (GeoJsonWriter writer = GeoJsonWriter.open(path, false)) {
+            Iterator<Feature> features = stream(featuresCount, false).iterator();
+            while (features.hasNext()) {
+                Feature feature = features.next();
+                JsonObject properties = new JsonObject();
+                properties.addProperty("type", feature.getType().name());
+                properties.addProperty("cell", feature.getCell());
+                writer.write(feature.getGeometry(), properties);
+            }
+        }
+    }
+
+    private List<Feature> generateCell(long cell, long cellsPerRow) {
+        var random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + cell);
+        double x = (cell % cellsPerRow - cellsPerRow / 2) * (BLOCK_WIDTH + streetWidth);
+        double y = (cell / cellsPerRow - cellsPerRow / 2) * (BLOCK_HEIGHT + streetWidth);
+
+        List<Feature> result = new ArrayList<>(3 + buildingsPerBlock);
+        double value = random.nextDouble();
+        if (value < invalidShare) {
+            result.add(makeFeature(cell, FeatureType.INVALID_BLOCK, makeInvalidBlock(random, x, y)));
+        } else if (value < invalidShare + narrowAngleShare) {
+            result.add(makeFeature(cell, FeatureType.NARROW_ANGLE_BLOCK, makeNarrowAngleBlock(x, y)));
+        } else if (value < invalidShare + narrowAngleShare + spikeShare) {
+            result.add(makeFeature(cell, FeatureType.SPIKE_BLOCK, makeSpikeBlock(random, x, y)));
+        } else {
+            result.add(makeFeature(cell, FeatureType.BLOCK, makeBlock(random, x, y)));
+            for (int i = 0; i < buildingsPerBlock; ++i) {
+                result.add(makeFeature(cell, FeatureType.BUILDING, makeBuilding(random, x, y, i % 2 == 1, i / 2 == 1)));
+            }
+        }
+        double halfStreet = streetWidth / 2;
+        result.add(makeFeature(cell, FeatureType.STREET, makeStreet(random,
+                new Coordinate(x - halfStreet, y - halfStreet), new Coordinate(x + BLOCK_WIDTH + halfStreet, y - halfStreet))));
+        result.add(makeFeature(cell, FeatureType.STREET, makeStreet(random,
+                new Coordinate(x - halfStreet, y - halfStreet), new Coordinate(x - halfStreet, y + BLOCK_HEIGHT + halfStreet))));
+        return result;
+    }
+
+    private Feature makeFeature(long cell, FeatureType type, Geometry geometry) {
+        return new Feature(cell, type, wgs84 ? new ToWGS84().transform(geometry) : geometry);
+    }
+
+    /**
+     * Converts meters around city centre to lon-lat. Sequences are copied, so shared Coordinate instances are not
+     * converted twice
+     */
+    private class ToWGS84 extends GeometryTransformer {
+        @Override
+        protected CoordinateSequence transformCoordinates(CoordinateSequence coords, Geometry parent) {
+            CoordinateSequence result = coords.copy();
+            for (int i = 0; i < result.size(); ++i) {
+                double lat = latitude + result.getY(i) / METERS_PER_DEGREE;
+                result.setOrdinate(i, CoordinateSequence.X, longitude + result.getX(i) / (METERS_PER_DEGREE * Math.cos(Math.toRadians(lat))));
+                result.setOrdinate(i, CoordinateSequence.Y, lat);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Block with a few jittered vertices on every side, as real blocks follow curved streets
+     */
+    private Polygon makeBlock(SplittableRandom random, double x, double y) {
+        List<Coordinate> coords = new ArrayList<>();
+        double[][] corners = {{x, y}, {x + BLOCK_WIDTH, y}, {x + BLOCK_WIDTH, y + BLOCK_HEIGHT}, {x, y + BLOCK_HEIGHT}};
+        for (int side = 0; side < 4; ++side) {
+            double[] from = corners[side];
+            double[] to = corners[(side + 1) % 4];
+            for (int i = 0; i < 3; ++i) {
+                double fraction = i / 3.0;
+                coords.add(new Coordinate(
+                        from[0] + (to[0] - from[0]) * fraction + jitter(random, 2),
+                        from[1] + (to[1] - from[1]) * fraction + jitter(random, 2)));
+            }
+        }
+        coords.add(coords.get(0).copy());
+        var factory = GeometryUtils.getGeometryFactory();
+        LinearRing shell = factory.createLinearRing(coords.toArray(new Coordinate[0]));
+        if (random.nextDouble() >= courtyardShare) {
+            return factory.createPolygon(shell);
+        }
+        // courtyard in the middle third of a block, buildings stay in corners outside of it
+        Polygon courtyard = GeometryUtils.makeRectangle(
+                x + BLOCK_WIDTH / 3 + jitter(random, 1), y + BLOCK_HEIGHT / 3 + jitter(random, 1),
+                BLOCK_WIDTH / 3, BLOCK_HEIGHT / 3);
+        return factory.createPolygon(shell, new LinearRing[]{courtyard.getExteriorRing()});
+    }
+
+    private Polygon makeBuilding(SplittableRandom random, double x, double y, boolean right, boolean top) {
+        double width = BLOCK_WIDTH / 5 * (0.8 + 0.2 * random.nextDouble());
+        double height = BLOCK_HEIGHT / 5 * (0.8 + 0.2 * random.nextDouble());
+        double minX = right ? x + BLOCK_WIDTH - BUILDING_MARGIN - width : x + BUILDING_MARGIN;
+        double minY = top ? y + BLOCK_HEIGHT - BUILDING_MARGIN - height : y + BUILDING_MARGIN;
+        Polygon building = GeometryUtils.makeRectangle(minX, minY, width, height);
+        var rotation = AffineTransformation.rotationInstance(Math.toRadians(jitter(random, 5)), minX + width / 2, minY + height / 2);
+        return (Polygon) rotation.transform(building);
+    }
+
+    /**
+     * Concave quadrilateral: inner vertex is at intersection of a ray from lower left corner going NARROW_ANGLE above
+     * the bottom side and a ray from upper right corner going SECOND_NARROW_ANGLE left of the right side
+     */
+    private Polygon makeNarrowAngleBlock(double x, double y) {
+        double fromUpperRight = (BLOCK_HEIGHT - BLOCK_WIDTH * Math.tan(NARROW_ANGLE))
+                / (Math.cos(SECOND_NARROW_ANGLE) - Math.sin(SECOND_NARROW_ANGLE) * Math.tan(NARROW_ANGLE));
+        return GeometryUtils.makePolygon(
+                new Coordinate(x, y),
+                new Coordinate(x + BLOCK_WIDTH, y),
+                new Coordinate(x + BLOCK_WIDTH, y + BLOCK_HEIGHT),
+                new Coordinate(x + BLOCK_WIDTH - fromUpperRight * Math.sin(SECOND_NARROW_ANGLE),
+                        y + BLOCK_HEIGHT - fromUpperRight * Math.cos(SECOND_NARROW_ANGLE))
+        );
+    }
+
+    private Polygon makeSpikeBlock(SplittableRandom random, double x, double y) {
+        double spikeX = x + BLOCK_WIDTH * (0.25 + 0.5 * random.nextDouble());
+        return GeometryUtils.makePolygon(
+                new Coordinate(x, y),
+                new Coordinate(x + BLOCK_WIDTH, y),
+                new Coordinate(x + BLOCK_WIDTH, y + BLOCK_HEIGHT),
+                new Coordinate(spikeX + 0.25, y + BLOCK_HEIGHT),
+                new Coordinate(spikeX, y + BLOCK_HEIGHT + 15),
+                new Coordinate(spikeX - 0.25, y + BLOCK_HEIGHT),
+                new Coordinate(x, y + BLOCK_HEIGHT)
+        );
+    }
+
+    private Polygon makeInvalidBlock(SplittableRandom random, double x, double y) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return GeometryUtils.makePolygon(
+                        new Coordinate(x, y),
+                        new Coordinate(x + BLOCK_WIDTH, y + BLOCK_HEIGHT),
+                        new Coordinate(x + BLOCK_WIDTH, y),
+                        new Coordinate(x, y + BLOCK_HEIGHT)
+                );
+            case 1:
+                Polygon shell = GeometryUtils.makeRectangle(x, y, BLOCK_WIDTH, BLOCK_HEIGHT);
+                Polygon hole = GeometryUtils.makeRectangle(x + BLOCK_WIDTH - 10, y + BLOCK_HEIGHT / 3, 20, BLOCK_HEIGHT / 3);
+                return GeometryUtils.getGeometryFactory().createPolygon(shell.getExteriorRing(), new LinearRing[]{hole.getExteriorRing()});
+            default:
+                return GeometryUtils.makePolygon(
+                        new Coordinate(x, y),
+                        new Coordinate(x + BLOCK_WIDTH, y),
+                        new Coordinate(x + BLOCK_WIDTH, y + BLOCK_HEIGHT),
+                        new Coordinate(x + BLOCK_WIDTH / 2, y + BLOCK_HEIGHT),
+                        new Coordinate(x + BLOCK_WIDTH / 2, y + BLOCK_HEIGHT + 10),
+                        new Coordinate(x + BLOCK_WIDTH / 2, y + BLOCK_HEIGHT),
+                        new Coordinate(x, y + BLOCK_HEIGHT)
+                );
+        }
+    }
+
+    /**
+     * Street with noisy intermediate vertices, ends are exact so that streets of neighbouring cells are connected
+     */
+    private Geometry makeStreet(SplittableRandom random, Coordinate from, Coordinate to) {
+        int segments = (int) Math.ceil(from.distance(to) / STREET_VERTEX_STEP);
+        Coordinate[] coords = new Coordinate[segments + 1];
+        for (int i = 0; i <= segments; ++i) {
+            double fraction = (double) i / segments;
+            boolean end = i == 0 || i == segments;
+            coords[i] = new Coordinate(
+                    from.x + (to.x - from.x) * fraction + (end ? 0 : jitter(random, 1)),
+                    from.y + (to.y - from.y) * fraction + (end ? 0 : jitter(random, 1)));
+        }
+        return GeometryUtils.getGeometryFactory().createLineString(coords);
+    }
+
+    private static double jitter(SplittableRandom random, double amplitude) {
+        return (random.nextDouble() * 2 - 1) * amplitude;
+    }
+}
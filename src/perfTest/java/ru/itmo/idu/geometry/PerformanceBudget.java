@@ -0,0 +1,198 @@
+package ru.itmo.idu.geometry;
+
+import lombok.Value;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures time and allocated bytes per operation on a fixed workload and checks them against a checked-in baseline.
+ * <p>
+ * Time is compared as relative cost: time of an operation divided by time of a calibration workload that uses only JTS,
+ * measured in the same JVM, so that the baseline is usable on machines of different speed. Allocated bytes are counted
+ * by ThreadMXBean for the current thread and compared as is. Both are the best of several rounds, as slower rounds are
+ * caused by GC and other processes rather than by the code.
+ * <p>
+ * If perf.updateBaseline system property is true, measured values are written to perf.baselineFile instead of being checked.
+ */
+public class PerformanceBudget {
+
+    @Value
+    public static class Measurement {
+        double nanosPerOp;
+        /**
+         * NaN if JVM does not count allocated bytes per thread
+         */
+        double bytesPerOp;
+    }
+
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long ROUND_NANOS = 200_000_000L;
+    private static final int ROUNDS = 5;
+
+    /**
+     * Allocated bytes below this difference are not reported, as counters include a few allocations of the JVM itself
+     */
+    private static final double BYTES_SLACK = 1024;
+
+    private static final String BASELINE_RESOURCE = "/perf-baseline.properties";
+
+    private static final GeometryFactory CALIBRATION_FACTORY = new GeometryFactory();
+
+    private static volatile Object sink;
+
+    private static double calibrationNanos = Double.NaN;
+
+    public static Measurement measure(Supplier<?> operation) {
+        long warmupStart = System.nanoTime();
+        while (System.nanoTime() - warmupStart < WARMUP_NANOS) {
+            sink = operation.get();
+        }
+        double bestNanos = Double.POSITIVE_INFINITY;
+        double bestBytes = Double.POSITIVE_INFINITY;
+        for (int round = 0; round < ROUNDS; ++round) {
+            long bytesBefore = getAllocatedBytes();
+            long start = System.nanoTime();
+            long ops = 0;
+            long elapsed;
+            do {
+                sink = operation.get();
+                ++ops;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < ROUND_NANOS);
+            long bytesAfter = getAllocatedBytes();
+            bestNanos = Math.min(bestNanos, (double) elapsed / ops);
+            bestBytes = bytesBefore < 0 ? Double.NaN : Math.min(bestBytes, (double) (bytesAfter - bytesBefore) / ops);
+        }
+        return new Measurement(bestNanos, bestBytes);
+    }
+
+    /**
+     * Measures operation and fails if its relative cost or allocated bytes exceed baseline values multiplied by
+     * tolerance (perf.timeTolerance and perf.allocationTolerance system properties, 2.0 and 1.5 by default).
+     * Operation without baseline fails, so that a new check is not silently a no-op
+     */
+    public static void check(String name, Supplier<?> operation) {
+        if (Boolean.getBoolean("perf.updateBaseline")) {
+            Measurement measurement = measure(operation);
+            record(name, measurement.getNanosPerOp() / getCalibrationNanos(), measurement.getBytesPerOp());
+            return;
+        }
+
+        Properties baseline = loadBaseline();
+        String baselineCost = baseline.getProperty(name + ".relativeCost");
+        assertNotNull(baselineCost,
+                "No baseline for " + name + ", run gradle perfTest -PupdatePerfBaseline to record it");
+        Measurement measurement = measure(operation);
+        double relativeCost = measurement.getNanosPerOp() / getCalibrationNanos();
+
+        double timeTolerance = Double.parseDouble(System.getProperty("perf.timeTolerance", "2.0"));
+        double costBudget = Double.parseDouble(baselineCost) * timeTolerance;
+        assertTrue(relativeCost <= costBudget, String.format(Locale.ROOT,
+                "%s is slower than baseline: relative cost %.3f, baseline %s, budget %.3f (%.3f ms per op)",
+                name, relativeCost, baselineCost, costBudget, measurement.getNanosPerOp() / 1e6));
+
+        String baselineBytes = baseline.getProperty(name + ".bytesPerOp");
+        if (baselineBytes != null && !Double.isNaN(measurement.getBytesPerOp())) {
+            double allocationTolerance = Double.parseDouble(System.getProperty("perf.allocationTolerance", "1.5"));
+            double bytesBudget = Double.parseDouble(baselineBytes) * allocationTolerance + BYTES_SLACK;
+            assertTrue(measurement.getBytesPerOp() <= bytesBudget, String.format(Locale.ROOT,
+                    "%s allocates more than baseline: %.0f bytes per op, baseline %s, budget %.0f",
+                    name, measurement.getBytesPerOp(), baselineBytes, bytesBudget));
+        }
+    }
+
+    /**
+     * Nanos per calibration workload, measured once per JVM
+     */
+    public static synchronized double getCalibrationNanos() {
+        if (Double.isNaN(calibrationNanos)) {
+            calibrationNanos = measure(PerformanceBudget::calibrationWorkload).getNanosPerOp();
+        }
+        return calibrationNanos;
+    }
+
+    /**
+     * Overlay of two circles, depends only on JTS
+     */
+    private static Object calibrationWorkload() {
+        Geometry first = CALIBRATION_FACTORY.createPoint(new Coordinate(0, 0)).buffer(100, 16);
+        Geometry second = CALIBRATION_FACTORY.createPoint(new Coordinate(50, 30)).buffer(100, 16);
+        return first.intersection(second);
+    }
+
+    private static long getAllocatedBytes() {
+        var bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        var sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static Properties loadBaseline() {
+        Properties properties = new Properties();
+        String file = System.getProperty("perf.baselineFile");
+        try {
+            if (file != null && Files.exists(Paths.get(file))) {
+                try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+            } else {
+                try (InputStream stream = PerformanceBudget.class.getResourceAsStream(BASELINE_RESOURCE)) {
+                    if (stream != null) {
+                        properties.load(stream);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read performance baseline", e);
+        }
+        return properties;
+    }
+
+    /**
+     * Writes values of an operation to baseline file keeping values of other operations. Keys are sorted, so that
+     * diffs of the baseline are readable
+     */
+    private static synchronized void record(String name, double relativeCost, double bytesPerOp) {
+        String file = System.getProperty("perf.baselineFile");
+        if (file == null) {
+            throw new IllegalStateException("perf.baselineFile shall be set to update performance baseline");
+        }
+        Properties properties = loadBaseline();
+        properties.setProperty(name + ".relativeCost", String.format(Locale.ROOT, "%.4f", relativeCost));
+        if (!Double.isNaN(bytesPerOp)) {
+            properties.setProperty(name + ".bytesPerOp", String.format(Locale.ROOT, "%.0f", bytesPerOp));
+        }
+        Path path = Paths.get(file);
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("# Performance baseline, see PerformanceBudget. Update with gradle perfTest -PupdatePerfBaseline\n");
+            for (String key : new TreeSet<>(properties.stringPropertyNames())) {
+                writer.write(key + "=" + properties.getProperty(key) + "\n");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write performance baseline", e);
+        }
+    }
+}
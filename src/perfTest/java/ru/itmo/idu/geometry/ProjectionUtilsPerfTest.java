@@ -0,0 +1,91 @@
+package ru.itmo.idu.geometry;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import ru.itmo.idu.geometry.synthetic.UrbanDatasetGenerator;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Baseline of these checks depends on GeoTools projection code and is not recorded yet, so they run only when
+ * the baseline is updated. Remove EnabledIfSystemProperty once it is recorded
+ */
+@EnabledIfSystemProperty(named = "perf.updateBaseline", matches = "true",
+        disabledReason = "baseline is not recorded yet, run gradle perfTest -PupdatePerfBaseline with real GeoTools")
+public class ProjectionUtilsPerfTest {
+
+    private static List<Geometry> blocks;
+
+    private static List<Geometry> streets;
+
+    private static CoordinateReferenceSystem crs;
+
+    @BeforeAll
+    public static void setup() throws FactoryException {
+        var generator = new UrbanDatasetGenerator(42);
+        var features = generator.generate(1000);
+        blocks = features.stream()
+                .filter(feature -> feature.getType() == UrbanDatasetGenerator.FeatureType.BLOCK)
+                .map(UrbanDatasetGenerator.Feature::getGeometry)
+                .collect(Collectors.toList());
+        streets = features.stream()
+                .filter(feature -> feature.getType() == UrbanDatasetGenerator.FeatureType.STREET)
+                .map(UrbanDatasetGenerator.Feature::getGeometry)
+                .collect(Collectors.toList());
+        crs = CRSUtils.getLocalCRS(blocks.get(0));
+    }
+
+    /**
+     * Every block is looked up in a new context, so that CRS decoding is measured and not hits of the CRS cache
+     */
+    @Test
+    public void testGetLocalCRS() {
+        PerformanceBudget.check("ProjectionUtils.getLocalCRS", () -> blocks.stream().map(block -> {
+            try {
+                return GeometryContext.builder().build().getLocalCRS(block);
+            } catch (FactoryException e) {
+                throw new IllegalStateException(e);
+            }
+        }).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testProjectionRoundTrip() {
+        PerformanceBudget.check("ProjectionUtils.projectionRoundTrip", () -> blocks.stream().map(block -> {
+            try {
+                return ProjectionUtils.transformFromLocalCRS(crs, ProjectionUtils.transformToLocalCRS(crs, block));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testCalcArea() {
+        PerformanceBudget.check("ProjectionUtils.calcArea", () ->
+                blocks.stream().mapToDouble(ProjectionUtils::calcArea).sum());
+    }
+
+    @Test
+    public void testCalcAreaSharedCRS() {
+        PerformanceBudget.check("ProjectionUtils.calcAreaSharedCRS", () ->
+                blocks.stream().mapToDouble(block -> ProjectionUtils.calcArea(crs, block)).sum());
+    }
+
+    @Test
+    public void testCalcLength() {
+        PerformanceBudget.check("ProjectionUtils.calcLength", () ->
+                streets.stream().mapToDouble(ProjectionUtils::calcLength).sum());
+    }
+
+    @Test
+    public void testBufferProjected() {
+        PerformanceBudget.check("ProjectionUtils.bufferProjected", () ->
+                blocks.stream().map(block -> ProjectionUtils.bufferProjected(crs, block, 10)).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,83 @@
+package ru.itmo.idu.geometry;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import ru.itmo.idu.geometry.synthetic.UrbanDatasetGenerator;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class SafeOperationsPerfTest {
+
+    /**
+     * Blocks of a synthetic city, including narrow-angle, spike and invalid ones
+     */
+    private static List<Geometry> blocks;
+
+    /**
+     * Triangle covering about a half of the city, so that blocks are inside, outside and on its border
+     */
+    private static Geometry district;
+
+    private static PreparedGeometry preparedDistrict;
+
+    @BeforeAll
+    public static void setup() {
+        var generator = new UrbanDatasetGenerator(42);
+        generator.setNarrowAngleShare(0.05);
+        generator.setSpikeShare(0.05);
+        generator.setInvalidShare(0.05);
+        blocks = generator.stream(1000, false)
+                .filter(feature -> feature.getType() != UrbanDatasetGenerator.FeatureType.STREET
+                        && feature.getType() != UrbanDatasetGenerator.FeatureType.BUILDING)
+                .map(UrbanDatasetGenerator.Feature::getGeometry)
+                .collect(Collectors.toList());
+        Envelope envelope = new Envelope();
+        blocks.forEach(block -> envelope.expandToInclude(block.getEnvelopeInternal()));
+        district = GeometryUtils.makePolygon(
+                new Coordinate(envelope.getMinX(), envelope.getMinY()),
+                new Coordinate(envelope.getMaxX(), envelope.getMinY()),
+                new Coordinate(envelope.getMinX(), envelope.getMaxY())
+        );
+        preparedDistrict = GeometryUtils.prepareGeometry(district);
+    }
+
+    @Test
+    public void testSafeIntersectsPrepared() {
+        PerformanceBudget.check("SafeOperations.safeIntersectsPrepared", () ->
+                blocks.stream().filter(block -> SafeOperations.safeIntersects(preparedDistrict, block)).count());
+    }
+
+    @Test
+    public void testSafeCoversPrepared() {
+        PerformanceBudget.check("SafeOperations.safeCoversPrepared", () ->
+                blocks.stream().filter(block -> SafeOperations.safeCovers(preparedDistrict, block)).count());
+    }
+
+    @Test
+    public void testSafeIntersection() {
+        PerformanceBudget.check("SafeOperations.safeIntersection", () ->
+                blocks.stream().map(block -> SafeOperations.safeIntersection(district, block)).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSafeDifference() {
+        PerformanceBudget.check("SafeOperations.safeDifference", () ->
+                blocks.stream().map(block -> SafeOperations.safeDifference(district, block)).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSafeUnion() {
+        PerformanceBudget.check("SafeOperations.safeUnion", () -> {
+            Geometry[] result = new Geometry[blocks.size() - 1];
+            for (int i = 1; i < blocks.size(); ++i) {
+                result[i - 1] = SafeOperations.safeUnion(blocks.get(i - 1), blocks.get(i));
+            }
+            return result;
+        });
+    }
+}
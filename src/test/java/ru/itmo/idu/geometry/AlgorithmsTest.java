@@ -0,0 +1,117 @@
+package ru.itmo.idu.geometry;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineSegment;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AlgorithmsTest {
+
+    @Test
+    public void testFindLongestBorderSegments() {
+        Random random = new Random(42);
+        Coordinate[] coordinates = new Coordinate[200];
+        for (int i = 0; i < coordinates.length - 1; ++i) {
+            // rounding produces a lot of segments with equal lengths
+            coordinates[i] = new Coordinate(random.nextInt(10), random.nextInt(10));
+        }
+        coordinates[coordinates.length - 1] = coordinates[0];
+        Geometry polygon = GeometryUtils.makeLine(coordinates);
+
+        List<LineSegment> expected = new ArrayList<>();
+        for (int i = 0; i < coordinates.length - 1; ++i) {
+            expected.add(new LineSegment(coordinates[i], coordinates[i + 1]));
+        }
+        expected.sort(Comparator.comparingDouble(LineSegment::getLength).reversed());
+
+        assertEquals(expected.subList(0, 10), Algorithms.findLongestBorderSegments(polygon, 10));
+        assertEquals(expected, Algorithms.findLongestBorderSegments(polygon, 1000));
+        assertTrue(Algorithms.findLongestBorderSegments(polygon, 0).isEmpty());
+        assertTrue(Algorithms.findLongestBorderSegments(GeometryUtils.makePoint(1, 1), 5).isEmpty());
+    }
+
+    @Test
+    public void testFindLongestBorderSegmentsProjected() {
+        // 100 meters to the north and 60 meters to the east. In degrees east side is longer at 60N
+        Geometry box = ProjectionUtils.makeAABB(new Coordinate(30, 60), 60, 100);
+
+        List<LineSegment> inDegrees = Algorithms.findLongestBorderSegments(box, 1);
+        List<LineSegment> inMeters = Algorithms.findLongestBorderSegmentsProjected(box, 1);
+        assertEquals(inDegrees.get(0).p0.y, inDegrees.get(0).p1.y, 0.000001);
+        assertEquals(inMeters.get(0).p0.x, inMeters.get(0).p1.x, 0.000001);
+
+        List<List<LineSegment>> batch = Algorithms.findLongestBorderSegments(List.of(box, box), 1, true);
+        assertEquals(2, batch.size());
+        assertEquals(inMeters, batch.get(1));
+    }
+
+    @Test
+    public void testRemoveThinSpikes() throws FactoryException {
+        CoordinateReferenceSystem localCrs = CRSUtils.getLocalCRS(new Coordinate(30.3, 59.9));
+        // 100x100 meters square with a 2 meters wide and 50 meters long spike
+        Geometry localBlock = GeometryUtils.makeRectangle(0, 0, 100, 100).union(GeometryUtils.makeRectangle(49, 100, 2, 50));
+        Geometry block = ProjectionUtils.transformFromLocalCRS(localCrs, localBlock);
+
+        Geometry cleaned = Algorithms.removeThinSpikes(block, 5.0);
+        assertEquals(10000.0, ProjectionUtils.calcArea(cleaned), 10.0);
+        assertEquals(100.0, ProjectionUtils.transformToLocalCRS(localCrs, cleaned.getEnvelopeInternal()).getHeight(), 1.0);
+
+        Geometry thin = ProjectionUtils.transformFromLocalCRS(localCrs, GeometryUtils.makeRectangle(0, 0, 100, 2));
+        assertNull(Algorithms.removeThinSpikes(thin, 5.0));
+
+        List<Geometry> batch = Algorithms.removeThinSpikes(List.of(block, thin, block), 5.0, true);
+        assertEquals(3, batch.size());
+        assertNull(batch.get(1));
+        assertEquals(ProjectionUtils.calcArea(cleaned), ProjectionUtils.calcArea(batch.get(2)), 1.0);
+    }
+
+    private static Polygon makeSpikyPolygonWithHole(double shiftX) {
+        // 100x100 meters square with 200 meters long and 10 meters wide spike on top and a 10x10 hole
+        Polygon spiky = GeometryUtils.makePolygon(
+                new Coordinate(shiftX, 0),
+                new Coordinate(shiftX + 100, 0),
+                new Coordinate(shiftX + 100, 100),
+                new Coordinate(shiftX + 55, 100),
+                new Coordinate(shiftX + 50, 300),
+                new Coordinate(shiftX + 45, 100),
+                new Coordinate(shiftX, 100)
+        );
+        return (Polygon) spiky.difference(GeometryUtils.makeRectangle(shiftX + 20, 20, 10, 10));
+    }
+
+    @Test
+    public void testRemoveNarrowAngles() throws FactoryException {
+        CoordinateReferenceSystem localCrs = CRSUtils.getLocalCRS(new Coordinate(30.3, 59.9));
+        Geometry polygon = ProjectionUtils.transformFromLocalCRS(localCrs, makeSpikyPolygonWithHole(0));
+
+        Geometry result = Algorithms.removeNarrowAngles(polygon, 20.0);
+        assertTrue(result instanceof Polygon);
+        assertEquals(1, ((Polygon) result).getNumInteriorRing());
+        assertEquals(9900.0, ProjectionUtils.calcArea(result), 10.0);
+
+        List<Polygon> parts = new ArrayList<>();
+        for (int i = 0; i < 20; ++i) {
+            parts.add(makeSpikyPolygonWithHole(i * 200));
+        }
+        Geometry multiPolygon = ProjectionUtils.transformFromLocalCRS(localCrs,
+                GeometryUtils.getGeometryFactory().createMultiPolygon(parts.toArray(Polygon[]::new)));
+        Geometry multiResult = Algorithms.removeNarrowAngles(localCrs, multiPolygon, 20.0);
+        assertTrue(multiResult instanceof MultiPolygon);
+        assertEquals(20, multiResult.getNumGeometries());
+        assertEquals(20 * 9900.0, ProjectionUtils.calcArea(multiResult), 200.0);
+
+        Geometry line = GeometryUtils.makeLine(0, 0, 1, 1);
+        assertSame(line, Algorithms.removeNarrowAngles(line, 20.0));
+    }
+}
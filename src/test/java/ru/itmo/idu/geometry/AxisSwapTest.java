@@ -0,0 +1,66 @@
+package ru.itmo.idu.geometry;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AxisSwapTest {
+
+    @Test
+    public void testEqualValuesAreSwapped() {
+        // InvertCoordinateFilter skips the second coordinate, as it equals to the first one after swap
+        LineString line = GeometryUtils.makeLine(new Coordinate(1, 2), new Coordinate(2, 1));
+        AxisSwap.swapAxes(line);
+        assertEquals(new Coordinate(2, 1), line.getCoordinateN(0));
+        assertEquals(new Coordinate(1, 2), line.getCoordinateN(1));
+    }
+
+    @Test
+    public void testSharedClosingPoint() {
+        Coordinate first = new Coordinate(0, 10);
+        Polygon polygon = GeometryUtils.makePolygon(first, new Coordinate(5, 10), new Coordinate(5, 20), first);
+        Polygon copy = AxisSwap.swapAxesCopy(polygon);
+        AxisSwap.swapAxes(polygon);
+
+        assertEquals(new Coordinate(10, 0), polygon.getCoordinates()[0]);
+        assertEquals(new Coordinate(10, 0), polygon.getCoordinates()[3]);
+        assertTrue(polygon.isValid());
+        assertTrue(polygon.equalsExact(copy));
+        assertEquals(10.0, polygon.getEnvelopeInternal().getMinX());
+    }
+
+    @Test
+    public void testPackedAndBulk() {
+        GeometryFactory packedFactory = new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+        Geometry packed = packedFactory.createLineString(new Coordinate[]{new Coordinate(1, 2), new Coordinate(3, 4)});
+        // fill cached coordinates of packed sequence before swapping
+        packed.getCoordinates();
+        AxisSwap.swapAxes(packed);
+        assertArrayEquals(new Coordinate[]{new Coordinate(2, 1), new Coordinate(4, 3)}, packed.getCoordinates());
+
+        double[] raw = new double[]{1, 2, 10, 3, 4, 20};
+        AxisSwap.swapAxes(raw, 3);
+        assertArrayEquals(new double[]{2, 1, 10, 4, 3, 20}, raw);
+
+        List<Geometry> geometries = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            geometries.add(GeometryUtils.makeRectangle(i, 2 * i, 1, 2));
+        }
+        List<Geometry> copies = AxisSwap.swapAxesCopy(geometries, true);
+        AxisSwap.swapAxes(geometries, true);
+        for (int i = 0; i < geometries.size(); ++i) {
+            assertTrue(geometries.get(i).equalsExact(copies.get(i)));
+            assertEquals(2 * i, geometries.get(i).getEnvelopeInternal().getMinX(), 0.0);
+            assertEquals(i, geometries.get(i).getEnvelopeInternal().getMinY(), 0.0);
+        }
+    }
+}
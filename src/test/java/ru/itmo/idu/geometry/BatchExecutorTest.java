@@ -0,0 +1,183 @@
+package ru.itmo.idu.geometry;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.TopologyException;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class BatchExecutorTest {
+
+    private static List<Geometry> makeBlocks(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> (Geometry) GeometryUtils.makeRectangle(30.3 + (i % 100) * 0.001, 59.94 + (i / 100) * 0.001, 0.0005, 0.0005 + i * 1e-7))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testOrderedResults() throws InterruptedException {
+        var blocks = makeBlocks(500);
+        var random = new Random(42);
+        var delays = IntStream.range(0, blocks.size()).map(i -> random.nextInt(3)).toArray();
+        var executor = new BatchExecutor();
+        executor.setCapacity(16);
+
+        var blockIndices = new IdentityHashMap<Geometry, Integer>();
+        for (int i = 0; i < blocks.size(); ++i) {
+            blockIndices.put(blocks.get(i), i);
+        }
+        var result = executor.run(blocks, g -> {
+            Thread.sleep(delays[blockIndices.get(g)]);
+            return ProjectionUtils.calcArea(g);
+        });
+
+        Assertions.assertEquals(blocks.size(), result.getItems().size());
+        for (int i = 0; i < blocks.size(); ++i) {
+            var item = result.getItems().get(i);
+            Assertions.assertEquals(i, item.getIndex());
+            Assertions.assertSame(blocks.get(i), item.getSource());
+            Assertions.assertEquals(ProjectionUtils.calcArea(blocks.get(i)), item.getResult(), 1e-6);
+        }
+        Assertions.assertEquals(blocks.size(), result.getStats().getItemsCount());
+        Assertions.assertEquals(0, result.getStats().getFailedCount());
+        Assertions.assertTrue(result.getStats().getThroughput() > 0);
+        Assertions.assertTrue(result.getStats().getLatencyP50Nanos() <= result.getStats().getLatencyP99Nanos());
+        Assertions.assertTrue(result.getStats().getLatencyP99Nanos() <= result.getStats().getLatencyMaxNanos());
+    }
+
+    @Test
+    public void testFailuresAreIsolated() throws InterruptedException {
+        var blocks = makeBlocks(100);
+        var executor = new BatchExecutor();
+        executor.setOrdered(false);
+        var result = executor.run(blocks.stream(), g -> {
+            if (g.getArea() > 0.0005 * (0.0005 + 50 * 1e-7)) {
+                throw new TopologyException("test failure");
+            }
+            return g.buffer(0.0001);
+        });
+
+        Assertions.assertEquals(100, result.getItems().size());
+        var failures = result.getFailures();
+        Assertions.assertEquals(result.getStats().getFailedCount(), failures.size());
+        Assertions.assertTrue(failures.size() > 0 && failures.size() < 100);
+        for (var failure : failures) {
+            Assertions.assertNull(failure.getResult());
+            Assertions.assertTrue(failure.getError() instanceof TopologyException);
+        }
+        Assertions.assertEquals(100 - failures.size(), result.getResults().size());
+        var indices = result.getItems().stream().map(BatchExecutor.ItemResult::getIndex).collect(Collectors.toSet());
+        Assertions.assertEquals(100, indices.size());
+    }
+
+    @Test
+    @Timeout(30)
+    public void testErrorsAreIsolated() throws InterruptedException {
+        var blocks = makeBlocks(20);
+        var result = new BatchExecutor().run(blocks, g -> {
+            if (g == blocks.get(5)) {
+                throw new StackOverflowError();
+            }
+            return g.getArea();
+        });
+
+        Assertions.assertEquals(20, result.getItems().size());
+        Assertions.assertEquals(1, result.getStats().getFailedCount());
+        var failure = result.getItems().get(5);
+        Assertions.assertFalse(failure.isSuccessful());
+        Assertions.assertTrue(failure.getError() instanceof StackOverflowError);
+        Assertions.assertEquals(19, result.getResults().size());
+    }
+
+    @Test
+    @Timeout(30)
+    public void testFatalErrorIsRethrown() {
+        var blocks = makeBlocks(20);
+        var error = new OutOfMemoryError("test");
+        var thrown = Assertions.assertThrows(OutOfMemoryError.class, () -> new BatchExecutor().run(blocks, g -> {
+            if (g == blocks.get(5)) {
+                throw error;
+            }
+            return g.getArea();
+        }));
+        Assertions.assertSame(error, thrown);
+    }
+
+    @Test
+    public void testBackpressure() throws InterruptedException {
+        var blocks = makeBlocks(1000);
+        var read = new AtomicInteger();
+        var consumed = new AtomicInteger();
+        var maxInFlight = new AtomicInteger();
+        Iterator<Geometry> source = new Iterator<>() {
+            private final Iterator<Geometry> it = blocks.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Geometry next() {
+                maxInFlight.accumulateAndGet(read.incrementAndGet() - consumed.get(), Math::max);
+                return it.next();
+            }
+        };
+
+        var pool = BatchExecutor.newVirtualThreadExecutor();
+        try {
+            var executor = new BatchExecutor(pool);
+            executor.setCapacity(8);
+            var results = new ArrayList<Double>();
+            var stats = executor.run(source, Geometry::getArea, item -> {
+                consumed.incrementAndGet();
+                results.add(item.getResult());
+            });
+            Assertions.assertEquals(1000, stats.getItemsCount());
+            Assertions.assertEquals(1000, results.size());
+            Assertions.assertTrue(maxInFlight.get() <= 8);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testEmptySource() throws InterruptedException {
+        var pool = Executors.newFixedThreadPool(2);
+        try {
+            var result = new BatchExecutor(pool).run(List.<Geometry>of(), Geometry::getArea);
+            Assertions.assertTrue(result.getItems().isEmpty());
+            Assertions.assertEquals(0, result.getStats().getItemsCount());
+            Assertions.assertEquals(0, result.getStats().getLatencyP99Nanos());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testLatencyHistogram() {
+        var histogram = new BatchExecutor.LatencyHistogram();
+        for (long value = 1; value <= 100_000; ++value) {
+            histogram.record(value * 1000);
+        }
+        Assertions.assertEquals(100_000_000, histogram.getMax());
+        Assertions.assertEquals(50_000_000, histogram.getPercentile(0.5), 50_000_000 * 0.04);
+        Assertions.assertEquals(99_000_000, histogram.getPercentile(0.99), 99_000_000 * 0.04);
+
+        for (long value : new long[] {0, 1, 31, 32, 33, 1000, 123_456_789, Long.MAX_VALUE / 3}) {
+            int bucket = BatchExecutor.LatencyHistogram.bucketOf(value);
+            Assertions.assertTrue(BatchExecutor.LatencyHistogram.upperBoundOf(bucket) >= value);
+            Assertions.assertTrue(bucket == 0 || BatchExecutor.LatencyHistogram.upperBoundOf(bucket - 1) < value);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.itmo.idu.geometry;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+import ru.itmo.idu.geometry.algorithms.CellGridGenerator;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class CellGridGeneratorTest {
+
+    private static Geometry makeArea() {
+        // large enough to have several tiles, with a hole and a concave notch
+        return GeometryUtils.makeRectangle(0, 0, 1000, 600)
+                .difference(GeometryUtils.makeRectangle(300, 200, 155, 170))
+                .difference(GeometryUtils.makeRectangle(700, -1, 50, 401));
+    }
+
+    @Test
+    public void testSquareCells() {
+        Geometry area = makeArea();
+        List<CellGridGenerator.Cell> cells = CellGridGenerator.generateCells(area, 20.0, CellGridGenerator.CellShape.SQUARE);
+
+        double totalArea = cells.stream().mapToDouble(c -> c.getGeometry().getArea()).sum();
+        Assertions.assertEquals(area.getArea(), totalArea, 0.001);
+        for (CellGridGenerator.Cell cell : cells) {
+            if (!cell.isClipped()) {
+                Assertions.assertEquals(400.0, cell.getGeometry().getArea(), 0.001);
+            }
+            Assertions.assertTrue(area.buffer(0.001).covers(cell.getGeometry()));
+        }
+        Set<Long> indices = cells.stream().map(c -> c.getRow() * 1000L + c.getColumn()).collect(Collectors.toSet());
+        Assertions.assertEquals(cells.size(), indices.size());
+        Assertions.assertTrue(cells.stream().anyMatch(CellGridGenerator.Cell::isClipped));
+    }
+
+    @Test
+    public void testHexagonCells() {
+        Geometry area = makeArea();
+        CellGridGenerator generator = new CellGridGenerator(area, 20.0, CellGridGenerator.CellShape.HEXAGON);
+        List<CellGridGenerator.Cell> cells = generator.generateCells();
+        generator.setParallel(true);
+        List<CellGridGenerator.Cell> parallelCells = generator.generateCells();
+
+        double totalArea = cells.stream().mapToDouble(c -> c.getGeometry().getArea()).sum();
+        Assertions.assertEquals(area.getArea(), totalArea, 0.01);
+        double hexArea = 20.0 * 20.0 * Math.sqrt(3) / 2;
+        Assertions.assertTrue(cells.stream()
+                .filter(c -> !c.isClipped())
+                .allMatch(c -> Math.abs(c.getGeometry().getArea() - hexArea) < 0.001));
+
+        Assertions.assertEquals(cells.size(), parallelCells.size());
+        for (int i = 0; i < cells.size(); ++i) {
+            Assertions.assertEquals(cells.get(i).getRow(), parallelCells.get(i).getRow());
+            Assertions.assertEquals(cells.get(i).getColumn(), parallelCells.get(i).getColumn());
+            Assertions.assertTrue(cells.get(i).getGeometry().equalsExact(parallelCells.get(i).getGeometry()));
+        }
+        Set<Long> indices = new HashSet<>();
+        cells.forEach(c -> indices.add(c.getRow() * 1000L + c.getColumn()));
+        Assertions.assertEquals(cells.size(), indices.size());
+    }
+}
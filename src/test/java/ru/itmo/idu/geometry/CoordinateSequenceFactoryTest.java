@@ -0,0 +1,60 @@
+package ru.itmo.idu.geometry;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.CoordinateArraySequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoordinateSequenceFactoryTest {
+
+    @Test
+    public void testPackedFactoryIsUsed() {
+        Polygon defaultRectangle = GeometryUtils.makeRectangle(0, 0, 10, 20);
+
+        var packedContext = GeometryContext.builder()
+                .coordinateSequenceFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY)
+                .build();
+        var packedFactory = packedContext.getGeometryFactory();
+        Polygon packedRectangle = GeometryUtils.makeRectangle(packedFactory, 0, 0, 10, 20);
+        assertTrue(packedRectangle.getExteriorRing().getCoordinateSequence() instanceof PackedCoordinateSequence.Double);
+        assertEquals(2, packedRectangle.getExteriorRing().getCoordinateSequence().getDimension());
+        assertTrue(defaultRectangle.equalsExact(packedRectangle));
+
+        Polygon packedPolygon = GeometryUtils.makePolygon(packedFactory,
+                List.of(new Coordinate(0, 0), new Coordinate(10, 0), new Coordinate(10, 20)));
+        assertTrue(packedPolygon.getExteriorRing().getCoordinateSequence() instanceof PackedCoordinateSequence.Double);
+        assertEquals(4, packedPolygon.getExteriorRing().getNumPoints());
+
+        LineString line3d = GeometryUtils.makeLine(packedFactory, new Coordinate(1.0, 1.0, 100.0), new Coordinate(1.0, 1.0, 200.0));
+        assertTrue(line3d.getCoordinateSequence() instanceof PackedCoordinateSequence.Double);
+        assertEquals(200.0, line3d.getCoordinateN(1).getZ());
+
+        var points = GeometryUtils.makeMultiPoint(packedFactory, new Coordinate(1, 2), new Coordinate(3, 4));
+        assertSame(packedFactory, points.getFactory());
+        assertTrue(((Point) points.getGeometryN(1)).getCoordinateSequence() instanceof PackedCoordinateSequence.Double);
+
+        var floatContext = packedContext.toBuilder()
+                .coordinateSequenceFactory(PackedCoordinateSequenceFactory.FLOAT_FACTORY)
+                .build();
+        assertTrue(GeometryUtils.makePoint(floatContext.getGeometryFactory(), 1, 2).getCoordinateSequence() instanceof PackedCoordinateSequence.Float);
+    }
+
+    @Test
+    public void testDefaultFactoryIsNotChanged() {
+        var packedFactory = GeometryContext.builder()
+                .coordinateSequenceFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY)
+                .build()
+                .getGeometryFactory();
+        GeometryUtils.makeRectangle(packedFactory, 0, 0, 10, 20);
+        assertTrue(GeometryUtils.makeRectangle(0, 0, 10, 20).getExteriorRing().getCoordinateSequence() instanceof CoordinateArraySequence);
+        assertTrue(GeometryUtils.makeLine(new Coordinate(0, 0), new Coordinate(1, 1)).getCoordinateSequence() instanceof CoordinateArraySequence);
+    }
+}
@@ -0,0 +1,143 @@
+package ru.itmo.idu.geometry;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+import ru.itmo.idu.geometry.io.GeoJsonFeature;
+import ru.itmo.idu.geometry.io.GeoJsonReader;
+import ru.itmo.idu.geometry.io.GeoJsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeoJsonReaderTest {
+
+    private InputStream getResource(String name) {
+        return getClass().getClassLoader().getResourceAsStream(name);
+    }
+
+    @Test
+    public void testReadFeatureCollection() throws IOException {
+        List<GeoJsonFeature> features = GeoJsonReader.readAll(getResource("polygonCovers1.json"), false);
+        assertEquals(1, features.size());
+        GeoJsonFeature feature = features.get(0);
+        assertTrue(feature.getGeometry() instanceof Polygon);
+        assertEquals(4, feature.getGeometry().getNumPoints());
+        assertEquals(new Coordinate(30.28687717, 59.72104526), feature.getGeometry().getCoordinates()[0]);
+        assertEquals(61229743L, feature.getProperties().get("id").getAsLong());
+        assertEquals("block", feature.getProperties().get("type").getAsString());
+
+        // coordinates go before type here
+        try (GeoJsonReader reader = new GeoJsonReader(getResource("geomCollectionIntersection.geojson"), true)) {
+            List<Geometry> geometries = reader.stream().map(GeoJsonFeature::getGeometry).collect(Collectors.toList());
+            assertTrue(geometries.size() > 1);
+            assertTrue(geometries.stream().allMatch(g -> g instanceof Polygon && g.isValid()));
+            // swapped to lat-lon
+            assertEquals(59.86, geometries.get(0).getCoordinates()[0].x, 0.01);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Polygon withHole = (Polygon) GeometryUtils.makeRectangle(0, 0, 10, 10).difference(GeometryUtils.makeRectangle(2, 2, 2, 2));
+        List<Geometry> geometries = List.of(
+                GeometryUtils.makePoint(1, 2),
+                GeometryUtils.makeLine(new Coordinate(1, 2, 3), new Coordinate(4, 5, 6)),
+                withHole,
+                GeometryUtils.getGeometryFactory().createMultiPolygon(new Polygon[]{withHole, GeometryUtils.makeRectangle(20, 20, 1, 1)}),
+                GeometryUtils.getGeometryFactory().createGeometryCollection(new Geometry[]{GeometryUtils.makePoint(1, 2), withHole})
+        );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GeoJsonWriter writer = new GeoJsonWriter(out, true)) {
+            for (int i = 0; i < geometries.size(); ++i) {
+                JsonObject properties = new JsonObject();
+                properties.addProperty("idx", i);
+                writer.write(new JsonPrimitive("f" + i), geometries.get(i), properties);
+            }
+            writer.write(null, new JsonObject());
+        }
+
+        List<GeoJsonFeature> features = GeoJsonReader.readAll(new ByteArrayInputStream(out.toByteArray()), true);
+        assertEquals(geometries.size() + 1, features.size());
+        for (int i = 0; i < geometries.size(); ++i) {
+            GeoJsonFeature feature = features.get(i);
+            assertTrue(geometries.get(i).equalsExact(feature.getGeometry()), "Feature " + i);
+            assertEquals("f" + i, feature.getId().getAsString());
+            assertEquals(i, feature.getProperties().get("idx").getAsInt());
+        }
+        assertEquals(3.0, features.get(1).getGeometry().getCoordinates()[0].getZ());
+        assertNull(features.get(geometries.size()).getGeometry());
+
+        // written as lon-lat, so point (1, 2) is [2, 1] in the file
+        List<GeoJsonFeature> notSwapped = GeoJsonReader.readAll(new ByteArrayInputStream(out.toByteArray()), false);
+        assertEquals(new Coordinate(2, 1), notSwapped.get(0).getGeometry().getCoordinate());
+    }
+
+    @Test
+    public void testWriteRingsAndNonFiniteCoordinates() throws IOException {
+        var factory = GeometryUtils.getGeometryFactory();
+        var ring = GeometryUtils.makeRectangle(0, 0, 1, 1).getExteriorRing();
+        var nanLine = GeometryUtils.makeLine(new Coordinate(0, 0), new Coordinate(Double.NaN, 1));
+        var infinitePoint = GeometryUtils.makePoint(Double.POSITIVE_INFINITY, 0);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GeoJsonWriter writer = new GeoJsonWriter(out)) {
+            writer.write(ring, null);
+            assertThrows(IllegalArgumentException.class, () -> writer.write(nanLine, null));
+            assertThrows(IllegalArgumentException.class, () -> writer.write(
+                    factory.createGeometryCollection(new Geometry[]{GeometryUtils.makePoint(1, 1), infinitePoint}), null));
+            writer.write(GeometryUtils.makePoint(1, 2), null);
+        }
+
+        String json = out.toString(StandardCharsets.UTF_8);
+        assertFalse(json.contains("LinearRing"));
+        List<GeoJsonFeature> features = GeoJsonReader.readAll(new ByteArrayInputStream(out.toByteArray()), false);
+        assertEquals(2, features.size());
+        assertEquals(Geometry.TYPENAME_LINESTRING, features.get(0).getGeometry().getGeometryType());
+        assertTrue(ring.getCoordinateSequence().getCoordinate(2).equals2D(features.get(0).getGeometry().getCoordinates()[2]));
+        assertEquals(new Coordinate(1, 2), features.get(1).getGeometry().getCoordinate());
+    }
+
+    private static InputStream toStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testMalformedGeometries() throws IOException {
+        String json = "{\"type\": \"FeatureCollection\", \"features\": [" +
+                "{\"geometry\": {\"type\": \"Point\", \"coordinates\": [1]}, \"properties\": {\"idx\": 0}}," +
+                "{\"geometry\": {\"coordinates\": [[1, 2], [3, null]], \"type\": \"LineString\"}, \"properties\": {\"idx\": 1}}," +
+                "{\"geometry\": {\"type\": \"Polygon\", \"coordinates\": [[[0, 0], \"x\", [1, 1], [0, 0]]]}, \"properties\": {\"idx\": 2}}," +
+                "{\"geometry\": [1, 2], \"properties\": {\"idx\": 3}}," +
+                "{\"geometry\": {\"type\": \"LineString\", \"coordinates\": [[1, 2], [3, 4, 5, 6]]}, \"properties\": {\"idx\": 4}}" +
+                "]}";
+        List<GeoJsonFeature> features = GeoJsonReader.readAll(toStream(json), false);
+        assertEquals(5, features.size());
+        for (int i = 0; i < 4; ++i) {
+            assertNull(features.get(i).getGeometry(), "Feature " + i);
+            assertEquals(i, features.get(i).getProperties().get("idx").getAsInt());
+        }
+        Geometry line = features.get(4).getGeometry();
+        assertEquals(2, line.getNumPoints());
+        assertEquals(5.0, line.getCoordinates()[1].getZ());
+    }
+
+    @Test
+    public void testRootIsNotFeatureCollection() {
+        String feature = "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 2]}}";
+        IOException error = assertThrows(IOException.class, () -> GeoJsonReader.readAll(toStream(feature), false));
+        assertTrue(error.getMessage().contains("Feature"));
+        assertThrows(IOException.class, () -> GeoJsonReader.readAll(toStream("[1, 2]"), false));
+    }
+}
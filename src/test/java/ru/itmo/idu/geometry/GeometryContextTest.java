@@ -0,0 +1,242 @@
+package ru.itmo.idu.geometry;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.locationtech.jts.operation.buffer.BufferParameters;
+import org.opengis.referencing.FactoryException;
+import ru.itmo.idu.geometry.algorithms.CellGridGenerator;
+import ru.itmo.idu.geometry.io.GeoJsonReader;
+import ru.itmo.idu.geometry.io.GeometryStore;
+import ru.itmo.idu.geometry.io.GeometryStoreWriter;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class GeometryContextTest {
+
+    private static Geometry makeBlock() {
+        return GeometryUtils.makeRectangle(30.3, 59.94, 0.002, 0.001);
+    }
+
+    @Test
+    public void testCachedCRS() throws FactoryException {
+        var context = GeometryContext.builder().build();
+        var coordinate = new Coordinate(30.3, 59.94);
+        var crs = context.getLocalCRS(coordinate);
+        Assertions.assertSame(crs, context.getLocalCRS(coordinate));
+        Assertions.assertSame(context.getTransformFromWGS84(crs), context.getTransformFromWGS84(crs));
+        Assertions.assertSame(context.getMercatorCRS(), context.decodeCRS("EPSG:3857"));
+    }
+
+    @Test
+    public void testLocalCRSRounding() throws FactoryException {
+        var context = GeometryContext.builder().build();
+        var crs = context.getLocalCRS(new Coordinate(30.3, 59.94));
+        Assertions.assertSame(crs, context.getLocalCRS(new Coordinate(30.3012, 59.9391)));
+        Assertions.assertNotSame(crs, context.getLocalCRS(new Coordinate(30.32, 59.94)));
+
+        var exactContext = GeometryContext.builder().localCrsStep(0).build();
+        var exactCrs = exactContext.getLocalCRS(new Coordinate(30.3, 59.94));
+        Assertions.assertNotSame(exactCrs, exactContext.getLocalCRS(new Coordinate(30.3012, 59.9391)));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws FactoryException {
+        var cacheMisses = new AtomicInteger();
+        var context = GeometryContext.builder()
+                .cacheSize(2)
+                .metricsListener(new GeometryContext.MetricsListener() {
+                    @Override
+                    public void onCacheMiss(String cache) {
+                        cacheMisses.incrementAndGet();
+                    }
+                })
+                .build();
+        var first = context.getLocalCRS(new Coordinate(30.0, 60.0));
+        context.getLocalCRS(new Coordinate(31.0, 60.0));
+        // first is used again, so the second one is evicted by the third
+        Assertions.assertSame(first, context.getLocalCRS(new Coordinate(30.0, 60.0)));
+        context.getLocalCRS(new Coordinate(32.0, 60.0));
+        Assertions.assertSame(first, context.getLocalCRS(new Coordinate(30.0, 60.0)));
+        Assertions.assertEquals(3, cacheMisses.get());
+        context.getLocalCRS(new Coordinate(31.0, 60.0));
+        Assertions.assertEquals(4, cacheMisses.get());
+    }
+
+    @Test
+    public void testBuilder() {
+        var context = GeometryContext.builder()
+                .precisionModel(new PrecisionModel(1000.0))
+                .geodesicKernel(GeodesicKernel.SPHERICAL)
+                .build();
+        Assertions.assertEquals(1000.0, context.getPrecisionModel().getScale());
+        Assertions.assertSame(GeodesicKernel.SPHERICAL, context.getGeodesicKernel());
+
+        var copy = context.toBuilder().geodesicKernel(GeodesicKernel.ELLIPSOIDAL).build();
+        Assertions.assertEquals(1000.0, copy.getPrecisionModel().getScale());
+        Assertions.assertSame(GeodesicKernel.ELLIPSOIDAL, copy.getGeodesicKernel());
+        // source context is not changed
+        Assertions.assertSame(GeodesicKernel.SPHERICAL, context.getGeodesicKernel());
+    }
+
+    @Test
+    public void testGeodesicKernels() {
+        var from = new Coordinate(30.3, 59.94);
+        var to = new Coordinate(30.4, 59.98);
+        double ellipsoidal = GeodesicKernel.ELLIPSOIDAL.distance(from, to);
+        double spherical = GeodesicKernel.SPHERICAL.distance(from, to);
+        Assertions.assertEquals(ellipsoidal, spherical, ellipsoidal * 0.005);
+
+        for (var kernel : List.of(GeodesicKernel.ELLIPSOIDAL, GeodesicKernel.SPHERICAL)) {
+            var destination = kernel.destination(from, kernel.azimuth(from, to), kernel.distance(from, to));
+            Assertions.assertEquals(to.x, destination.x, 1e-6);
+            Assertions.assertEquals(to.y, destination.y, 1e-6);
+        }
+    }
+
+    @Test
+    public void testUpdateDefault() {
+        var previous = GeometryContext.getDefault();
+        try {
+            GeometryContext.updateDefault(builder -> builder.coordinateSequenceFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY));
+            Assertions.assertSame(PackedCoordinateSequenceFactory.DOUBLE_FACTORY,
+                    GeometryUtils.getGeometryFactory().getCoordinateSequenceFactory());
+            // previously obtained context keeps its settings
+            Assertions.assertNotSame(PackedCoordinateSequenceFactory.DOUBLE_FACTORY,
+                    previous.getGeometryFactory().getCoordinateSequenceFactory());
+        } finally {
+            GeometryContext.setDefault(previous);
+        }
+    }
+
+    @Test
+    public void testMetricsListener() {
+        var operations = new AtomicInteger();
+        var cacheMisses = new AtomicInteger();
+        var context = GeometryContext.builder()
+                .metricsListener(new GeometryContext.MetricsListener() {
+                    @Override
+                    public void onOperation(String operation, long nanos) {
+                        operations.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onCacheMiss(String cache) {
+                        cacheMisses.incrementAndGet();
+                    }
+                })
+                .build();
+        var block = makeBlock();
+        double area = context.calcArea(block);
+        Assertions.assertEquals(area, context.calcArea(block));
+        Assertions.assertEquals(2, operations.get());
+        // CRS and transform are decoded once
+        Assertions.assertEquals(2, cacheMisses.get());
+    }
+
+    @Test
+    public void testConcurrentUse() {
+        var context = GeometryContext.builder().build();
+        var block = makeBlock();
+        double expected = context.calcArea(block);
+        Assertions.assertTrue(expected > 0);
+        var areas = IntStream.range(0, 200)
+                .parallel()
+                .mapToObj(i -> context.calcArea(block))
+                .collect(Collectors.toList());
+        for (double area : areas) {
+            Assertions.assertEquals(expected, area, 1e-6);
+        }
+        Assertions.assertEquals(expected, ProjectionUtils.calcArea(block), expected * 1e-6);
+    }
+
+    @Test
+    public void testProjectionUtilsWithContext() {
+        var operations = new ArrayList<String>();
+        var context = GeometryContext.builder()
+                .coordinateSequenceFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY)
+                .metricsListener(new GeometryContext.MetricsListener() {
+                    @Override
+                    public synchronized void onOperation(String operation, long nanos) {
+                        operations.add(operation);
+                    }
+                })
+                .build();
+        var block = makeBlock();
+
+        var buffer = ProjectionUtils.bufferProjected(context, block, 10, new BufferParameters());
+        Assertions.assertEquals(ProjectionUtils.bufferProjected(block, 10, new BufferParameters()).getArea(), buffer.getArea(), 1e-12);
+        Assertions.assertEquals(List.of("transformToLocalCRS", "transformFromLocalCRS"), operations);
+
+        var union = ProjectionUtils.bufferUnionProjected(context, List.of(block, block.getCentroid()), 10, false);
+        Assertions.assertTrue(union.covers(block));
+        var empty = ProjectionUtils.bufferUnionProjected(context, List.of(), 10, false);
+        Assertions.assertTrue(empty.isEmpty());
+        Assertions.assertSame(context.getGeometryFactory(), empty.getFactory());
+
+        LineString line = GeometryUtils.makeLine(new Coordinate(30.3, 59.94), new Coordinate(30.31, 59.94));
+        var increased = ProjectionUtils.increaseLineLength(context, line, 0.5);
+        Assertions.assertEquals(1.5 * ProjectionUtils.calcLength(line), ProjectionUtils.calcLength(increased), 1e-3);
+    }
+
+    @Test
+    public void testEntryPointsUseContext(@TempDir Path tempDir) throws Exception {
+        var cacheMisses = new AtomicInteger();
+        var context = GeometryContext.builder()
+                .coordinateSequenceFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY)
+                .metricsListener(new GeometryContext.MetricsListener() {
+                    @Override
+                    public void onCacheMiss(String cache) {
+                        cacheMisses.incrementAndGet();
+                    }
+                })
+                .build();
+        var factory = context.getGeometryFactory();
+        var block = makeBlock();
+        var crs = context.getLocalCRS(block);
+        context.getTransformFromWGS84(crs);
+        context.getTransformToWGS84(crs);
+        int misses = cacheMisses.get();
+
+        Assertions.assertSame(factory, Algorithms.removeNarrowAngles(context, block, 1.0).getFactory());
+        Assertions.assertNotNull(Algorithms.removeThinSpikes(context, block, 1.0));
+        Assertions.assertEquals(2, Algorithms.findLongestBorderSegmentsProjected(context, block, 2).size());
+        for (var mode : PointsGridGenerator.Mode.values()) {
+            var points = PointsGridGenerator.generatePoints(context, crs, block, 20, 0, mode);
+            Assertions.assertFalse(points.isEmpty());
+            Assertions.assertSame(factory, points.get(0).getFactory());
+        }
+        var cells = CellGridGenerator.generateCellsWGS84(context, crs, block, 50, CellGridGenerator.CellShape.SQUARE, false);
+        Assertions.assertSame(factory, cells.get(0).getGeometry().getFactory());
+        Assertions.assertTrue(ProjectionUtils.calcArea(context, block) > 0);
+        // all projections above reuse CRS and transforms cached by the context
+        Assertions.assertEquals(misses, cacheMisses.get());
+
+        var empty = SafeOperations.safeIntersection(context, factory.createPolygon(), block, 1.0);
+        Assertions.assertSame(factory, empty.getFactory());
+
+        var json = "{\"type\":\"FeatureCollection\",\"features\":[{\"type\":\"Feature\",\"properties\":{},"
+                + "\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[30.3,59.94],[30.31,59.94]]}}]}";
+        var features = GeoJsonReader.readAll(context, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), false);
+        Assertions.assertSame(factory, features.get(0).getGeometry().getFactory());
+
+        var path = tempDir.resolve("blocks.bin");
+        GeometryStoreWriter.writeProjected(context, path, List.of(block), 0.0);
+        try (var store = GeometryStore.open(context, path)) {
+            Assertions.assertSame(factory, store.getGeometry(0).getFactory());
+            Assertions.assertSame(store.getCRS(), store.getCRS());
+        }
+    }
+}
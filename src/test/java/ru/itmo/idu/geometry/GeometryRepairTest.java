@@ -0,0 +1,94 @@
+package ru.itmo.idu.geometry;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeometryRepairTest {
+
+    private static Polygon makeBowtie(double shift) {
+        return GeometryUtils.makePolygon(
+                new Coordinate(shift, 0),
+                new Coordinate(shift + 10, 10),
+                new Coordinate(shift + 10, 0),
+                new Coordinate(shift, 10)
+        );
+    }
+
+    @Test
+    public void testRepairSingle() {
+        Polygon valid = GeometryUtils.makeRectangle(0, 0, 10, 10);
+        GeometryRepair.RepairReport validReport = GeometryRepair.repair(valid);
+        assertEquals(GeometryRepair.Method.NONE, validReport.getMethod());
+        assertSame(valid, validReport.getResult());
+        assertNull(validReport.getError());
+
+        GeometryRepair.RepairReport bowtieReport = GeometryRepair.repair(makeBowtie(0));
+        assertTrue(bowtieReport.isRepaired());
+        assertTrue(bowtieReport.getResult().isValid());
+        // unlike buffer(0) both halves of a bowtie are kept
+        assertEquals(50.0, bowtieReport.getResult().getArea(), 0.001);
+
+        Polygon holeOutsideShell = GeometryUtils.getGeometryFactory().createPolygon(
+                GeometryUtils.makeRectangle(0, 0, 10, 10).getExteriorRing(),
+                new LinearRing[]{GeometryUtils.makeRectangle(20, 20, 1, 1).getExteriorRing()}
+        );
+        GeometryRepair.RepairReport holeReport = GeometryRepair.repair(holeOutsideShell);
+        assertTrue(holeReport.isRepaired());
+        // GeometryFixer turns holes outside of shell into separate polygons
+        assertEquals(2, holeReport.getResult().getNumGeometries());
+        assertEquals(101.0, holeReport.getResult().getArea(), 0.001);
+    }
+
+    /**
+     * Factory that can not create polygons, so both GeometryFixer and buffer(0) of fallback fail on its geometries
+     */
+    private static class BrokenFactory extends GeometryFactory {
+        @Override
+        public Polygon createPolygon(LinearRing shell, LinearRing[] holes) {
+            throw new IllegalStateException("test failure");
+        }
+    }
+
+    @Test
+    public void testFallbackFailure() {
+        var factory = new BrokenFactory();
+        var bowtieRing = factory.createLinearRing(makeBowtie(0).getExteriorRing().getCoordinateSequence());
+        var brokenBowtie = new Polygon(bowtieRing, null, factory);
+        assertThrows(IllegalStateException.class, () -> GeometryUtils.fixGeometry(brokenBowtie));
+
+        List<Geometry> geometries = List.of(makeBowtie(0), brokenBowtie, makeBowtie(20));
+        List<GeometryRepair.RepairReport> reports = GeometryRepair.repairAll(geometries, true);
+        assertEquals(3, reports.size());
+        assertTrue(reports.get(0).isRepaired());
+        assertEquals(GeometryRepair.Method.FAILED, reports.get(1).getMethod());
+        assertSame(brokenBowtie, reports.get(1).getResult());
+        assertNotNull(reports.get(1).getError());
+        assertTrue(reports.get(2).isRepaired());
+    }
+
+    @Test
+    public void testRepairAll() {
+        List<Geometry> geometries = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            geometries.add(i % 2 == 0 ? makeBowtie(i * 20) : GeometryUtils.makeRectangle(i * 20, 0, 10, 10));
+        }
+        List<GeometryRepair.RepairReport> reports = GeometryRepair.repairAll(geometries, true);
+        assertEquals(geometries.size(), reports.size());
+        for (int i = 0; i < reports.size(); ++i) {
+            GeometryRepair.RepairReport report = reports.get(i);
+            assertEquals(i, report.getIndex());
+            assertSame(geometries.get(i), report.getSource());
+            assertTrue(report.isValid());
+            assertEquals(i % 2 == 0, report.isRepaired());
+        }
+    }
+}
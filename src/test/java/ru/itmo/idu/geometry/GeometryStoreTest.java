@@ -0,0 +1,110 @@
+package ru.itmo.idu.geometry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+import ru.itmo.idu.geometry.io.GeometryStore;
+import ru.itmo.idu.geometry.io.GeometryStoreWriter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeometryStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<Geometry> makeGeometries() {
+        Polygon withHole = (Polygon) GeometryUtils.makeRectangle(0, 0, 10, 10).difference(GeometryUtils.makeRectangle(2, 2, 2, 2));
+        List<Geometry> geometries = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            switch (i % 5) {
+                case 0:
+                    geometries.add(GeometryUtils.makePoint(i, -i));
+                    break;
+                case 1:
+                    geometries.add(GeometryUtils.makeLine(new Coordinate(i, 0), new Coordinate(i + 0.25, 3.5)));
+                    break;
+                case 2:
+                    geometries.add(withHole);
+                    break;
+                case 3:
+                    geometries.add(GeometryUtils.getGeometryFactory().createMultiPolygon(new Polygon[]{withHole, GeometryUtils.makeRectangle(i, i, 1, 1)}));
+                    break;
+                default:
+                    geometries.add(GeometryUtils.getGeometryFactory().createGeometryCollection(new Geometry[]{GeometryUtils.makePoint(1, 2), withHole}));
+            }
+        }
+        return geometries;
+    }
+
+    @Test
+    public void testDoubleStore() throws IOException {
+        List<Geometry> geometries = makeGeometries();
+        Path path = tempDir.resolve("store.bin");
+        try (GeometryStoreWriter writer = new GeometryStoreWriter(path, "EPSG:3857")) {
+            writer.writeAll(geometries);
+            writer.write(null);
+        }
+
+        try (GeometryStore store = GeometryStore.open(path)) {
+            assertEquals(geometries.size() + 1, store.size());
+            assertEquals("EPSG:3857", store.getCrsCode());
+            assertFalse(store.isQuantized());
+            for (int i = geometries.size() - 1; i >= 0; i -= 7) {
+                assertTrue(geometries.get(i).equalsExact(store.getGeometry(i)), "Geometry " + i);
+                assertEquals(geometries.get(i).getEnvelopeInternal(), store.getEnvelope(i));
+            }
+            assertTrue(store.getGeometry(geometries.size()).isEmpty());
+            assertTrue(store.getEnvelope(geometries.size()).isNull());
+            Envelope total = new Envelope();
+            geometries.forEach(g -> total.expandToInclude(g.getEnvelopeInternal()));
+            assertEquals(total, store.getTotalEnvelope());
+
+            List<Geometry> streamed = store.stream(true).collect(Collectors.toList());
+            for (int i = 0; i < geometries.size(); ++i) {
+                assertTrue(geometries.get(i).equalsExact(streamed.get(i)));
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> store.getGeometry(geometries.size() + 1));
+        }
+    }
+
+    @Test
+    public void testQuantizedStore() throws IOException {
+        List<Geometry> geometries = makeGeometries();
+        Path path = tempDir.resolve("quantized.bin");
+        try (GeometryStoreWriter writer = new GeometryStoreWriter(path, null, 0.01)) {
+            writer.writeAll(geometries);
+        }
+        try (GeometryStore store = GeometryStore.open(path)) {
+            assertTrue(store.isQuantized());
+            assertNull(store.getCrsCode());
+            for (int i = 0; i < geometries.size(); ++i) {
+                assertTrue(geometries.get(i).equalsExact(store.getGeometry(i), 0.005), "Geometry " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testProjectedStore() throws Exception {
+        List<Geometry> wgs84 = List.of(
+                ProjectionUtils.makeAABB(new Coordinate(30, 60), 100.0, 50.0),
+                ProjectionUtils.makeAABB(new Coordinate(30.01, 60.01), 20.0, 20.0)
+        );
+        Path path = tempDir.resolve("projected.bin");
+        GeometryStoreWriter.writeProjected(path, wgs84, 0.001);
+        try (GeometryStore store = GeometryStore.open(path)) {
+            assertNotNull(store.getCRS());
+            assertEquals(5000.0, store.getGeometry(0).getArea(), 1.0);
+            assertEquals(400.0, store.getGeometry(1).getArea(), 1.0);
+        }
+    }
+}
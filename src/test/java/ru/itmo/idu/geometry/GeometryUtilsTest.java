@@ -7,6 +7,8 @@ import org.locationtech.jts.geom.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -81,6 +83,26 @@ public class GeometryUtilsTest {
         list.add(new Coordinate(30.28788596, 59.71929357));
         Geometry geomUnited = GeometryUtils.makePolygonFromCoordinates(list, 2.0);
         assertFalse(geomUnited.isEmpty());
+        assertTrue(GeometryUtils.makePolygonFromCoordinates(Collections.emptyList(), 2.0).isEmpty());
+    }
+
+    @Test
+    public void testMakePolygonFromCoordinatesParallel() {
+        Random random = new Random(1);
+        List<Coordinate> list = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            list.add(new Coordinate(30.28 + random.nextDouble() * 0.01, 59.72 + random.nextDouble() * 0.01));
+        }
+        Geometry sequential = GeometryUtils.makePolygonFromCoordinates(list, 10.0);
+        Geometry parallel = GeometryUtils.makePolygonFromCoordinates(list, 10.0, true);
+        assertEquals(ProjectionUtils.calcArea(sequential), ProjectionUtils.calcArea(parallel), 1.0);
+
+        // same result as buffering each point separately
+        Geometry perPoint = GeometryUtils.makeGeometryCollection(
+                list.subList(0, 10).stream().map(c -> ProjectionUtils.makePointBuffer(c, 10.0)).toArray(Geometry[]::new)
+        ).union();
+        Geometry batched = GeometryUtils.makePolygonFromCoordinates(list.subList(0, 10), 10.0);
+        assertEquals(ProjectionUtils.calcArea(perPoint), ProjectionUtils.calcArea(batched), ProjectionUtils.calcArea(perPoint) * 0.01);
     }
 
     @Test
@@ -174,6 +196,34 @@ public class GeometryUtilsTest {
         assertEquals(9, rz.stream().mapToDouble(it -> it.getCoordinate().x).sum(), 0.001);
     }
 
+    @Test
+    public void testStreamGeometryParts() {
+        List<Geometry> nested = new ArrayList<>();
+        int expectedCount = 0;
+        for (int i = 0; i < 100; ++i) {
+            Geometry[] inner = new Geometry[i % 5 + 1];
+            for (int j = 0; j < inner.length; ++j) {
+                inner[j] = GeometryUtils.makePoint(i, j);
+            }
+            expectedCount += inner.length;
+            nested.add(GeometryUtils.makeGeometryCollection(GeometryUtils.makeGeometryCollection(inner), GeometryUtils.makePoint(-i, -i)));
+            ++expectedCount;
+        }
+        Geometry gc = GeometryUtils.makeGeometryCollection(nested);
+
+        List<Geometry> flattened = GeometryUtils.flattenGeometry(gc);
+        assertEquals(expectedCount, flattened.size());
+        assertEquals(flattened, GeometryUtils.streamGeometryParts(gc).collect(Collectors.toList()));
+        assertEquals(flattened, GeometryUtils.streamGeometryParts(gc, true).collect(Collectors.toList()));
+
+        List<Geometry> iterated = new ArrayList<>();
+        GeometryUtils.iterateGeometryParts(gc).forEachRemaining(iterated::add);
+        assertEquals(flattened, iterated);
+
+        assertEquals(0, GeometryUtils.streamGeometryParts(null).count());
+        assertEquals(1, GeometryUtils.streamGeometryParts(GeometryUtils.makePoint(1, 1)).count());
+    }
+
     @Test
     public void testConvertGeometryCollections() {
         Geometry gc = GeometryUtils.geometryFactory.createGeometryCollection(new Geometry[]{
@@ -191,6 +241,14 @@ public class GeometryUtilsTest {
         });
         rz = GeometryUtils.tryConvertGCToCorrectSubclass(gc);
         assertEquals(rz, gc);
+
+        gc = GeometryUtils.makeGeometryCollection(
+                GeometryUtils.makePoint(1, 1),
+                GeometryUtils.makeGeometryCollection(GeometryUtils.makePoint(2, 2), GeometryUtils.makePoint(3, 3))
+        );
+        rz = GeometryUtils.tryConvertGCToCorrectSubclass(gc);
+        assertEquals(MultiPoint.class, rz.getClass());
+        assertEquals(3, rz.getNumGeometries());
     }
 
     @Test
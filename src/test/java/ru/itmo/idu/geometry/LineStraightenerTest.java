@@ -6,6 +6,7 @@ import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.LineString;
 import ru.itmo.idu.geometry.algorithms.LineStraightener;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class LineStraightenerTest {
@@ -109,4 +110,64 @@ public class LineStraightenerTest {
         Assertions.assertEquals(rz.getCoordinates()[1], originalLine.getCoordinates()[2]);
         Assertions.assertEquals(rz.getCoordinates()[2], originalLine.getCoordinates()[3]);
     }
+
+    @Test
+    public void testBatch() {
+        var area = GeometryUtils.makePolygon(
+                new Coordinate(-1, -1),
+                new Coordinate(2.5, -1),
+                new Coordinate(2.5, 5),
+                new Coordinate(-1, 5)
+        );
+        List<LineString> lines = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            lines.add(GeometryUtils.makeLine(
+                    new Coordinate(0, i * 0.01),
+                    new Coordinate(1, 1),
+                    new Coordinate(2, 0),
+                    new Coordinate(3, 1)
+            ));
+        }
+        List<Coordinate> pointsToKeep = List.of(new Coordinate(1, 1));
+
+        List<LineString> rz = LineStraightener.straightenLineStrings(lines, area, pointsToKeep, true);
+
+        Assertions.assertEquals(lines.size(), rz.size());
+        for (int i = 0; i < lines.size(); ++i) {
+            Assertions.assertEquals(LineStraightener.straightenLineString(lines.get(i), area, pointsToKeep), rz.get(i));
+            Assertions.assertEquals(4, rz.get(i).getNumPoints());
+        }
+    }
+
+    @Test
+    public void testGalloping() {
+        // zigzag path going through a U-shaped corridor
+        var area = GeometryUtils.makeRectangle(0, 0, 100, 100)
+                .difference(GeometryUtils.makeRectangle(10, 10, 80, 91));
+        List<Coordinate> coords = new ArrayList<>();
+        for (int i = 0; i <= 100; ++i) {
+            coords.add(new Coordinate(5 + (i % 2), 95 - i * 0.9));
+        }
+        for (int i = 1; i <= 100; ++i) {
+            coords.add(new Coordinate(5 + i * 0.9, 5 + (i % 2)));
+        }
+        for (int i = 1; i <= 100; ++i) {
+            coords.add(new Coordinate(95 - (i % 2), 5 + i * 0.9));
+        }
+        var originalLine = GeometryUtils.makeLine(coords.toArray(new Coordinate[0]));
+        List<Coordinate> pointsToKeep = List.of(coords.get(50));
+
+        LineString greedy = LineStraightener.straightenLineString(originalLine, area, pointsToKeep, LineStraightener.Mode.GREEDY);
+        LineString galloping = LineStraightener.straightenLineString(originalLine, area, pointsToKeep, LineStraightener.Mode.GALLOPING);
+
+        Assertions.assertTrue(area.contains(galloping));
+        Assertions.assertTrue(galloping.getNumPoints() <= greedy.getNumPoints());
+        Assertions.assertTrue(galloping.getNumPoints() < 10);
+        Assertions.assertEquals(coords.get(0), galloping.getCoordinateN(0));
+        Assertions.assertEquals(coords.get(coords.size() - 1), galloping.getCoordinateN(galloping.getNumPoints() - 1));
+        Assertions.assertTrue(List.of(galloping.getCoordinates()).contains(coords.get(50)));
+
+        LineString noArea = LineStraightener.straightenLineString(originalLine, null, pointsToKeep, LineStraightener.Mode.GALLOPING);
+        Assertions.assertEquals(3, noArea.getNumPoints());
+    }
 }
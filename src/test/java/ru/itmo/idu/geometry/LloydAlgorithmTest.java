@@ -5,12 +5,17 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.util.AffineTransformation;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.operation.TransformException;
 import ru.itmo.idu.geometry.algorithms.LloydAlgorithm;
+import ru.itmo.idu.geometry.algorithms.TiledLloydAlgorithm;
 
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
 
 public class LloydAlgorithmTest {
 
@@ -36,4 +41,143 @@ public class LloydAlgorithmTest {
         Assertions.assertEquals(1.0, averageDist / pointsCount, 0.1);
 
     }
+
+    @Test
+    public void testLloydConvergence() {
+        Geometry area = GeometryUtils.makeRectangle(0, 0, 50, 50);
+        LloydAlgorithm algorithm = new LloydAlgorithm(area, 1.0);
+        algorithm.setConvergenceTolerance(0.05);
+        algorithm.setConvergenceCriterion(LloydAlgorithm.ConvergenceCriterion.MEAN_DISPLACEMENT);
+        algorithm.setParallel(true);
+        Coordinate[] points = algorithm.generateLloydPoints();
+
+        Assertions.assertEquals(2500, points.length, 25);
+        Assertions.assertTrue(algorithm.getIterationsCount() > 0);
+        Assertions.assertTrue(algorithm.getIterationsCount() < 50);
+        Assertions.assertEquals(algorithm.getIterationsCount(), algorithm.getIterationTimes().size());
+        Assertions.assertTrue(algorithm.getAverageIterationTimeMillis() > 0);
+        Assertions.assertTrue(Arrays.stream(points).allMatch(c -> area.covers(GeometryUtils.makePoint(c))));
+    }
+
+    private static double averageNearestDistance(Coordinate[] points) {
+        double total = 0.0;
+        for (Coordinate point : points) {
+            double nearest = Double.MAX_VALUE;
+            for (Coordinate other : points) {
+                if (other != point) {
+                    nearest = Math.min(nearest, point.distance(other));
+                }
+            }
+            total += nearest;
+        }
+        return total / points.length;
+    }
+
+    @Test
+    public void testTiledLloydPoints() {
+        Geometry area = GeometryUtils.makeRectangle(0, 0, 40, 40);
+        Coordinate[] globalPoints = LloydAlgorithm.generateLloydPoints(area, 1.0);
+        Coordinate[] tiledPoints = TiledLloydAlgorithm.generateLloydPoints(area, 1.0, 10.0);
+
+        Assertions.assertEquals(1600, tiledPoints.length);
+        Assertions.assertTrue(Arrays.stream(tiledPoints).allMatch(c -> area.covers(GeometryUtils.makePoint(c))));
+        Assertions.assertEquals(averageNearestDistance(globalPoints), averageNearestDistance(tiledPoints), 0.05);
+    }
+
+    @Test
+    public void testSeededAndIncrementalLloyd() {
+        Geometry area = GeometryUtils.makeRectangle(0, 0, 30, 30);
+        LloydAlgorithm first = new LloydAlgorithm(area, 1.0);
+        first.setRandom(new Random(42));
+        first.setMaxIterations(20);
+        LloydAlgorithm second = new LloydAlgorithm(area, 1.0);
+        second.setRandom(new Random(42));
+        second.setMaxIterations(20);
+        Coordinate[] points = first.generateLloydPoints();
+        Assertions.assertArrayEquals(points, second.generateLloydPoints());
+
+        // warm start from a converged state moves points only slightly
+        LloydAlgorithm warm = new LloydAlgorithm(area, 1.0);
+        warm.setConvergenceTolerance(0.05);
+        Coordinate[] warmPoints = warm.generateLloydPoints(points);
+        Assertions.assertTrue(warm.getIterationsCount() < 20);
+        Assertions.assertEquals(points.length, warmPoints.length, 5);
+
+        // cut a 5x5 corner out of the area and re-relax only around it
+        Geometry changedRegion = GeometryUtils.makeRectangle(25, 25, 5, 5);
+        Geometry newArea = area.difference(changedRegion);
+        LloydAlgorithm incremental = new LloydAlgorithm(newArea, 1.0);
+        incremental.setRandom(new Random(1));
+        Coordinate[] incrementalPoints = incremental.relaxIncrementally(points, changedRegion);
+
+        Assertions.assertEquals(875, incrementalPoints.length, 10);
+        Assertions.assertTrue(Arrays.stream(incrementalPoints).allMatch(c -> newArea.covers(GeometryUtils.makePoint(c))));
+        Geometry activeRegion = changedRegion.buffer(3.0);
+        Set<Coordinate> incrementalSet = new HashSet<>(Arrays.asList(incrementalPoints));
+        for (Coordinate c : points) {
+            if (!activeRegion.covers(GeometryUtils.makePoint(c))) {
+                Assertions.assertTrue(incrementalSet.contains(c));
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalCoincidentPoints() {
+        Geometry area = GeometryUtils.makeRectangle(0, 0, 10, 10);
+        Coordinate site = new Coordinate(5, 5);
+        LloydAlgorithm incremental = new LloydAlgorithm(area, 1.0);
+        incremental.setRandom(new Random(1));
+        incremental.setMaxIterations(1);
+        Coordinate[] points = incremental.relaxIncrementally(new Coordinate[]{site, site.copy()}, area);
+
+        Assertions.assertEquals(100, points.length);
+        // both coincident points get their own cells and are moved to centroids
+        Assertions.assertTrue(Arrays.stream(points).noneMatch(site::equals2D));
+        Assertions.assertEquals(points.length, new HashSet<>(Arrays.asList(points)).size());
+    }
+
+    @Test
+    public void testIncrementalConvergenceCriterion() {
+        Geometry area = GeometryUtils.makeRectangle(0, 0, 30, 30);
+        LloydAlgorithm initial = new LloydAlgorithm(area, 1.0);
+        initial.setRandom(new Random(42));
+        initial.setMaxIterations(5);
+        Coordinate[] points = initial.generateLloydPoints();
+
+        Geometry changedRegion = GeometryUtils.makeRectangle(10, 10, 10, 10);
+        Geometry newArea = area.difference(GeometryUtils.makeRectangle(12, 12, 6, 6));
+        int[] iterations = new int[2];
+        for (var criterion : LloydAlgorithm.ConvergenceCriterion.values()) {
+            LloydAlgorithm incremental = new LloydAlgorithm(newArea, 1.0);
+            incremental.setRandom(new Random(1));
+            incremental.setMaxIterations(100);
+            incremental.setConvergenceTolerance(0.02);
+            incremental.setConvergenceCriterion(criterion);
+            incremental.relaxIncrementally(points, changedRegion);
+            iterations[criterion.ordinal()] = incremental.getIterationsCount();
+        }
+        // mean displacement is never greater than max one
+        Assertions.assertTrue(iterations[LloydAlgorithm.ConvergenceCriterion.MEAN_DISPLACEMENT.ordinal()]
+                < iterations[LloydAlgorithm.ConvergenceCriterion.MAX_DISPLACEMENT.ordinal()]);
+    }
+
+    @Test
+    public void testThinArea() {
+        // diagonal strip takes 1e-4 of its envelope, so most of random points in envelope are rejected
+        Geometry area = AffineTransformation.rotationInstance(Math.PI / 4)
+                .transform(GeometryUtils.makeRectangle(0, 0, 1000, 0.05));
+        LloydAlgorithm first = new LloydAlgorithm(area, 0.2);
+        first.setRandom(new Random(3));
+        first.setMaxIterations(3);
+        Coordinate[] points = first.generateLloydPoints();
+
+        Assertions.assertEquals(1250, points.length, 5);
+        Geometry covered = area.buffer(1e-6);
+        Assertions.assertTrue(Arrays.stream(points).allMatch(c -> covered.covers(GeometryUtils.makePoint(c))));
+
+        LloydAlgorithm second = new LloydAlgorithm(area, 0.2);
+        second.setRandom(new Random(3));
+        second.setMaxIterations(3);
+        Assertions.assertArrayEquals(points, second.generateLloydPoints());
+    }
 }
@@ -0,0 +1,76 @@
+package ru.itmo.idu.geometry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import ru.itmo.idu.geometry.io.GeometryStore;
+import ru.itmo.idu.geometry.io.GeometryStoreWriter;
+import ru.itmo.idu.geometry.io.PackedHilbertRTree;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackedHilbertRTreeTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testQuery() throws IOException {
+        Random random = new Random(42);
+        List<Geometry> geometries = new ArrayList<>();
+        for (int i = 0; i < 5000; ++i) {
+            geometries.add(GeometryUtils.makeRectangle(random.nextDouble() * 1000, random.nextDouble() * 1000,
+                    random.nextDouble() * 10, random.nextDouble() * 10));
+        }
+        // empty geometries are not indexed
+        geometries.add(GeometryUtils.getGeometryFactory().createPolygon());
+
+        Path storePath = tempDir.resolve("layer.jgs");
+        Path indexPath = tempDir.resolve("layer.rtree");
+        try (GeometryStoreWriter writer = new GeometryStoreWriter(storePath, null)) {
+            writer.writeAll(geometries);
+        }
+        try (GeometryStore store = GeometryStore.open(storePath)) {
+            PackedHilbertRTree.build(indexPath, store, 4);
+            try (PackedHilbertRTree index = PackedHilbertRTree.open(indexPath)) {
+                assertEquals(5000, index.size());
+                for (int i = 0; i < 50; ++i) {
+                    Envelope search = new Envelope(random.nextDouble() * 1000, random.nextDouble() * 1000,
+                            random.nextDouble() * 1000, random.nextDouble() * 1000);
+                    long[] expected = LongStream.range(0, geometries.size())
+                            .filter(idx -> geometries.get((int) idx).getEnvelopeInternal().intersects(search))
+                            .toArray();
+                    long[] actual = index.query(search);
+                    Arrays.sort(actual);
+                    assertArrayEquals(expected, actual);
+                }
+
+                Geometry area = GeometryUtils.makePoint(500, 500).buffer(100);
+                long expectedCount = geometries.stream().filter(area::intersects).count();
+                assertEquals(expectedCount, index.queryIntersecting(area, store::getGeometry).count());
+                assertEquals(index.query(area.getEnvelopeInternal()).length,
+                        index.queryGeometries(area.getEnvelopeInternal(), store::getGeometry).count());
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Path indexPath = tempDir.resolve("empty.rtree");
+        PackedHilbertRTree.build(indexPath, Collections.emptyList(), PackedHilbertRTree.DEFAULT_NODE_SIZE);
+        try (PackedHilbertRTree index = PackedHilbertRTree.open(indexPath)) {
+            assertEquals(0, index.size());
+            assertEquals(0, index.query(new Envelope(-1, 1, -1, 1)).length);
+        }
+    }
+}
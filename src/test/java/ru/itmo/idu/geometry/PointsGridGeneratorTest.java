@@ -9,14 +9,15 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.TransformException;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class PointsGridGeneratorTest {
 
-    @Test
-    void generatePoints() throws FactoryException, TransformException {
-        Geometry polygon = GeometryUtils.makePolygon(
+    private static Geometry makeTestPolygon() {
+        return GeometryUtils.makePolygon(
                 new Coordinate(30.529875152102818, 59.9017412528203),
                 new Coordinate(30.529768819463612, 59.89774169966455),
                 new Coordinate(30.537177463764948, 59.89766857856378),
@@ -25,6 +26,11 @@ class PointsGridGeneratorTest {
                 new Coordinate(30.533088939216583, 59.9016344637553),
                 new Coordinate(30.529875152102818, 59.9017412528203)
         );
+    }
+
+    @Test
+    void generatePoints() throws FactoryException, TransformException {
+        Geometry polygon = makeTestPolygon();
 
         CoordinateReferenceSystem localCRS = CRSUtils.getLocalCRS(polygon.getCentroid());
         List<Point> points1 = PointsGridGenerator.generatePoints(localCRS, polygon, 10.0, 0.0);
@@ -35,4 +41,56 @@ class PointsGridGeneratorTest {
         assertNotEquals(points1.size(), points2.size());
     }
 
-}
\ No newline at end of file
+    @Test
+    void generatePointsScanline() throws FactoryException, TransformException {
+        Geometry polygon = makeTestPolygon();
+        CoordinateReferenceSystem localCRS = CRSUtils.getLocalCRS(polygon.getCentroid());
+        for (double angle : new double[] {0.0, 20.0, 45.0}) {
+            List<Point> geodetic = PointsGridGenerator.generatePoints(localCRS, polygon, 10.0, angle);
+            List<Point> scanline = PointsGridGenerator.generatePoints(localCRS, polygon, 10.0, angle, PointsGridGenerator.Mode.SCANLINE);
+            assertEquals(geodetic.size(), scanline.size(), geodetic.size() * 0.03);
+            assertTrue(scanline.stream().allMatch(polygon::contains));
+        }
+
+        // grid starts at the corner of envelope, which is not covered by polygons, so no nodes are on the boundary:
+        // 20x20 nodes are inside of the square with 8x8 of them in the hole, and 3 nodes are inside of the triangle
+        Geometry localSquare = GeometryUtils.makeRectangle(-104, -104, 195, 195)
+                .difference(GeometryUtils.makeRectangle(-33, -33, 80, 80));
+        Geometry localTriangle = GeometryUtils.makePolygon(
+                new Coordinate(-150, -125),
+                new Coordinate(-125, -150),
+                new Coordinate(-125, -125),
+                new Coordinate(-150, -125)
+        );
+        Geometry area = ProjectionUtils.transformFromLocalCRS(localCRS, localSquare.union(localTriangle));
+        List<Point> areaPoints = PointsGridGenerator.generatePoints(localCRS, area, 10.0, 0.0, PointsGridGenerator.Mode.SCANLINE);
+        assertTrue(areaPoints.stream().allMatch(area::contains));
+        assertEquals(20 * 20 - 8 * 8 + 3, areaPoints.size());
+    }
+
+    @Test
+    void generatePointsStreaming() throws FactoryException, TransformException {
+        Geometry polygon = makeTestPolygon();
+        CoordinateReferenceSystem localCRS = CRSUtils.getLocalCRS(polygon.getCentroid());
+        List<Point> points = PointsGridGenerator.generatePoints(localCRS, polygon, 5.0, 20.0, PointsGridGenerator.Mode.SCANLINE);
+
+        double[] coords = PointsGridGenerator.generateCoordinates(localCRS, polygon, 5.0, 20.0, false);
+        double[] parallelCoords = PointsGridGenerator.generateCoordinates(localCRS, polygon, 5.0, 20.0, true);
+        assertEquals(points.size() * 2, coords.length);
+        assertArrayEquals(coords, parallelCoords);
+        for (int i = 0; i < points.size(); ++i) {
+            assertEquals(points.get(i).getX(), coords[2 * i]);
+            assertEquals(points.get(i).getY(), coords[2 * i + 1]);
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        PointsGridGenerator.generatePoints(localCRS, polygon, 5.0, 20.0, (x, y) -> counter.incrementAndGet(), true);
+        assertEquals(points.size(), counter.get());
+
+        assertEquals(points.size(), PointsGridGenerator.streamPoints(localCRS, polygon, 5.0, 20.0, false).count());
+        List<Coordinate> streamed = PointsGridGenerator.streamPoints(localCRS, polygon, 5.0, 20.0, true)
+                .map(Point::getCoordinate)
+                .collect(Collectors.toList());
+        assertEquals(points.stream().map(Point::getCoordinate).collect(Collectors.toList()), streamed);
+    }
+}
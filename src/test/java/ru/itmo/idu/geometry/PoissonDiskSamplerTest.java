@@ -0,0 +1,57 @@
+package ru.itmo.idu.geometry;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import ru.itmo.idu.geometry.algorithms.PoissonDiskSampler;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class PoissonDiskSamplerTest {
+
+    private static double minDistance(Coordinate[] points) {
+        double result = Double.MAX_VALUE;
+        for (int i = 0; i < points.length; ++i) {
+            for (int j = i + 1; j < points.length; ++j) {
+                result = Math.min(result, points[i].distance(points[j]));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testPoissonPoints() {
+        Geometry area = GeometryUtils.makeRectangle(0, 0, 50, 50);
+        PoissonDiskSampler sampler = new PoissonDiskSampler(area, 1.0);
+        sampler.setRandom(new Random(42));
+        Coordinate[] points = sampler.generatePoints();
+
+        Assertions.assertTrue(minDistance(points) >= 1.0);
+        Assertions.assertTrue(Arrays.stream(points).allMatch(c -> area.covers(GeometryUtils.makePoint(c))));
+        // maximal Poisson-disk sampling covers about 0.6 - 0.7 of hexagonal packing density (2 / sqrt(3) per unit area)
+        Assertions.assertTrue(points.length > 1500, "Too few points: " + points.length);
+        Assertions.assertTrue(points.length < 2500, "Too many points: " + points.length);
+
+        // same seed gives same points
+        PoissonDiskSampler sameSeed = new PoissonDiskSampler(area, 1.0);
+        sameSeed.setRandom(new Random(42));
+        Assertions.assertArrayEquals(points, sameSeed.generatePoints());
+    }
+
+    @Test
+    public void testDisconnectedArea() {
+        // two rectangles far from each other, one with a hole
+        Geometry withHole = GeometryUtils.makeRectangle(0, 0, 20, 20).difference(GeometryUtils.makeRectangle(5, 5, 10, 10));
+        Geometry separate = GeometryUtils.makeRectangle(100, 0, 5, 5);
+        Geometry area = withHole.union(separate);
+        Coordinate[] points = PoissonDiskSampler.generatePoints(area, 1.0);
+
+        Assertions.assertTrue(minDistance(points) >= 1.0);
+        Assertions.assertTrue(Arrays.stream(points).allMatch(c -> area.covers(GeometryUtils.makePoint(c))));
+        long inSeparate = Arrays.stream(points).filter(c -> separate.covers(GeometryUtils.makePoint(c))).count();
+        Assertions.assertTrue(inSeparate > 10);
+        Assertions.assertTrue(points.length - inSeparate > 150);
+    }
+}
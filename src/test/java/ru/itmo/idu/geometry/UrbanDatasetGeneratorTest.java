@@ -0,0 +1,116 @@
+package ru.itmo.idu.geometry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.algorithm.Angle;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import ru.itmo.idu.geometry.io.GeometryStore;
+import ru.itmo.idu.geometry.synthetic.UrbanDatasetGenerator;
+import ru.itmo.idu.geometry.synthetic.UrbanDatasetGenerator.Feature;
+import ru.itmo.idu.geometry.synthetic.UrbanDatasetGenerator.FeatureType;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UrbanDatasetGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static UrbanDatasetGenerator makeGenerator(long seed) {
+        var generator = new UrbanDatasetGenerator(seed);
+        // more problematic blocks to have all types in a small dataset
+        generator.setNarrowAngleShare(0.05);
+        generator.setSpikeShare(0.05);
+        generator.setInvalidShare(0.05);
+        return generator;
+    }
+
+    @Test
+    public void testDeterministic() {
+        List<Feature> first = makeGenerator(1).generate(5000);
+        List<Feature> second = makeGenerator(1).stream(5000, true).collect(Collectors.toList());
+        List<Feature> otherSeed = makeGenerator(2).generate(5000);
+        assertEquals(5000, first.size());
+        assertEquals(5000, second.size());
+        assertEquals(5000, otherSeed.size());
+        boolean differs = false;
+        for (int i = 0; i < first.size(); ++i) {
+            assertEquals(first.get(i).getType(), second.get(i).getType());
+            assertTrue(first.get(i).getGeometry().equalsExact(second.get(i).getGeometry()));
+            differs |= !first.get(i).getGeometry().equalsExact(otherSeed.get(i).getGeometry());
+        }
+        assertTrue(differs);
+    }
+
+    @Test
+    public void testFeatureTypes() {
+        var generator = makeGenerator(3);
+        generator.setWgs84(false);
+        Map<FeatureType, Integer> counts = new EnumMap<>(FeatureType.class);
+        for (Feature feature : generator.generate(5000)) {
+            counts.merge(feature.getType(), 1, Integer::sum);
+            boolean shallBeValid = feature.getType() != FeatureType.INVALID_BLOCK;
+            assertEquals(shallBeValid, feature.getGeometry().isValid(), feature.getType().name());
+        }
+        for (FeatureType type : FeatureType.values()) {
+            assertTrue(counts.getOrDefault(type, 0) > 0, type.name());
+        }
+    }
+
+    @Test
+    public void testNarrowAngles() {
+        var generator = makeGenerator(5);
+        generator.setWgs84(false);
+        generator.setNarrowAngleShare(1.0);
+        Feature block = generator.generate(1).get(0);
+        assertEquals(FeatureType.NARROW_ANGLE_BLOCK, block.getType());
+        Coordinate[] coords = block.getGeometry().getCoordinates();
+        double[] angles = new double[coords.length - 1];
+        for (int i = 0; i < angles.length; ++i) {
+            Coordinate previous = coords[(i + angles.length - 1) % angles.length];
+            angles[i] = Math.toDegrees(Angle.angleBetween(previous, coords[i], coords[i + 1]));
+        }
+        Arrays.sort(angles);
+        assertEquals(10.0, angles[0], 1e-6);
+        assertEquals(20.0, angles[1], 1e-6);
+    }
+
+    @Test
+    public void testLatitudes() {
+        for (double latitude : UrbanDatasetGenerator.TEST_LATITUDES) {
+            var generator = makeGenerator(4);
+            generator.setLatitude(latitude);
+            Envelope envelope = new Envelope();
+            generator.stream(2000, false).forEach(f -> envelope.expandToInclude(f.getGeometry().getEnvelopeInternal()));
+            assertEquals(latitude, envelope.centre().y, 0.05);
+            assertEquals(30.0, envelope.centre().x, 0.05);
+            // about the same size in meters at any latitude
+            double widthMeters = ProjectionUtils.getDistance(envelope.centre().y, envelope.getMinX(), envelope.centre().y, envelope.getMaxX());
+            double heightMeters = ProjectionUtils.getDistance(envelope.getMinY(), envelope.getMinX(), envelope.getMaxY(), envelope.getMinX());
+            assertEquals(1.0, widthMeters / heightMeters, 0.3);
+        }
+    }
+
+    @Test
+    public void testWriteGeometryStore() throws IOException {
+        Path path = tempDir.resolve("city.jgs");
+        makeGenerator(5).writeGeometryStore(path, 3000, 0.0);
+        List<Feature> expected = makeGenerator(5).generate(3000);
+        try (GeometryStore store = GeometryStore.open(path)) {
+            assertEquals(3000, store.size());
+            assertEquals("CRS:84", store.getCrsCode());
+            for (int i = 0; i < expected.size(); i += 97) {
+                assertTrue(expected.get(i).getGeometry().equalsExact(store.getGeometry(i)));
+            }
+        }
+    }
+}